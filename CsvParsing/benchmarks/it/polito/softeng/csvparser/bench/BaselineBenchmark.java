@@ -0,0 +1,86 @@
+package it.polito.softeng.csvparser.bench;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The reference points of the comparison in <code>notes.txt</code>:
+ * counting the lines, as <code>wc -l</code>, and parsing with Apache Commons CSV.
+ * The throughput is comparable with {@link ParserBenchmark} on the same number of rows.
+ *
+ * @version 0.6
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations=3, time=5)
+@Measurement(iterations=5, time=5)
+@Fork(value=1, jvmArgs={"-Xms2g","-Xmx2g"})
+public class BaselineBenchmark {
+
+	@Param({"500000"})
+	public int rows;
+
+	private Path file;
+
+	@Setup(Level.Trial)
+	public void generate() throws IOException{
+		file = Data.generate(rows);
+	}
+
+	@TearDown(Level.Trial)
+	public void delete() throws IOException{
+		Files.delete(file);
+	}
+
+	@Benchmark
+	public long countLines() throws IOException{
+		long lines = 0;
+		byte[] buffer = new byte[65536];
+		try(InputStream in = new FileInputStream(file.toFile())){
+			int n;
+			while((n=in.read(buffer))!=-1){
+				for(int i=0; i<n; ++i){
+					if(buffer[i]=='\n') lines++;
+				}
+			}
+		}
+		return lines;
+	}
+
+	@Benchmark
+	public long apacheCsv() throws IOException{
+		long cells = 0;
+		try(Reader in = new InputStreamReader(new FileInputStream(file.toFile()), StandardCharsets.UTF_8);
+			CSVParser p = CSVFormat.DEFAULT.withDelimiter(';').withFirstRecordAsHeader().parse(in)){
+			for(CSVRecord r : p){
+				cells += r.size();
+			}
+		}
+		return cells;
+	}
+}
@@ -0,0 +1,57 @@
+package it.polito.softeng.csvparser.bench;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Input files of the benchmarks, resembling the open-coesione data
+ *
+ * @version 0.6
+ */
+final class Data {
+
+	static final String[] HEADERS = {"COD_LOCALE_PROGETTO","OC_TITOLO_PROGETTO",
+									 "OC_TEMA_SINTETICO","FINANZ_UE","DATA_INIZIO","NOTE"};
+
+	private static final String[] TEMI = {"Trasporti e infrastrutture a rete","Ambiente",
+			"Istruzione","Ricerca e innovazione","Inclusione sociale","Occupazione e mobilit\u00e0 dei lavoratori",
+			"Agenda digitale","Cultura e turismo","Energia ed efficienza energetica"};
+
+	private Data(){}
+
+	/**
+	 * Generates a semicolon separated file
+	 *
+	 * @param rows the number of rows
+	 * @return the file, to be deleted by the caller
+	 */
+	static Path generate(int rows) throws IOException{
+		Path file = Files.createTempFile("bench", ".csv");
+		Random r = new Random(20151231);
+		try(Writer out = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file), StandardCharsets.UTF_8))){
+			out.write(String.join(";", HEADERS));
+			out.write("\r\n");
+			for(int i=0; i<rows; ++i){
+				out.write("1MISE" + (100000+r.nextInt(900000)));
+				out.write(";\"Progetto n. " + i + " \"\"" + TEMI[r.nextInt(TEMI.length)].substring(0,5) + "\"\"\"");
+				out.write(";" + TEMI[r.nextInt(TEMI.length)]);
+				if(r.nextInt(10)==0){
+					out.write(";");
+				}else{
+					out.write(String.format(";%,d,%02d", r.nextInt(2000000), r.nextInt(100)).replace(',', '#')
+								.replace('.', ',').replace('#', '.'));
+				}
+				out.write(";2015" + String.format("%02d%02d", 1+r.nextInt(12), 1+r.nextInt(28)));
+				out.write(r.nextInt(4)==0 ? ";\"Nota\r\nsu due righe\"" : ";");
+				out.write("\r\n");
+			}
+		}
+		return file;
+	}
+}
@@ -0,0 +1,227 @@
+package it.polito.softeng.csvparser.bench;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.polito.softeng.csvparser.BufferPool;
+import it.polito.softeng.csvparser.Cell;
+import it.polito.softeng.csvparser.CsvParser;
+import it.polito.softeng.csvparser.CsvWriter;
+import it.polito.softeng.csvparser.Filter;
+import it.polito.softeng.csvparser.NumberStyle;
+import it.polito.softeng.csvparser.Processor;
+import it.polito.softeng.csvparser.Projection;
+import it.polito.softeng.csvparser.Row;
+import it.polito.softeng.csvparser.processor.ColumnProfiler;
+import it.polito.softeng.csvparser.processor.CsvSink;
+import it.polito.softeng.csvparser.processor.EmptyCells;
+import it.polito.softeng.csvparser.processor.GroupByAggregator;
+
+/**
+ * Measures the parsing of a file with the different input sources
+ * and with processors doing increasing work.
+ *
+ * @version 0.6
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations=3, time=5)
+@Measurement(iterations=5, time=5)
+@Fork(value=1, jvmArgs={"-Xms2g","-Xmx2g"})
+public class ParserBenchmark {
+
+	/** how the file is read */
+	@Param({"reader","stream","mapped"})
+	public String source;
+
+	/** size of the input buffer of the parser, in bytes or characters */
+	@Param({"65536","1048576"})
+	public int buffer;
+
+	/** size of the mapped window, used only by the mapped source, which reads in place of the buffer */
+	@Param({"1048576","1073741824"})
+	public int window;
+
+	@Param({"500000"})
+	public int rows;
+
+	private Path file;
+	private long size;
+	private BufferPool pool;
+
+	/**
+	 * Counters reported as rates, i.e. bytes and rows per second
+	 */
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	@State(Scope.Thread)
+	public static class Counters {
+		public long bytes;
+		public long rows;
+
+		@Setup(Level.Iteration)
+		public void reset(){
+			bytes = 0;
+			rows = 0;
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void generate() throws IOException{
+		file = Data.generate(rows);
+		size = Files.size(file);
+		pool = new BufferPool(buffer, 4);
+	}
+
+	@TearDown(Level.Trial)
+	public void delete() throws IOException{
+		Files.delete(file);
+	}
+
+	private CsvParser.Stats parse(Processor proc, Counters counters) throws IOException{
+		return parse(proc, null, counters);
+	}
+
+	private CsvParser.Stats parse(Processor proc, Filter filter, Counters counters) throws IOException{
+		CsvParser.Stats s;
+		switch(source){
+		case "reader":
+			try(InputStreamReader in = new InputStreamReader(new FileInputStream(file.toFile()), StandardCharsets.UTF_8)){
+				CsvParser p = new CsvParser(in);
+				configure(p, proc, filter);
+				s = p.parse();
+			}
+			break;
+		case "stream":
+			try(FileInputStream in = new FileInputStream(file.toFile())){
+				CsvParser p = new CsvParser(in, StandardCharsets.UTF_8);
+				configure(p, proc, filter);
+				s = p.parse();
+			}
+			break;
+		default:
+			try(FileChannel ch = FileChannel.open(file)){
+				CsvParser p = new CsvParser(ch, StandardCharsets.UTF_8, window);
+				configure(p, proc, filter);
+				s = p.parse();
+			}
+		}
+		counters.bytes += size;
+		counters.rows += s.rows;
+		return s;
+	}
+
+	private void configure(CsvParser p, Processor proc, Filter filter){
+		p.setBufferPool(pool);
+		if(proc!=null) p.addProcessor(proc);
+		if(filter!=null) p.addFilter(filter);
+	}
+
+	@Benchmark
+	public CsvParser.Stats parseOnly(Counters counters) throws IOException{
+		return parse(null, counters);
+	}
+
+	@Benchmark
+	@SuppressWarnings("deprecation")
+	public EmptyCells emptyCells(Counters counters) throws IOException{
+		EmptyCells proc = new EmptyCells(){
+			@Override
+			public void end() { } // no output within the measurement
+		};
+		parse(proc, counters);
+		return proc;
+	}
+
+	@Benchmark
+	public ColumnProfiler profile(Counters counters) throws IOException{
+		ColumnProfiler proc = new ColumnProfiler();
+		parse(proc, counters);
+		return proc;
+	}
+
+	@Benchmark
+	public long rewrite(Counters counters) throws IOException{
+		try(CsvWriter w = new CsvWriter(OutputStream.nullOutputStream(), StandardCharsets.UTF_8)){
+			parse(new CsvSink(w), counters);
+			w.flush();
+			return w.getWritten();
+		}
+	}
+
+	@Benchmark
+	public Map<String,long[]> aggregate(Counters counters) throws IOException{
+		Aggregate proc = new Aggregate();
+		parse(proc, counters);
+		return proc.totals;
+	}
+
+	@Benchmark
+	public GroupByAggregator groupBy(Counters counters) throws IOException{
+		GroupByAggregator proc = new GroupByAggregator("OC_TEMA_SINTETICO");
+		proc.aggregate(GroupByAggregator.Function.SUM, "FINANZ_UE", 2);
+		proc.setNumberStyle(NumberStyle.ITALIAN);
+		parse(proc, counters);
+		return proc;
+	}
+
+	@Benchmark
+	public GroupByAggregator filtered(Counters counters) throws IOException{
+		GroupByAggregator proc = new GroupByAggregator("DATA_INIZIO");
+		proc.aggregate(GroupByAggregator.Function.COUNT, null);
+		parse(proc, Filter.equal("OC_TEMA_SINTETICO", "Ambiente"), counters);
+		return proc;
+	}
+
+	/**
+	 * Sum of FINANZ_UE by OC_TEMA_SINTETICO with a map, as FinanzByTemaElab used to
+	 */
+	static class Aggregate implements Processor {
+		final Map<String,long[]> totals = new HashMap<>();
+
+		public void headers(String[] headers, Projection projection) {
+			projection.select("OC_TEMA_SINTETICO","FINANZ_UE");
+		}
+
+		public void headers(String[] headers) { }
+
+		public void newLine(Row r) {
+			Cell val = r.cell("FINANZ_UE");
+			if(!val.isEmpty()){
+				Cell key = r.cell("OC_TEMA_SINTETICO");
+				long[] total = totals.get(key);
+				if(total==null){
+					total = new long[1];
+					totals.put(key.toString(), total);
+				}
+				total[0] += val.toDecimal(2, NumberStyle.ITALIAN);
+			}
+		}
+
+		public void end() { }
+	}
+}
@@ -0,0 +1,18 @@
+/**
+ * The package contains the JMH benchmarks of the parser.
+ * <p>
+ * The benchmarks generate their input files, therefore they can be run offline.
+ * They require <code>jmh-core</code>, <code>jmh-generator-annprocess</code>
+ * (as annotation processor) and, for the comparison with Apache Commons CSV, 
+ * <code>commons-csv</code>. E.g., with the jars in <code>lib/</code>:
+ * <pre>
+ javac -cp bin:lib/* -d bench-bin $(find benchmarks -name '*.java')
+ java -cp bin:bench-bin:lib/* org.openjdk.jmh.Main -prof gc
+</pre>
+ * The throughput in bytes per second is reported by the <code>bytes</code>
+ * secondary result, the bytes allocated per row are the <code>gc.alloc.rate.norm</code>
+ * of the profiler (bytes per operation) divided by the <code>rows</code> per operation.
+ * 
+ * @version 0.6
+ */
+package it.polito.softeng.csvparser.bench;
@@ -0,0 +1,113 @@
+package it.polito.softeng.csvparser;
+
+import java.util.Arrays;
+
+/**
+ * A batch of rows copied from the buffer of the parser.
+ * <p>
+ * The content of the rows is copied into a buffer owned by the batch,
+ * the offsets and lengths of the cells are stored by column; 
+ * batches are recycled therefore their buffers
+ * and arrays are allocated only while they grow.
+ *
+ * @see RowBatch
+ * 
+ * @version 0.6
+ */
+class Batch {
+
+	/** store containing the buffer with the copy of the rows */
+	final Tokenizer data;
+	/** number of rows in the batch */
+	int size;
+	/** number of each row */
+	final long[] nums;
+	/** number of cells of each row */
+	final int[] cols;
+	/** position and length of the cells in the buffer, by column then by row, -1 if not available */
+	int[][] offsets = new int[0][];
+	int[][] lengths = new int[0][];
+	boolean[][] escaped = new boolean[0][];
+
+	Batch(Tokenizer source, int capacity){
+		data = source.newStore(Tokenizer.BUFFER_SIZE, Tokenizer.CELLS);
+		nums = new long[capacity];
+		cols = new int[capacity];
+	}
+
+	void clear(){
+		size = 0;
+		data.limit = 0;
+	}
+
+	boolean isFull(){
+		return size==nums.length;
+	}
+
+	private void ensureColumns(int n){
+		if(n>offsets.length){
+			int[][] no = Arrays.copyOf(offsets, n);
+			int[][] nl = Arrays.copyOf(lengths, n);
+			boolean[][] nq = Arrays.copyOf(escaped, n);
+			for(int c=offsets.length; c<n; ++c){
+				no[c] = new int[nums.length];
+				nl[c] = new int[nums.length];
+				nq[c] = new boolean[nums.length];
+				Arrays.fill(no[c], -1);
+				Arrays.fill(nl[c], -1);
+			}
+			offsets = no;
+			lengths = nl;
+			escaped = nq;
+		}
+	}
+
+	/**
+	 * Copies the current row of the tokenizer into the batch
+	 * 
+	 * @param tok the tokenizer 
+	 * @param num the number of the row
+	 */
+	void add(Tokenizer tok, long num){
+		int delta = data.append(tok, tok.rowBegin, tok.current) - tok.rowBegin;
+		int n = tok.col;
+		ensureColumns(n);
+		for(int c=0; c<n; ++c){
+			int s = tok.starts[c];
+			if(s<0){ // not in the projection
+				offsets[c][size] = -1;
+				lengths[c][size] = -1;
+			}else{
+				offsets[c][size] = s+delta;
+				lengths[c][size] = tok.ends[c]-s;
+			}
+			escaped[c][size] = tok.escaped[c];
+		}
+		for(int c=n; c<offsets.length; ++c){
+			offsets[c][size] = -1;
+			lengths[c][size] = -1;
+		}
+		nums[size] = num;
+		cols[size] = n;
+		size++;
+	}
+
+	/**
+	 * Makes the given view contain the i-th row of the batch
+	 * 
+	 * @param i the index of the row
+	 * @param view the tokenizer sharing the buffer of this batch
+	 */
+	void load(int i, Tokenizer view){
+		int n = cols[i];
+		view.ensureCells(n);
+		for(int c=0; c<n; ++c){
+			int s = offsets[c][i];
+			view.starts[c] = s;
+			view.ends[c] = s<0 ? -1 : s+lengths[c][i];
+			view.escaped[c] = escaped[c][i];
+		}
+		view.col = n;
+		view.rows++;
+	}
+}
@@ -0,0 +1,36 @@
+package it.polito.softeng.csvparser;
+
+/**
+ * This interface must be implemented by the processors
+ * that receive the rows in batches.
+ * <p>
+ * The rows are provided in columnar layout, so that the
+ * processor can run tight loops over the cells of a column.
+ * 
+ * @see CsvParser#addBatchProcessor(BatchProcessor)
+ * 
+ * @version 0.6
+ */
+public interface BatchProcessor {
+	/**
+	 * Method called after reading the first row of CSV that
+	 * is expected to contain the headers of the columns (or field names),
+	 * it allows the processor to select the columns it needs.
+	 * 
+	 * @param headers  an array of {@link java.lang.String}s containing the field names
+	 * @param projection  the columns required by the processor
+	 */
+	void headers(String[] headers, Projection projection);
+
+	/**
+	 * Method called upon reading a batch of rows
+	 * 
+	 * @param batch the rows, valid only during the invocation
+	 */
+	void newBatch(RowBatch batch);
+
+	/**
+	 * Method called at the end of the file, before terminating the parsing, at the end of the file
+	 */
+	void end();
+}
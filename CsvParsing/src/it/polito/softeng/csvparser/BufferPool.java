@@ -0,0 +1,89 @@
+package it.polito.softeng.csvparser;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Pool of the input buffers of the parsers.
+ * <p>
+ * A parser takes its buffer from the pool when the parsing starts and
+ * returns it at the end, so that parsers created one after the other,
+ * or running concurrently, reuse the same buffers. The pool keeps
+ * at most a given number of buffers of each kind (bytes and characters).
+ * When a row does not fit, the parser enlarges its buffer up to the
+ * maximum row size; the enlarged buffers are not kept by the pool and are
+ * dropped as soon as the rows fit again into a buffer of the pool size.
+ * <p>
+ * By default the parsers use the {@link #SHARED} pool.
+ * 
+ * @see CsvParser#setBufferPool(BufferPool)
+ * @see CsvParser#setMaxRowSize(int)
+ *
+ * @version 0.6
+ */
+public class BufferPool {
+
+	/** The pool shared by the parsers, with buffers of 64 K */
+	public static final BufferPool SHARED = new BufferPool(Tokenizer.BUFFER_SIZE, 
+												4*Runtime.getRuntime().availableProcessors());
+
+	/** Minimum size of the buffers */
+	public static final int MIN_SIZE = 1024;
+
+	private final int size;
+	private final BlockingQueue<byte[]> bytes;
+	private final BlockingQueue<char[]> chars;
+
+	/**
+	 * Builds a pool
+	 * 
+	 * @param size the size of the buffers, in bytes or characters
+	 * @param capacity the maximum number of buffers of each kind kept by the pool
+	 */
+	public BufferPool(int size, int capacity){
+		if(size<MIN_SIZE) throw new IllegalArgumentException("Buffer size must be at least " + MIN_SIZE);
+		if(capacity<1) throw new IllegalArgumentException("Pool capacity must be positive");
+		this.size = size;
+		bytes = new ArrayBlockingQueue<>(capacity);
+		chars = new ArrayBlockingQueue<>(capacity);
+	}
+
+	/**
+	 * Retrieves the size of the buffers of the pool
+	 * 
+	 * @return the size in bytes or characters
+	 */
+	public int getBufferSize(){
+		return size;
+	}
+
+	/**
+	 * Retrieves the number of buffers currently kept by the pool
+	 * 
+	 * @return the number of buffers of both kinds
+	 */
+	public int getPooled(){
+		return bytes.size() + chars.size();
+	}
+
+	byte[] bytes(){
+		byte[] b = bytes.poll();
+		return b!=null ? b : new byte[size];
+	}
+
+	char[] chars(){
+		char[] c = chars.poll();
+		return c!=null ? c : new char[size];
+	}
+
+	/**
+	 * Returns a buffer to the pool, unless it has been enlarged or the pool is full
+	 */
+	void release(byte[] b){
+		if(b.length==size) bytes.offer(b);
+	}
+
+	void release(char[] c){
+		if(c.length==size) chars.offer(c);
+	}
+}
@@ -0,0 +1,272 @@
+package it.polito.softeng.csvparser;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Tokenizer working directly on the bytes of the input.
+ * <p>
+ * It can be used only with ASCII-compatible encodings (e.g. UTF-8
+ * or ISO-8859-1), where the structural characters of the CSV (separators,
+ * quotes, and line terminators) are encoded as single bytes that
+ * never appear within the encoding of other characters.
+ * The bytes of a cell are decoded only when the cell is requested.
+ *
+ * @version 0.6
+ */
+class ByteTokenizer extends Tokenizer implements Tokenizer.Unescaped {
+
+	private InputStream in;
+	/** position of the file where the input starts */
+	private long origin;
+	protected ByteBuffer buffer;
+	protected final Charset charset;
+	/** characters corresponding to the bytes, for single-byte encodings */
+	private final char[] table;
+	/** buffer for decoding, allocated when first needed */
+	private byte[] scratch;
+
+	/** Disables the word-at-a-time search, for comparison purposes */
+	static final boolean SCALAR = Boolean.getBoolean("it.polito.softeng.csvparser.scalar");
+	private static final long ONES = 0x0101010101010101L;
+	private static final long LOW7 = 0x7F7F7F7F7F7F7F7FL;
+
+	ByteTokenizer(InputStream in, Charset charset){
+		this(charset);
+		this.in = in;
+	}
+
+	/**
+	 * Constructor for subclasses that provide their own buffer
+	 */
+	protected ByteTokenizer(Charset charset){
+		this.charset = charset;
+		if(charset.equals(StandardCharsets.UTF_8)){
+			table = null;
+		}else{
+			byte[] all = new byte[256];
+			for(int i=0; i<all.length; ++i) all[i]=(byte)i;
+			table = new String(all,charset).toCharArray();
+		}
+	}
+
+	/**
+	 * Constructor for the stores, sharing the decoding table of the source
+	 */
+	private ByteTokenizer(ByteTokenizer source, int cells){
+		super(cells);
+		this.charset = source.charset;
+		this.table = source.table;
+	}
+
+	/**
+	 * Checks whether the given encoding can be tokenized at the byte level.
+	 * <p>
+	 * The encoding must be either UTF-8 or a single-byte encoding
+	 * that decodes the ASCII bytes to the same characters.
+	 *
+	 * @param cs the charset
+	 * @return {@code true} if the encoding is ASCII-compatible
+	 */
+	static boolean isAsciiCompatible(Charset cs){
+		if(cs.equals(StandardCharsets.UTF_8)) return true;
+		if(!cs.canEncode() || cs.newEncoder().maxBytesPerChar()!=1.0f) return false;
+		byte[] ascii = new byte[128];
+		for(int i=0; i<ascii.length; ++i) ascii[i]=(byte)i;
+		String s = new String(ascii,cs);
+		if(s.length()!=ascii.length) return false;
+		for(int i=0; i<ascii.length; ++i){
+			if(s.charAt(i)!=i) return false;
+		}
+		return true;
+	}
+
+	@Override
+	void start() throws IOException {
+		if(in instanceof FileInputStream){
+			origin = ((FileInputStream)in).getChannel().position();
+		}
+		buffer = ByteBuffer.wrap(pool.bytes());
+		refill();
+		detectSeparator();
+	}
+
+	@Override
+	boolean fill() throws IOException {
+		byte[] b = buffer.array();
+		if(shrinkable(b.length)){
+			// the long row is over, back to a buffer of the pool
+			byte[] pooled = pool.bytes();
+			System.arraycopy(b, rowBegin, pooled, 0, limit-rowBegin);
+			shift(rowBegin);
+			buffer = ByteBuffer.wrap(pooled);
+			b = pooled;
+		}else if(rowBegin>0){
+			System.arraycopy(b, rowBegin, b, 0, limit-rowBegin);
+			shift(rowBegin);
+		}else if(limit==b.length){
+			// the current row does not fit into the buffer
+			ByteBuffer newBuffer = ByteBuffer.allocate(enlarge(b.length));
+			System.arraycopy(b, 0, newBuffer.array(), 0, limit);
+			buffer = newBuffer;
+			b = buffer.array();
+		}
+		int nl = in.read(b, limit, b.length-limit);
+		if(nl==-1) return false;
+		count+=nl;
+		limit+=nl;
+		return true;
+	}
+
+	@Override
+	boolean reposition(long position) throws IOException {
+		if(!(in instanceof FileInputStream)) return false;
+		((FileInputStream)in).getChannel().position(origin+position);
+		current = limit = rowBegin = 0;
+		count = position;
+		return true;
+	}
+
+	@Override
+	void release() {
+		if(buffer!=null && in!=null){
+			pool.release(buffer.array());
+			buffer = null;
+		}
+		super.release();
+	}
+
+	@Override
+	Tokenizer newStore(int capacity, int cells) {
+		ByteTokenizer store = new ByteTokenizer(this, cells);
+		store.buffer = ByteBuffer.allocate(capacity);
+		return store;
+	}
+
+	@Override
+	int append(Tokenizer source, int begin, int end) {
+		ByteBuffer src = ((ByteTokenizer)source).buffer.duplicate();
+		int len = end-begin;
+		if(limit+len>buffer.capacity()){
+			ByteBuffer newBuffer = ByteBuffer.allocate(Math.max(limit+len, buffer.capacity()*2));
+			System.arraycopy(buffer.array(), 0, newBuffer.array(), 0, limit);
+			buffer = newBuffer;
+		}
+		src.position(begin);
+		src.get(buffer.array(), limit, len);
+		int pos = limit;
+		limit += len;
+		return pos;
+	}
+
+	@Override
+	void share(Tokenizer store) {
+		buffer = ((ByteTokenizer)store).buffer;
+		limit = store.limit;
+	}
+
+	/**
+	 * Finds the characters checking the first bytes one at a time,
+	 * since most cells are short, then eight bytes at a time.
+	 */
+	@Override
+	int find(int from, int to, int c1, int c2, int c3) {
+		if(SCALAR || (c1|c2|c3)>0x7F) return super.find(from, to, c1, c2, c3);
+		final ByteBuffer b = buffer;
+		int head = Math.min(to, from+8);
+		for(int i=from; i<head; ++i){
+			int ch = b.get(i);
+			if(ch==c1 || ch==c2 || ch==c3) return i;
+		}
+		return head==to ? to : findWords(head, to, c1, c2, c3);
+	}
+
+	/**
+	 * Finds the characters reading the buffer eight bytes at a time: 
+	 * each word is compared with the characters replicated in all the bytes
+	 * (SWAR, SIMD within a register), and the first matching byte 
+	 * is located by counting the leading zeros of the result.
+	 */
+	private int findWords(int from, int to, int c1, int c2, int c3) {
+		final ByteBuffer b = buffer;
+		final long p1 = c1*ONES;
+		final long p2 = c2*ONES;
+		final long p3 = c3*ONES;
+		int i=from;
+		for(; i+8<=to; i+=8){
+			long w = b.getLong(i); // big endian: the first byte is the most significant
+			long m = zeros(w^p1) | zeros(w^p2) | zeros(w^p3);
+			if(m!=0){
+				return i + (Long.numberOfLeadingZeros(m)>>>3);
+			}
+		}
+		for(; i<to; ++i){
+			int ch = b.get(i);
+			if(ch==c1 || ch==c2 || ch==c3) return i;
+		}
+		return to;
+	}
+
+	/**
+	 * Sets the high bit of the bytes that are zero, exactly:
+	 * unlike the usual <code>(x-ONES) &amp; ~x</code> it does not 
+	 * mark the bytes following a zero byte.
+	 */
+	private static long zeros(long x){
+		long t = (x & LOW7) + LOW7;
+		return ~(t | x | LOW7);
+	}
+
+	@Override
+	final int at(int pos) {
+		return buffer.get(pos) & 0xFF;
+	}
+
+	@Override
+	String text(int begin, int end) {
+		if(buffer.hasArray()){
+			return new String(buffer.array(), buffer.arrayOffset()+begin, end-begin, charset);
+		}
+		int len = end-begin;
+		scratch(len);
+		ByteBuffer b = buffer.duplicate();
+		b.position(begin);
+		b.get(scratch, 0, len);
+		return new String(scratch, 0, len, charset);
+	}
+
+	@Override
+	boolean direct(int begin, int end) {
+		if(table!=null) return true;
+		for(int i=begin; i<end; ++i){
+			if(buffer.get(i)<0) return false; // not ASCII
+		}
+		return true;
+	}
+
+	@Override
+	char charAt(int pos) {
+		if(table!=null) return table[buffer.get(pos) & 0xFF];
+		return (char)buffer.get(pos);
+	}
+
+	@Override
+	String unescape(int begin, int end) {
+		scratch(end-begin);
+		int n = unescape(begin, end, this);
+		return new String(scratch, 0, n, charset);
+	}
+
+	private void scratch(int len){
+		if(scratch==null || scratch.length<len) scratch = new byte[Math.max(len, 256)];
+	}
+
+	@Override
+	public void put(int pos, int ch) {
+		scratch[pos] = (byte)ch;
+	}
+}
@@ -0,0 +1,402 @@
+package it.polito.softeng.csvparser;
+
+/**
+ * View of a cell of the current row.
+ * <p>
+ * The view reads the characters directly from the buffer of the parser,
+ * therefore it is valid only while the row is being processed:
+ * the same object is reused for the same column of the following rows.
+ * A {@link String} is created only by {@link #toString()} or when
+ * the content of the cell cannot be read directly from the buffer
+ * (e.g. it contains escaped quotes or non-ASCII UTF-8 characters).
+ * <p>
+ * The {@link #hashCode()} is the same as that of the {@link String}
+ * with the same content, and {@link #equals(Object)} compares the content
+ * with any {@link CharSequence}; therefore a cell can be used to
+ * look up a {@link java.util.HashMap} with {@link String} keys.
+ *
+ * @version 0.6
+ */
+public final class Cell implements CharSequence {
+
+	private final Tokenizer tok;
+	private final int index;
+	/** row for which the view has been prepared */
+	private long row=-1;
+	private int begin;
+	private int end;
+	/** decoded content, when it cannot be read directly from the buffer */
+	private String decoded;
+	/** cache of the values of the column, if interned */
+	Interner interner;
+
+	Cell(Tokenizer tok, int index){
+		this.tok = tok;
+		this.index = index;
+	}
+
+	private void prepare(){
+		if(row==tok.rows) return;
+		row = tok.rows;
+		begin = tok.starts[index];
+		end = tok.ends[index];
+		if(tok.escaped[index] || !tok.direct(begin, end)){
+			decoded = tok.cell(index);
+		}else{
+			decoded = null;
+		}
+	}
+
+	/**
+	 * Checks whether the cell is empty, without looking at its content
+	 *
+	 * @return {@code true} if the cell is empty
+	 */
+	public boolean isEmpty(){
+		return tok.starts[index]==tok.ends[index];
+	}
+
+	@Override
+	public int length() {
+		prepare();
+		if(decoded!=null) return decoded.length();
+		return end-begin;
+	}
+
+	@Override
+	public char charAt(int i) {
+		prepare();
+		if(decoded!=null) return decoded.charAt(i);
+		if(i<0 || i>=end-begin) throw new IndexOutOfBoundsException("index " + i);
+		return tok.charAt(begin+i);
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		return toString().subSequence(start, end);
+	}
+
+	/**
+	 * Checks whether the content of the cell is the same
+	 * as the given sequence of characters
+	 *
+	 * @param s the characters to compare with
+	 * @return {@code true} if the content is the same
+	 */
+	public boolean contentEquals(CharSequence s){
+		prepare();
+		if(decoded!=null) return decoded.contentEquals(s);
+		int n = end-begin;
+		if(s.length()!=n) return false;
+		for(int i=0; i<n; ++i){
+			if(tok.charAt(begin+i)!=s.charAt(i)) return false;
+		}
+		return true;
+	}
+
+	@Override
+	public boolean equals(Object o){
+		if(o==this) return true;
+		if(!(o instanceof CharSequence)) return false;
+		return contentEquals((CharSequence)o);
+	}
+
+	@Override
+	public int hashCode(){
+		prepare();
+		if(decoded!=null) return decoded.hashCode();
+		int h=0;
+		for(int i=begin; i<end; ++i){
+			h = 31*h + tok.charAt(i);
+		}
+		return h;
+	}
+
+	private char at(int i){
+		if(decoded!=null) return decoded.charAt(i);
+		return tok.charAt(begin+i);
+	}
+
+	private int size(){
+		if(decoded!=null) return decoded.length();
+		return end-begin;
+	}
+
+	/**
+	 * Parses the cell as a <code>long</code> using the default 
+	 * number style of the parser.
+	 *
+	 * @return the value of the cell
+	 * @throws NumberFormatException if the cell does not contain an integer number
+	 * @see CsvParser#setNumberStyle(NumberStyle)
+	 */
+	public long toLong(){
+		return toLong(tok.numbers);
+	}
+
+	/**
+	 * Parses the cell as a <code>long</code>, the grouping separators are ignored.
+	 * <p>
+	 * The characters are read directly from the buffer, no object is created.
+	 *
+	 * @param style the number style
+	 * @return the value of the cell
+	 * @throws NumberFormatException if the cell does not contain an integer number
+	 */
+	public long toLong(NumberStyle style){
+		return parse(-1, style);
+	}
+
+	/**
+	 * Parses the cell as an <code>int</code> using the default 
+	 * number style of the parser.
+	 *
+	 * @return the value of the cell
+	 * @throws NumberFormatException if the cell does not contain an integer number
+	 */
+	public int toInt(){
+		return toInt(tok.numbers);
+	}
+
+	/**
+	 * Parses the cell as an <code>int</code>, the grouping separators are ignored.
+	 *
+	 * @param style the number style
+	 * @return the value of the cell
+	 * @throws NumberFormatException if the cell does not contain an integer number
+	 */
+	public int toInt(NumberStyle style){
+		long v = toLong(style);
+		if(v<Integer.MIN_VALUE || v>Integer.MAX_VALUE){
+			throw error("out of int range");
+		}
+		return (int)v;
+	}
+
+	/**
+	 * Parses the cell as a fixed-point decimal number using the default 
+	 * number style of the parser.
+	 *
+	 * @param scale the number of decimal digits
+	 * @return the unscaled value of the cell
+	 * @throws NumberFormatException if the cell does not contain a number
+	 * @see #toDecimal(int, NumberStyle)
+	 */
+	public long toDecimal(int scale){
+		return toDecimal(scale, tok.numbers);
+	}
+
+	/**
+	 * Parses the cell as a fixed-point decimal number with the given scale,
+	 * i.e. the number multiplied by 10<sup>scale</sup>, e.g. <code>"1.234,5"</code>
+	 * with scale 2 and {@link NumberStyle#ITALIAN} style is <code>123450</code>.
+	 * <p>
+	 * The grouping separators are ignored, the decimal digits exceeding the scale
+	 * are rounded half up. The characters are read directly from the buffer, 
+	 * no object is created.
+	 *
+	 * @param scale the number of decimal digits
+	 * @param style the number style
+	 * @return the unscaled value of the cell
+	 * @throws NumberFormatException if the cell does not contain a number
+	 */
+	public long toDecimal(int scale, NumberStyle style){
+		if(scale<0 || scale>18) throw new IllegalArgumentException("Invalid scale " + scale);
+		return parse(scale, style);
+	}
+
+	/**
+	 * Parses a fixed-point number, a negative scale
+	 * means the decimal separator is not admitted
+	 */
+	private long parse(int scale, NumberStyle style){
+		prepare();
+		int n = size();
+		int i = 0;
+		boolean negative = false;
+		if(n>0){
+			char c = at(0);
+			if(c=='-' || c=='+'){
+				negative = c=='-';
+				i++;
+			}
+		}
+		// the value is accumulated as negative to reach Long.MIN_VALUE
+		long v = 0;
+		int digits = 0;
+		int decimals = -1; // not yet in the decimal part
+		boolean roundUp = false;
+		for(; i<n; ++i){
+			char c = at(i);
+			if(c>='0' && c<='9'){
+				digits++;
+				if(decimals<0 || decimals<scale){
+					if(v < Long.MIN_VALUE/10) throw error("overflow");
+					v = v*10 - (c-'0');
+					if(v>0) throw error("overflow");
+					if(decimals>=0) decimals++;
+				}else if(decimals==scale){ // first digit exceeding the scale
+					roundUp = c>='5';
+					decimals++;
+				}
+			}else if(c==style.decimal && decimals<0 && scale>=0){
+				decimals = 0;
+			}else if(c==style.grouping && decimals<0){
+				continue;
+			}else{
+				throw error("invalid character '" + c + "'");
+			}
+		}
+		if(digits==0) throw error("no digits");
+		for(int d=Math.max(decimals,0); d<scale; ++d){
+			if(v < Long.MIN_VALUE/10) throw error("overflow");
+			v*=10;
+		}
+		if(roundUp){
+			if(v==Long.MIN_VALUE) throw error("overflow");
+			v--;
+		}
+		if(!negative){
+			if(v==Long.MIN_VALUE) throw error("overflow");
+			v = -v;
+		}
+		return v;
+	}
+
+	/**
+	 * Parses the cell as a <code>double</code> using the default 
+	 * number style of the parser.
+	 *
+	 * @return the value of the cell
+	 * @throws NumberFormatException if the cell does not contain a number
+	 */
+	public double toDouble(){
+		return toDouble(tok.numbers);
+	}
+
+	/** Powers of ten that are represented exactly as <code>double</code> */
+	private static final double[] POW10 = {
+			1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 
+			1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	/**
+	 * Parses the cell as a <code>double</code>, the grouping separators are ignored.
+	 * <p>
+	 * Numbers with up to 15 significant digits and a small exponent are 
+	 * converted directly from the buffer, without creating any object; the
+	 * others are converted through {@link Double#parseDouble(String)}.
+	 * Only digits, a leading sign, the separators of the style, and an exponent
+	 * (e.g. <code>1.5e-3</code>) are admitted: special values such as
+	 * <code>NaN</code> and <code>Infinity</code> are not numbers.
+	 *
+	 * @param style the number style
+	 * @return the value of the cell
+	 * @throws NumberFormatException if the cell does not contain a number
+	 */
+	public double toDouble(NumberStyle style){
+		prepare();
+		int n = size();
+		int i = 0;
+		boolean negative = false;
+		if(n>0){
+			char c = at(0);
+			if(c=='-' || c=='+'){
+				negative = c=='-';
+				i++;
+			}
+		}
+		long mantissa = 0;
+		boolean any = false;
+		int digits = 0;
+		int exp = 0;
+		boolean decimals = false;
+		boolean simple = true;
+		for(; i<n && simple; ++i){
+			char c = at(i);
+			if(c>='0' && c<='9'){
+				any = true;
+				if(mantissa==0 && c=='0'){
+					if(decimals) exp--;
+					continue;
+				}
+				if(++digits>15){
+					simple = false;
+					break;
+				}
+				mantissa = mantissa*10 + (c-'0');
+				if(decimals) exp--;
+			}else if(c==style.decimal && !decimals){
+				decimals = true;
+			}else if(c==style.grouping && !decimals){
+				continue;
+			}else{
+				simple = false;
+			}
+		}
+		if(simple && any && exp>=-22){
+			double d = exp==0 ? mantissa : mantissa / POW10[-exp];
+			return negative ? -d : d;
+		}
+		// slow path: exponents and long mantissas, checked before
+		// parsing since Double.parseDouble() admits also special values,
+		// type suffixes, hexadecimal numbers, and white space
+		StringBuilder sb = new StringBuilder(n+1);
+		int j = 0;
+		if(n>0 && (at(0)=='-' || at(0)=='+')) sb.append(at(j++));
+		boolean point = false;
+		boolean digit = false;
+		for(; j<n; ++j){
+			char c = at(j);
+			if(c>='0' && c<='9'){
+				digit = true;
+				sb.append(c);
+			}else if(c==style.decimal && !point){
+				point = true;
+				sb.append('.');
+			}else if(c!=style.grouping || point){
+				break;
+			}
+		}
+		if(!digit) throw error("no digits");
+		if(j<n){
+			char c = at(j++);
+			if(c!='e' && c!='E') throw error("invalid character '" + c + "'");
+			sb.append('e');
+			if(j<n && (at(j)=='-' || at(j)=='+')) sb.append(at(j++));
+			if(j==n) throw error("no exponent digits");
+			for(; j<n; ++j){
+				c = at(j);
+				if(c<'0' || c>'9') throw error("invalid character '" + c + "'");
+				sb.append(c);
+			}
+		}
+		return Double.parseDouble(sb.toString());
+	}
+
+	private NumberFormatException error(String msg){
+		return new NumberFormatException("For input \"" + this + "\": " + msg);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * If the column is interned, the same {@link String} is returned
+	 * for the cells with the same content.
+	 *
+	 * @see CsvParser#setInterning(int, String...)
+	 */
+	@Override
+	public String toString(){
+		if(interner!=null) return interner.intern(this);
+		return text();
+	}
+
+	/**
+	 * Creates a new string with the content of the cell
+	 */
+	String text(){
+		prepare();
+		if(decoded!=null) return decoded;
+		return tok.text(begin, end);
+	}
+}
@@ -0,0 +1,133 @@
+package it.polito.softeng.csvparser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Tokenizer working on the characters provided by a {@link Reader}.
+ *
+ * @version 0.6
+ */
+class CharTokenizer extends Tokenizer implements Tokenizer.Unescaped {
+
+	private Reader in;
+	private char[] buffer;
+	/** buffer for unescaping, allocated when first needed */
+	private char[] scratch;
+
+	CharTokenizer(Reader in){
+		this.in = in;
+	}
+
+	private CharTokenizer(int cells){
+		super(cells);
+	}
+
+	@Override
+	void release() {
+		if(buffer!=null && in!=null){
+			pool.release(buffer);
+			buffer = null;
+		}
+		super.release();
+	}
+
+	@Override
+	Tokenizer newStore(int capacity, int cells) {
+		CharTokenizer store = new CharTokenizer(cells);
+		store.buffer = new char[capacity];
+		return store;
+	}
+
+	@Override
+	int append(Tokenizer source, int begin, int end) {
+		int len = end-begin;
+		if(limit+len>buffer.length){
+			buffer = Arrays.copyOf(buffer, Math.max(limit+len, buffer.length*2));
+		}
+		System.arraycopy(((CharTokenizer)source).buffer, begin, buffer, limit, len);
+		int pos = limit;
+		limit += len;
+		return pos;
+	}
+
+	@Override
+	void share(Tokenizer store) {
+		buffer = ((CharTokenizer)store).buffer;
+		limit = store.limit;
+	}
+
+	@Override
+	int find(int from, int to, int c1, int c2, int c3) {
+		final char[] b = buffer;
+		for(int i=from; i<to; ++i){
+			char ch = b[i];
+			if(ch==c1 || ch==c2 || ch==c3) return i;
+		}
+		return to;
+	}
+
+	@Override
+	void start() throws IOException {
+		buffer = pool.chars();
+		refill();
+		detectSeparator();
+	}
+
+	@Override
+	boolean fill() throws IOException {
+		if(shrinkable(buffer.length)){
+			// the long row is over, back to a buffer of the pool
+			char[] pooled = pool.chars();
+			System.arraycopy(buffer, rowBegin, pooled, 0, limit-rowBegin);
+			shift(rowBegin);
+			buffer = pooled;
+		}else if(rowBegin>0){
+			System.arraycopy(buffer, rowBegin, buffer, 0, limit-rowBegin);
+			shift(rowBegin);
+		}else if(limit==buffer.length){
+			// the current row does not fit into the buffer
+			char[] newBuffer = new char[enlarge(buffer.length)];
+			System.arraycopy(buffer,0, newBuffer, 0, limit);
+			buffer=newBuffer;
+		}
+		int nl = in.read(buffer, limit, buffer.length-limit);
+		if(nl==-1) return false;
+		count+=nl;
+		limit+=nl;
+		return true;
+	}
+
+	@Override
+	final int at(int pos) {
+		return buffer[pos];
+	}
+
+	@Override
+	String text(int begin, int end) {
+		return new String(buffer,begin,end-begin);
+	}
+
+	@Override
+	boolean direct(int begin, int end) {
+		return true;
+	}
+
+	@Override
+	char charAt(int pos) {
+		return buffer[pos];
+	}
+
+	@Override
+	String unescape(int begin, int end) {
+		if(scratch==null || scratch.length<end-begin) scratch = new char[Math.max(end-begin, 256)];
+		int n = unescape(begin, end, this);
+		return new String(scratch, 0, n);
+	}
+
+	@Override
+	public void put(int pos, int ch) {
+		scratch[pos] = (char)ch;
+	}
+}
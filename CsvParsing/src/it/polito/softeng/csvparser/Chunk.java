@@ -0,0 +1,62 @@
+package it.polito.softeng.csvparser;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A portion of a file used for parallel parsing.
+ * <p>
+ * Since a chunk is not known to start inside or outside a quoted
+ * cell, the scan counts the row beginnings for both cases; the actual
+ * case is known once the parity of the quotes in the previous chunks
+ * has been computed.
+ * A row begins at a character that is not a line terminator, preceded by a
+ * line terminator, and after an even number of quotes; therefore
+ * the quotes are expected to appear only around cells as per RFC 4180.
+ *
+ * @version 0.6
+ */
+class Chunk {
+
+	final long from;
+	final long to;
+	/** parity of the number of quotes in the chunk */
+	int quotes;
+	/** position of the first row, when starting outside (0) or inside (1) quotes */
+	final long[] first = {-1,-1};
+	/** number of rows beginning in the chunk, when starting outside (0) or inside (1) quotes */
+	final long[] rows = new long[2];
+
+	Chunk(long from, long to){
+		this.from = from;
+		this.to = to;
+	}
+
+	/**
+	 * Scans the chunk looking for the beginning of the rows
+	 */
+	Chunk scan(FileChannel channel, CsvDialect dialect) throws IOException{
+		long offset = from>0 ? from-1 : from;
+		MappedByteBuffer b = channel.map(FileChannel.MapMode.READ_ONLY, offset, to-offset);
+		byte[] classes = dialect.classes;
+		int q=0;
+		boolean eol = from==0 || isEol(classes, b.get(0));
+		for(int i=(int)(from-offset); i<b.limit(); ++i){
+			byte ch = b.get(i);
+			boolean e = isEol(classes, ch);
+			if(eol && !e){
+				if(first[q]==-1) first[q] = offset+i;
+				rows[q]++;
+			}
+			if(ch>=0 && classes[ch]==CsvDialect.C_QUOTE) q^=1;
+			eol = e;
+		}
+		quotes = q;
+		return this;
+	}
+
+	private static boolean isEol(byte[] classes, byte ch){
+		return ch>=0 && (classes[ch]==CsvDialect.C_LF || classes[ch]==CsvDialect.C_CR);
+	}
+}
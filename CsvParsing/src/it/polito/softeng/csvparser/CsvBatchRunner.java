@@ -0,0 +1,206 @@
+package it.polito.softeng.csvparser;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Parses several files concurrently, each one with its own {@link CsvParser}.
+ * <p>
+ * The typical usage:
+ * <pre>
+	CsvBatchRunner runner = new CsvBatchRunner(8);
+	CsvBatchRunner.Result r = runner.run(Paths.get("extracts"), "*.csv",
+								(file, parser) -&gt; parser.addProcessor(new ColumnProfiler()));
+	System.out.println(r.total);
+</pre>
+ * The number of files open at the same time is bounded; the files are parsed
+ * on a pool with as many threads, unless a different executor is given,
+ * e.g. one running each task on a virtual thread on the JDKs supporting them.
+ * The failure of a file does not stop the parsing of the others.
+ *
+ * @version 0.6
+ */
+public class CsvBatchRunner {
+
+	/**
+	 * Configures the parser of a file, typically adding the processors
+	 */
+	@FunctionalInterface
+	public interface Setup {
+		/**
+		 * Method called before parsing the file
+		 *
+		 * @param file the file
+		 * @param parser the parser of the file
+		 * @throws IOException in case of I/O error
+		 */
+		void configure(Path file, CsvParser parser) throws IOException;
+	}
+
+	/**
+	 * The outcome of the parsing of the files
+	 */
+	public static class Result {
+		/** Statistics of the files parsed successfully, in the order of the files */
+		public final Map<Path,CsvParser.Stats> files;
+
+		/** Failures of the files, in the order of the files */
+		public final Map<Path,Exception> failures;
+
+		/** Total statistics, the elapsed time is the one of the whole batch */
+		public final CsvParser.Stats total;
+
+		Result(Map<Path,CsvParser.Stats> files, Map<Path,Exception> failures, Duration elapsed){
+			this.files = Collections.unmodifiableMap(files);
+			this.failures = Collections.unmodifiableMap(failures);
+			long rows=0, cells=0, chars=0;
+			for(CsvParser.Stats s : files.values()){
+				rows += s.rows;
+				cells += s.cells;
+				chars += s.chars;
+			}
+			total = new CsvParser.Stats(elapsed, rows, cells, chars);
+		}
+
+		public String toString(){
+			return files.size() + " files, " + failures.size() + " failures. " + total;
+		}
+	}
+
+	private final ExecutorService executor;
+	private final int maxOpenFiles;
+	private Charset charset = StandardCharsets.UTF_8;
+	private CsvDialect dialect = CsvDialect.DEFAULT;
+
+	/**
+	 * Builds a runner parsing the files on a pool of threads
+	 *
+	 * @param maxOpenFiles the maximum number of files parsed at the same time
+	 */
+	public CsvBatchRunner(int maxOpenFiles){
+		this(null, maxOpenFiles);
+	}
+
+	/**
+	 * Builds a runner parsing the files with the given executor
+	 *
+	 * @param executor the executor running the parsing of the files, it is not shut down by the runner
+	 * @param maxOpenFiles the maximum number of files parsed at the same time
+	 */
+	public CsvBatchRunner(ExecutorService executor, int maxOpenFiles){
+		if(maxOpenFiles<1) throw new IllegalArgumentException("The number of open files must be positive");
+		this.executor = executor;
+		this.maxOpenFiles = maxOpenFiles;
+	}
+
+	/**
+	 * Sets the encoding of the files, UTF-8 by default
+	 *
+	 * @param charset the encoding
+	 */
+	public void setCharset(Charset charset){
+		this.charset = charset;
+	}
+
+	/**
+	 * Sets the dialect of the files
+	 *
+	 * @param dialect the dialect
+	 * @see CsvParser#setDialect(CsvDialect)
+	 */
+	public void setDialect(CsvDialect dialect){
+		this.dialect = dialect;
+	}
+
+	/**
+	 * Parses the files of a directory matching the given pattern, in the order of their names
+	 *
+	 * @param dir the directory
+	 * @param glob the pattern of the file names, e.g. <code>"*.csv"</code>
+	 * @param setup configures the parser of each file
+	 * @return the outcome of the parsing
+	 * @throws IOException if the directory cannot be read
+	 * @see java.nio.file.FileSystem#getPathMatcher(String)
+	 */
+	public Result run(Path dir, String glob, Setup setup) throws IOException{
+		List<Path> files = new ArrayList<>();
+		try(DirectoryStream<Path> ds = Files.newDirectoryStream(dir, glob)){
+			for(Path p : ds){
+				if(Files.isRegularFile(p)) files.add(p);
+			}
+		}
+		Collections.sort(files);
+		return run(files, setup);
+	}
+
+	/**
+	 * Parses the given files
+	 *
+	 * @param files the files
+	 * @param setup configures the parser of each file
+	 * @return the outcome of the parsing
+	 * @throws InterruptedIOException if the thread is interrupted while waiting
+	 */
+	public Result run(List<Path> files, Setup setup) throws InterruptedIOException{
+		Instant beginTime = Instant.now();
+		ExecutorService ex = executor!=null ? executor : Executors.newFixedThreadPool(maxOpenFiles, r -> {
+			Thread t = new Thread(r, "CsvBatchRunner");
+			t.setDaemon(true);
+			return t;
+		});
+		Semaphore open = new Semaphore(maxOpenFiles);
+		Map<Path,CsvParser.Stats> stats = new LinkedHashMap<>();
+		Map<Path,Exception> failures = new LinkedHashMap<>();
+		try{
+			List<Future<CsvParser.Stats>> results = new ArrayList<>();
+			for(Path file : files){
+				results.add(ex.submit(() -> parse(file, setup, open)));
+			}
+			for(int i=0; i<files.size(); ++i){
+				try {
+					stats.put(files.get(i), results.get(i).get());
+				} catch (ExecutionException e) {
+					Throwable t = e.getCause();
+					if(t instanceof Error) throw (Error)t;
+					failures.put(files.get(i), (Exception)t);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}finally{
+			if(executor==null) ex.shutdownNow();
+		}
+		return new Result(stats, failures, Duration.between(beginTime, Instant.now()));
+	}
+
+	private CsvParser.Stats parse(Path file, Setup setup, Semaphore open) throws IOException, InterruptedException{
+		open.acquire();
+		try(FileChannel channel = FileChannel.open(file)){
+			CsvParser p = new CsvParser(channel, charset);
+			p.setDialect(dialect);
+			setup.configure(file, p);
+			return p.parse();
+		}finally{
+			open.release();
+		}
+	}
+}
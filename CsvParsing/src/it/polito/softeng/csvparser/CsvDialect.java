@@ -0,0 +1,335 @@
+package it.polito.softeng.csvparser;
+
+/**
+ * Describes the format of a CSV file: the separator, the quote and escape characters,
+ * the comment character and the line terminators.
+ * <p>
+ * The default dialect conforms with <a href="https://tools.ietf.org/html/rfc4180">IETF RFC 4180</a>,
+ * with the separator detected among comma, semicolon, and tab. Other dialects
+ * are derived from the predefined ones, e.g. for pipe-delimited files:
+ * <pre>
+	p.setDialect(CsvDialect.RFC4180.withSeparator('|'));
+</pre>
+ * The dialect is compiled into the transition table of the state machine
+ * used by the parser, so that any dialect is parsed by the same loop.
+ *
+ * @see CsvParser#setDialect(CsvDialect)
+ *
+ * @version 0.6
+ */
+public final class CsvDialect {
+
+	/** Character used when the dialect has no such character, or to detect the separator */
+	public static final char NONE = '\uFFFF';
+
+	/** RFC 4180 with the separator detected among comma, semicolon, and tab */
+	public static final CsvDialect DEFAULT = new CsvDialect(NONE, '"', '"', NONE, "\r\n");
+
+	/** RFC 4180 with comma separator */
+	public static final CsvDialect RFC4180 = new CsvDialect(',', '"', '"', NONE, "\r\n");
+
+	/** Tab separated values */
+	public static final CsvDialect TSV = new CsvDialect('\t', '"', '"', NONE, "\r\n");
+
+	private final char separator;
+	private final char quote;
+	private final char escape;
+	private final char comment;
+	private final String terminators;
+
+	/** class of each ASCII character */
+	final byte[] classes;
+	/** next state and action, indexed by state and class, {@code null} if the separator is not known */
+	final int[] table;
+
+	/**
+	 * Builds a new dialect
+	 *
+	 * @param separator the separator of the cells, or {@link #NONE} to detect it
+	 * @param quote the character enclosing the cells, or {@link #NONE} if cells are not quoted
+	 * @param escape the character escaping the next character within quoted cells,
+	 * 		it can be the same as <code>quote</code> meaning that quotes are doubled
+	 * 		as per RFC 4180, or {@link #NONE}
+	 * @param comment the character beginning the rows to be ignored, or {@link #NONE}
+	 * @param terminators the line terminators, any combination of <code>'\r'</code>
+	 * 		and <code>'\n'</code>
+	 * @throws IllegalArgumentException if the characters are not ASCII or they are not distinct
+	 */
+	public CsvDialect(char separator, char quote, char escape, char comment, String terminators){
+		if(terminators.isEmpty() || !terminators.replace("\r","").replace("\n","").isEmpty()){
+			throw new IllegalArgumentException("Line terminators must be CR and/or LF");
+		}
+		this.separator = separator;
+		this.quote = quote;
+		this.escape = escape;
+		this.comment = comment;
+		this.terminators = terminators;
+		char[] chars = {separator, quote, escape, comment};
+		for(int i=0; i<chars.length; ++i){
+			char c = chars[i];
+			if(c==NONE) continue;
+			if(c>0x7F || c=='\r' || c=='\n'){
+				throw new IllegalArgumentException("Invalid character in dialect: " + (int)c);
+			}
+			for(int j=0; j<i; ++j){
+				if(c==chars[j] && !(i==2 && j==1)){
+					throw new IllegalArgumentException("Duplicate character in dialect: '" + c + "'");
+				}
+			}
+		}
+		classes = new byte[128];
+		if(terminators.indexOf('\n')>=0) classes['\n'] = C_LF;
+		if(terminators.indexOf('\r')>=0) classes['\r'] = C_CR;
+		if(comment!=NONE) classes[comment] = C_COMMENT;
+		if(escape!=NONE && escape!=quote) classes[escape] = C_ESCAPE;
+		if(quote!=NONE) classes[quote] = C_QUOTE;
+		if(separator!=NONE){
+			classes[separator] = C_SEP;
+			table = compile();
+		}else{
+			table = null;
+		}
+	}
+
+	/**
+	 * Builds a new RFC 4180 dialect with the given separator
+	 *
+	 * @param separator the separator of the cells
+	 */
+	public CsvDialect(char separator){
+		this(separator, '"', '"', NONE, "\r\n");
+	}
+
+	/**
+	 * Derives a dialect with a different separator
+	 * @param separator the separator of the cells, or {@link #NONE} to detect it
+	 * @return the new dialect
+	 */
+	public CsvDialect withSeparator(char separator){
+		return new CsvDialect(separator, quote, escape, comment, terminators);
+	}
+
+	/**
+	 * Derives a dialect with a different quote character,
+	 * if the escape character was the quote it is changed as well
+	 * @param quote the quote character, or {@link #NONE}
+	 * @return the new dialect
+	 */
+	public CsvDialect withQuote(char quote){
+		return new CsvDialect(separator, quote, escape==this.quote ? quote : escape, comment, terminators);
+	}
+
+	/**
+	 * Derives a dialect with a different escape character
+	 * @param escape the escape character, or {@link #NONE}
+	 * @return the new dialect
+	 */
+	public CsvDialect withEscape(char escape){
+		return new CsvDialect(separator, quote, escape, comment, terminators);
+	}
+
+	/**
+	 * Derives a dialect with a different comment character
+	 * @param comment the comment character, or {@link #NONE}
+	 * @return the new dialect
+	 */
+	public CsvDialect withComment(char comment){
+		return new CsvDialect(separator, quote, escape, comment, terminators);
+	}
+
+	/**
+	 * Derives a dialect with different line terminators
+	 * @param terminators any combination of <code>'\r'</code> and <code>'\n'</code>
+	 * @return the new dialect
+	 */
+	public CsvDialect withLineTerminators(String terminators){
+		return new CsvDialect(separator, quote, escape, comment, terminators);
+	}
+
+	/**
+	 * The separator of the cells
+	 * @return the separator, or {@link #NONE} if it is detected by the parser
+	 */
+	public char getSeparator(){
+		return separator;
+	}
+
+	/**
+	 * The quote character
+	 * @return the quote, or {@link #NONE}
+	 */
+	public char getQuote(){
+		return quote;
+	}
+
+	/**
+	 * The escape character within quoted cells
+	 * @return the escape character, or {@link #NONE}
+	 */
+	public char getEscape(){
+		return escape;
+	}
+
+	/**
+	 * The character beginning the comment rows
+	 * @return the comment character, or {@link #NONE}
+	 */
+	public char getComment(){
+		return comment;
+	}
+
+	/**
+	 * The line terminators
+	 * @return the terminators
+	 */
+	public String getLineTerminators(){
+		return terminators;
+	}
+
+	/**
+	 * Checks whether the rows can be located by counting the quotes,
+	 * as needed by the parallel parsing
+	 */
+	boolean isSplittable(){
+		return comment==NONE && (escape==NONE || escape==quote);
+	}
+
+	/**
+	 * The characters that end a run of unquoted content
+	 */
+	int[] stopUnquoted(){
+		char t1 = terminators.charAt(0);
+		char t2 = terminators.charAt(terminators.length()-1);
+		return new int[]{separator, t1, t2};
+	}
+
+	/**
+	 * The characters that end a run of quoted content
+	 */
+	int[] stopQuoted(){
+		int e = classes['\n']==C_LF ? '\n' : quote;
+		return new int[]{quote, escape==NONE ? quote : escape, e};
+	}
+
+	@Override
+	public String toString(){
+		return "CsvDialect[separator=" + show(separator) + ", quote=" + show(quote) +
+				", escape=" + show(escape) + ", comment=" + show(comment) +
+				", terminators=" + terminators.replace("\r","CR").replace("\n","LF") + "]";
+	}
+
+	private static String show(char c){
+		return c==NONE ? "none" : c=='\t' ? "tab" : "'" + c + "'";
+	}
+
+	// Character classes
+	static final int C_OTHER=0;
+	static final int C_SEP=1;
+	static final int C_QUOTE=2;
+	static final int C_ESCAPE=3;
+	static final int C_LF=4;
+	static final int C_CR=5;
+	static final int C_COMMENT=6;
+	/** number of bits of the class in the index of the table */
+	static final int CLASS_BITS=3;
+
+	// States
+	static final int START=0;
+	static final int UNQUOTED=1;
+	static final int ENDROW=2;
+	static final int QUOTED=3;
+	static final int DQUOTE=4;
+	static final int CR=5;
+	static final int QUOTEBEGIN=6;
+	static final int ESCAPED=7;
+	static final int COMMENT=8;
+	private static final int STATES=9;
+
+	// Actions
+	static final int A_NONE=0;
+	/** adds the character to the cell */
+	static final int A_ADD=1;
+	/** adds the character and the following unquoted content */
+	static final int A_RUN_UNQUOTED=2;
+	/** adds the character and the following quoted content */
+	static final int A_RUN_QUOTED=3;
+	static final int A_BEGIN=4;
+	static final int A_BEGIN_ADD=5;
+	static final int A_CLOSE=6;
+	static final int A_BEGIN_CLOSE=7;
+	static final int A_CLOSE_ROW=8;
+	static final int A_BEGIN_CLOSE_ROW=9;
+	/** skips a blank line */
+	static final int A_NEWROW=10;
+	/** marks the cell as escaped, the character is removed when the cell is unescaped */
+	static final int A_SKIP=11;
+	/** adds the character, the previous quote is removed when the cell is unescaped */
+	static final int A_SKIP_ADD=12;
+	/** adds the escape character, which is removed when the cell is unescaped */
+	static final int A_ESCAPE=13;
+	static final int A_BEGIN_ESCAPE=14;
+	/** moves past the comment */
+	static final int A_RUN_COMMENT=15;
+	/** number of bits of the action in the entries of the table */
+	static final int ACTION_BITS=4;
+
+	/**
+	 * Checks whether the character causing the action is part of the unescaped content
+	 */
+	static boolean emits(int action){
+		return action==A_ADD || action==A_RUN_QUOTED || action==A_BEGIN_ADD || action==A_SKIP_ADD;
+	}
+
+	/**
+	 * Builds the transition table of the state machine
+	 */
+	private static int[] compile(){
+		int[] t = new int[STATES<<CLASS_BITS];
+		for(int c=0; c<1<<CLASS_BITS; ++c){
+			// default transitions
+			set(t, START, c, UNQUOTED, A_BEGIN_ADD);
+			set(t, UNQUOTED, c, UNQUOTED, A_RUN_UNQUOTED);
+			set(t, ENDROW, c, UNQUOTED, A_BEGIN_ADD);
+			set(t, QUOTEBEGIN, c, QUOTED, A_BEGIN_ADD);
+			set(t, QUOTED, c, QUOTED, A_RUN_QUOTED);
+			set(t, DQUOTE, c, DQUOTE, A_SKIP_ADD); // unexpected character after a quote
+			set(t, CR, c, QUOTED, A_ADD);
+			set(t, ESCAPED, c, QUOTED, A_ADD);
+			set(t, COMMENT, c, COMMENT, A_RUN_COMMENT);
+		}
+		for(int c : new int[]{C_LF, C_CR}){
+			set(t, START, c, ENDROW, A_BEGIN_CLOSE_ROW);
+			set(t, UNQUOTED, c, ENDROW, A_CLOSE_ROW);
+			set(t, ENDROW, c, ENDROW, A_NEWROW);
+			set(t, DQUOTE, c, ENDROW, A_CLOSE_ROW);
+			set(t, COMMENT, c, ENDROW, A_NEWROW);
+		}
+		set(t, START, C_SEP, START, A_BEGIN_CLOSE);
+		set(t, UNQUOTED, C_SEP, START, A_CLOSE);
+		set(t, ENDROW, C_SEP, START, A_BEGIN_CLOSE);
+		set(t, DQUOTE, C_SEP, START, A_CLOSE);
+
+		set(t, START, C_QUOTE, QUOTEBEGIN, A_NONE);
+		set(t, ENDROW, C_QUOTE, QUOTEBEGIN, A_NONE);
+		set(t, QUOTEBEGIN, C_QUOTE, DQUOTE, A_BEGIN);
+		set(t, QUOTED, C_QUOTE, DQUOTE, A_NONE);
+		set(t, DQUOTE, C_QUOTE, QUOTED, A_SKIP_ADD);
+		set(t, CR, C_QUOTE, DQUOTE, A_NONE);
+
+		// a LF within quotes is kept, a CR following it is dropped
+		set(t, QUOTEBEGIN, C_LF, CR, A_BEGIN_ADD);
+		set(t, QUOTED, C_LF, CR, A_ADD);
+		set(t, CR, C_CR, QUOTED, A_SKIP);
+
+		set(t, QUOTEBEGIN, C_ESCAPE, ESCAPED, A_BEGIN_ESCAPE);
+		set(t, QUOTED, C_ESCAPE, ESCAPED, A_ESCAPE);
+		set(t, CR, C_ESCAPE, ESCAPED, A_ESCAPE);
+
+		set(t, ENDROW, C_COMMENT, COMMENT, A_NONE);
+		return t;
+	}
+
+	private static void set(int[] t, int state, int cls, int next, int action){
+		t[state<<CLASS_BITS | cls] = next<<ACTION_BITS | action;
+	}
+}
@@ -0,0 +1,309 @@
+package it.polito.softeng.csvparser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Generator of synthetic CSV content, used for benchmarking and load testing.
+ * <p>
+ * The content is determined by the seed and by the shape of the file:
+ * the same seed and shape generate the same bytes. The content is generated
+ * while it is read, therefore files of any size can be parsed without
+ * storing them, e.g.:
+ * <pre>
+	CsvGenerator g = new CsvGenerator(42);
+	g.setColumns(20);
+	g.setQuoteRatio(0.3);
+	CsvParser p = new CsvParser(g.open(100_000_000L), StandardCharsets.UTF_8);
+</pre>
+ * The cells contain ASCII letters, digits, and spaces; the first row contains
+ * the headers <code>C1</code>, <code>C2</code>, ...
+ *
+ * @version 0.6
+ */
+public class CsvGenerator {
+
+	/** Size of the block of random characters the cells are taken from */
+	private static final int ALPHABET_SIZE = 1<<16;
+	private static final String CHARACTERS =
+			"abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789     ";
+
+	private final long seed;
+	private int columns = 8;
+	private int minLength = 1;
+	private int maxLength = 12;
+	private double quoteRatio = 0.1;
+	private double newlineRatio = 0.1;
+	private double escapeRatio = 0.1;
+	private double emptyRatio = 0.05;
+	private char separator = ',';
+	private String terminator = "\r\n";
+
+	/**
+	 * Builds a generator
+	 *
+	 * @param seed the seed of the random content
+	 */
+	public CsvGenerator(long seed){
+		this.seed = seed;
+	}
+
+	/**
+	 * Sets the number of columns, 8 by default
+	 *
+	 * @param columns the number of columns
+	 */
+	public void setColumns(int columns){
+		if(columns<1) throw new IllegalArgumentException("Invalid number of columns " + columns);
+		this.columns = columns;
+	}
+
+	/**
+	 * Sets the length of the non empty cells, which is uniformly
+	 * distributed between the bounds, from 1 to 12 by default.
+	 *
+	 * @param min the minimum length
+	 * @param max the maximum length
+	 */
+	public void setCellLength(int min, int max){
+		if(min<1 || max<min || max>ALPHABET_SIZE){
+			throw new IllegalArgumentException("Invalid cell length " + min + ".." + max);
+		}
+		this.minLength = min;
+		this.maxLength = max;
+	}
+
+	/**
+	 * Sets the ratio of non empty cells enclosed in quotes, 0.1 by default
+	 *
+	 * @param ratio the ratio, between 0 and 1
+	 */
+	public void setQuoteRatio(double ratio){
+		quoteRatio = check(ratio);
+	}
+
+	/**
+	 * Sets the ratio of quoted cells containing a line terminator, 0.1 by default
+	 *
+	 * @param ratio the ratio, between 0 and 1
+	 */
+	public void setNewlineRatio(double ratio){
+		newlineRatio = check(ratio);
+	}
+
+	/**
+	 * Sets the ratio of quoted cells containing an escaped quote (<code>""</code>), 0.1 by default
+	 *
+	 * @param ratio the ratio, between 0 and 1
+	 */
+	public void setEscapeRatio(double ratio){
+		escapeRatio = check(ratio);
+	}
+
+	/**
+	 * Sets the ratio of empty cells, 0.05 by default
+	 *
+	 * @param ratio the ratio, between 0 and 1
+	 */
+	public void setEmptyRatio(double ratio){
+		emptyRatio = check(ratio);
+	}
+
+	/**
+	 * Sets the separator, comma by default
+	 *
+	 * @param separator the separator
+	 */
+	public void setSeparator(char separator){
+		if(separator>0x7F || separator=='"' || separator=='\r' || separator=='\n' ||
+		   CHARACTERS.indexOf(separator)>=0){
+			throw new IllegalArgumentException("Invalid separator '" + separator + "'");
+		}
+		this.separator = separator;
+	}
+
+	/**
+	 * Sets the line terminator, CRLF by default
+	 *
+	 * @param terminator either <code>"\r\n"</code> or <code>"\n"</code>
+	 */
+	public void setLineTerminator(String terminator){
+		if(!terminator.equals("\r\n") && !terminator.equals("\n")){
+			throw new IllegalArgumentException("Line terminator must be CRLF or LF");
+		}
+		this.terminator = terminator;
+	}
+
+	private static double check(double ratio){
+		if(!(ratio>=0 && ratio<=1)) throw new IllegalArgumentException("Invalid ratio " + ratio);
+		return ratio;
+	}
+
+	/**
+	 * Opens a stream generating the content
+	 *
+	 * @param rows the number of rows after the headers
+	 * @return the stream of ASCII bytes
+	 */
+	public InputStream open(long rows){
+		return new Content(rows);
+	}
+
+	/**
+	 * Writes the content to a stream
+	 *
+	 * @param out the stream, it is not closed
+	 * @param rows the number of rows after the headers
+	 * @return the number of bytes written
+	 * @throws IOException in case of I/O error
+	 */
+	public long write(OutputStream out, long rows) throws IOException{
+		Content c = new Content(rows);
+		long n = 0;
+		while(c.fill()){
+			out.write(c.buf, 0, c.lim);
+			n += c.lim;
+			c.lim = 0;
+		}
+		return n;
+	}
+
+	/**
+	 * Writes the content to a file
+	 *
+	 * @param file the file
+	 * @param rows the number of rows after the headers
+	 * @return the number of bytes written
+	 * @throws IOException in case of I/O error
+	 */
+	public long write(Path file, long rows) throws IOException{
+		try(OutputStream out = Files.newOutputStream(file)){
+			return write(out, rows);
+		}
+	}
+
+	/**
+	 * The generated content, produced a block of rows at a time
+	 */
+	private class Content extends InputStream {
+		private final SplittableRandom random = new SplittableRandom(seed);
+		private final byte[] alphabet = new byte[ALPHABET_SIZE];
+		private final byte[] term = terminator.getBytes();
+		private final long rows;
+		private long row = -1; // the headers
+		private byte[] buf = new byte[1<<16];
+		private int pos;
+		private int lim;
+
+		Content(long rows){
+			this.rows = rows;
+			for(int i=0; i<alphabet.length; ++i){
+				alphabet[i] = (byte)CHARACTERS.charAt(random.nextInt(CHARACTERS.length()));
+			}
+		}
+
+		/**
+		 * Generates rows until the buffer is almost full
+		 *
+		 * @return {@code false} when all the rows have been generated
+		 */
+		private boolean fill(){
+			pos = 0;
+			lim = 0;
+			while(row<rows && lim<buf.length/2){
+				if(row<0){
+					for(int c=0; c<columns; ++c){
+						if(c>0) put(separator);
+						put('C');
+						byte[] h = Integer.toString(c+1).getBytes();
+						put(h, 0, h.length);
+					}
+				}else{
+					row();
+				}
+				put(term, 0, term.length);
+				row++;
+			}
+			return lim>0;
+		}
+
+		private void row(){
+			SplittableRandom r = random;
+			for(int c=0; c<columns; ++c){
+				if(c>0) put(separator);
+				if(r.nextDouble()<emptyRatio){
+					if(columns==1){ // otherwise the row would be a blank line
+						put('"');
+						put('"');
+					}
+					continue;
+				}
+				int len = minLength + r.nextInt(maxLength-minLength+1);
+				int from = r.nextInt(ALPHABET_SIZE-len+1);
+				if(r.nextDouble()<quoteRatio){
+					int nl = r.nextDouble()<newlineRatio ? r.nextInt(len+1) : -1;
+					int dq = r.nextDouble()<escapeRatio ? r.nextInt(len+1) : -1;
+					put('"');
+					int i = 0;
+					while(i<len){
+						int next = len;
+						if(nl>=i && nl<next) next = nl;
+						if(dq>=i && dq<next) next = dq;
+						put(alphabet, from+i, next-i);
+						if(next==nl){
+							put(term, 0, term.length);
+							nl = -1;
+						}
+						if(next==dq){
+							put('"');
+							put('"');
+							dq = -1;
+						}
+						i = next;
+					}
+					put('"');
+				}else{
+					put(alphabet, from, len);
+				}
+			}
+		}
+
+		private void ensure(int n){
+			if(lim+n>buf.length){
+				buf = Arrays.copyOf(buf, Math.max(lim+n, buf.length*2));
+			}
+		}
+
+		private void put(int b){
+			ensure(1);
+			buf[lim++] = (byte)b;
+		}
+
+		private void put(byte[] b, int off, int len){
+			ensure(len);
+			System.arraycopy(b, off, buf, lim, len);
+			lim += len;
+		}
+
+		@Override
+		public int read() {
+			if(pos==lim && !fill()) return -1;
+			return buf[pos++] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if(len==0) return 0;
+			if(pos==lim && !fill()) return -1;
+			int n = Math.min(len, lim-pos);
+			System.arraycopy(buf, pos, b, off, n);
+			pos += n;
+			return n;
+		}
+	}
+}
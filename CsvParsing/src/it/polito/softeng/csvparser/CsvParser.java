@@ -4,14 +4,29 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Spliterators;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * This class implements a high-performance streaming parser for CSV files.
@@ -28,13 +43,14 @@ import java.util.Map;
  * <pre>
 	CsvParser p = new CsvParser("file.csv");
 	
-	// empty cells processor
-	Processor proc = new EmptyCells();
+	// data profiling processor
+	Processor proc = new ColumnProfiler();
 	p.addProcessor(proc);
 	
 	// start parsing
 	Stats s = p.parse();
 </pre>
+ * The rows can also be pulled, through {@link #stream(String...)} or {@link #iterator(String...)}.
 
  * 
  * @author MTk (Marco Torchiano)
@@ -43,24 +59,30 @@ import java.util.Map;
  */
 public class CsvParser {
 	
-	private static final char[] CSV_SEPARATORS = {',',';','\t'};
-	private static char CSV_SEPARATOR = ';';
 	private List<Processor> processors = new LinkedList<Processor>();
-	private Reader in;
+	private List<BatchProcessor> batchProcessors = new LinkedList<BatchProcessor>();
 
 	/**
 	 * Build a parser for the given file
+	 * <p>
+	 * A file compressed with gzip, or a zip archive, is recognized from its
+	 * content and decompressed on a separate thread while it is parsed;
+	 * the first file contained in the archive is parsed.
 	 * 
 	 * @param filename full path of the file to be opened
 	 * 
 	 * @throws IOException if any IO problem is detected
 	 */
 	public CsvParser(String filename) throws IOException{
-		this(new FileInputStream(filename));
+		this(Decompressor.open(new FileInputStream(filename),null));
 	}
 
 	/**
 	 * Build a parser for the given file
+	 * <p>
+	 * A file compressed with gzip, or a zip archive, is recognized from its
+	 * content and decompressed on a separate thread while it is parsed;
+	 * the first file contained in the archive is parsed.
 	 * 
 	 * @param filename full path of the file to be opened
 	 * @param encoding the encoding to be used to open the file
@@ -68,7 +90,24 @@ public class CsvParser {
 	 * @throws IOException if any IO problem is detected
 	 */
 	public CsvParser(String filename,String encoding) throws IOException{
-		this(new FileInputStream(filename),encoding);
+		this(Decompressor.open(new FileInputStream(filename),null),encoding);
+	}
+
+	/**
+	 * Build a parser for a file contained in a zip archive
+	 * <p>
+	 * The entry is decompressed on a separate thread while it is parsed.
+	 * 
+	 * @param zipfile full path of the zip archive
+	 * @param entry name of the file in the archive, 
+	 * 				or <code>null</code> for the first file in the archive
+	 * @param charset the encoding of the file
+	 * 
+	 * @throws java.io.FileNotFoundException if the archive does not contain the entry
+	 * @throws IOException if any IO problem is detected or the file is not a zip archive
+	 */
+	public CsvParser(String zipfile,String entry,Charset charset) throws IOException{
+		this(Decompressor.open(new FileInputStream(zipfile),entry),charset);
 	}
 
 	/**
@@ -79,7 +118,7 @@ public class CsvParser {
 	 * @throws IOException if any IO problem is detected
 	 */
 	public CsvParser(InputStream ins) throws IOException{
-		in = new InputStreamReader(ins);
+		this(ins,Charset.defaultCharset());
 	}
 
 	/**
@@ -91,10 +130,84 @@ public class CsvParser {
 	 * @throws IOException if any IO problem is detected
 	 */
 	public CsvParser(InputStream ins,String encoding) throws IOException{
-		in = new InputStreamReader(ins,encoding);
+		this(ins,charset(encoding));
+	}
+
+	/**
+	 * Build a parser for the given file
+	 * <p>
+	 * When the encoding is ASCII-compatible (e.g. UTF-8 or ISO-8859-1)
+	 * the input is tokenized directly on the bytes and the cells are
+	 * decoded only when read by a {@link Processor}.
+	 * 
+	 * @param ins input stream to read the CSV from
+	 * @param charset the encoding to be used to read the stream
+	 * 
+	 * @throws IOException if any IO problem is detected
+	 */
+	public CsvParser(InputStream ins,Charset charset) throws IOException{
+		if(ByteTokenizer.isAsciiCompatible(charset)){
+			if(ins instanceof FileInputStream){
+				FileChannel channel = ((FileInputStream)ins).getChannel();
+				inputSize = channel.size()-channel.position();
+			}
+			tok = new ByteTokenizer(ins,charset);
+		}else{
+			tok = new CharTokenizer(new InputStreamReader(ins,charset));
+		}
+		if(ins instanceof Decompressor) tok.decompressor = (Decompressor)ins;
 	}
 
 
+	/**
+	 * Build a parser that maps the given file into memory
+	 * <p>
+	 * The file is scanned in place through a mapped window of
+	 * one gigabyte, which is moved forward along the file; this
+	 * mode is convenient for large files already in the page cache.
+	 * The encoding must be ASCII-compatible (e.g. UTF-8 or ISO-8859-1),
+	 * otherwise the channel is read through a decoder.
+	 * A compressed file (gzip or zip) is read as a stream and decompressed
+	 * on a separate thread.
+	 * 
+	 * @param channel file channel to read the CSV from, starting at its current position
+	 * @param charset the encoding of the file
+	 * 
+	 * @throws IOException if any IO problem is detected
+	 */
+	public CsvParser(FileChannel channel,Charset charset) throws IOException{
+		this(channel,charset,MappedTokenizer.WINDOW_SIZE);
+	}
+
+	/**
+	 * Build a parser that maps the given file into memory
+	 * using a window of the given size.
+	 * <p>
+	 * The window is enlarged if a single row does not fit into it.
+	 * 
+	 * @param channel file channel to read the CSV from, starting at its current position
+	 * @param charset the encoding of the file
+	 * @param window size in bytes of the mapped window
+	 * 
+	 * @throws IOException if any IO problem is detected
+	 */
+	public CsvParser(FileChannel channel,Charset charset,int window) throws IOException{
+		if(Decompressor.isCompressed(channel)){
+			InputStream ins = Decompressor.open(Channels.newInputStream(channel),null);
+			if(ByteTokenizer.isAsciiCompatible(charset)){
+				tok = new ByteTokenizer(ins,charset);
+			}else{
+				tok = new CharTokenizer(new InputStreamReader(ins,charset));
+			}
+			if(ins instanceof Decompressor) tok.decompressor = (Decompressor)ins;
+		}else if(ByteTokenizer.isAsciiCompatible(charset)){
+			inputSize = channel.size()-channel.position();
+			tok = new MappedTokenizer(channel,charset,window);
+		}else{
+			tok = new CharTokenizer(Channels.newReader(channel,charset.newDecoder(),-1));
+		}
+	}
+
 	/**
 	 * Build a parser for the given file
 	 * 
@@ -103,7 +216,15 @@ public class CsvParser {
 	 * @throws IOException if any IO problem is detected
 	 */
 	public CsvParser(Reader in) throws IOException{
-		this.in = in;
+		tok = new CharTokenizer(in);
+	}
+
+	private static Charset charset(String encoding) throws UnsupportedEncodingException{
+		try{
+			return Charset.forName(encoding);
+		}catch(IllegalArgumentException e){
+			throw new UnsupportedEncodingException(encoding);
+		}
 	}
 
 	/**
@@ -118,132 +239,442 @@ public class CsvParser {
 	public void addProcessor(Processor proc){
 		processors.add(proc);
 	}
+
+	/**
+	 * Adds a new processor receiving the parsed data in batches of rows.
+	 * <p>
+	 * The rows are copied into a batch, in columnar layout, and the
+	 * batch is notified when full; the size of the batches is the
+	 * one set with {@link #setPipeline(int, int, WaitStrategy) setPipeline()}
+	 * or {@value #BATCH_SIZE} rows. The batch processors are ignored by
+	 * the parallel parsing, even when it falls back to sequential parsing.
+	 * 
+	 * @param proc  the processor object implementing the {@link BatchProcessor} interface
+	 */
+	public void addBatchProcessor(BatchProcessor proc){
+		batchProcessors.add(proc);
+	}
+
+	/** Default number of rows in a batch */
+	public static final int BATCH_SIZE = 4096;
 	
 	
 	
-	private char[] buffer = new char[4096];
-	private int begin;
-	private int current;
-	private int end;
-	private int limit;
-	private long row;
-	private long cells;
-	private long charCount=0;
-	private int col;
-	private String[] fields;
-	private Map<String,Integer> titoliIndici;
-	private ArrayList<String> titoliList = new ArrayList<String>();
-	
-	private void start() throws IOException{
-		limit = in.read(buffer);
-		begin = -1;
-		end = -1;
-		current = 0;
-		charCount+=limit;
-		row=0;
-		
-		
-		String s = new String(buffer);
-		long max = 0;
-		for(int i=0; i<CSV_SEPARATORS.length; ++i){
-			char sep =CSV_SEPARATORS[i];
-			long ns = s.chars().filter(ch -> ch == sep ).count();
-			if(ns>max){
-				max = ns;
-				CSV_SEPARATOR = sep;
-			}
+	/**
+	 * Sets the dialect of the CSV, by default it is {@link CsvDialect#DEFAULT}
+	 * where the separator is detected among comma, semicolon, and tab.
+	 * 
+	 * @param dialect the dialect
+	 */
+	public void setDialect(CsvDialect dialect){
+		tok.dialect = dialect;
+	}
+
+	/**
+	 * Sets the default style used to parse the numbers in the cells
+	 * 
+	 * @param style the number style, {@link NumberStyle#PLAIN} by default
+	 * @see Row#getLong(int)
+	 * @see Cell#toLong()
+	 */
+	public void setNumberStyle(NumberStyle style){
+		tok.numbers = style;
+	}
+
+	private long inputSize = -1;
+	private ProgressListener listener;
+	private Duration progressInterval;
+	private volatile boolean cancelled;
+
+	/**
+	 * Sets the listener receiving the progress of the parsing.
+	 * <p>
+	 * The progress is notified on the parsing thread, at most once per interval
+	 * (the clock is checked every {@value ProgressMeter#CHECK_ROWS} rows), and once at the end.
+	 * The size of the input is known for uncompressed files with an ASCII-compatible
+	 * encoding, or when set through {@link #setInputSize(long)}.
+	 * The progress is not notified by the parallel parsing.
+	 * 
+	 * @param listener the listener
+	 * @param interval the minimum time between two notifications
+	 */
+	public void setProgressListener(ProgressListener listener, Duration interval){
+		this.listener = listener;
+		this.progressInterval = interval;
+	}
+
+	/**
+	 * Sets the size of the input, used to estimate the progress when it
+	 * cannot be known by the parser, e.g. the length of an HTTP response.
+	 * 
+	 * @param size the number of characters (bytes for ASCII-compatible encodings)
+	 */
+	public void setInputSize(long size){
+		this.inputSize = size;
+	}
+
+	/**
+	 * Stops the parsing after the current row.
+	 * <p>
+	 * It can be invoked from any thread, e.g. by a processor or a {@link ProgressListener};
+	 * the rows already parsed are processed and the processors receive the 
+	 * {@link Processor#end() end()} notification as usual,
+	 * then the parse method returns the statistics of the rows parsed so far.
+	 */
+	public void cancel(){
+		cancelled = true;
+	}
+
+	/**
+	 * Tells whether the parsing was cancelled
+	 * 
+	 * @return {@code true} if {@link #cancel()} was invoked
+	 */
+	public boolean isCancelled(){
+		return cancelled;
+	}
+
+	private RowIndex index;
+	private int indexCountdown;
+	private RowIndex range;
+	private long rangeFirst;
+	private long rangeEnd = Long.MAX_VALUE;
+	/** rows scanned but not notified, when parsing a range */
+	private long skipped;
+
+	/**
+	 * Enables the construction of a {@link RowIndex} while parsing.
+	 * <p>
+	 * The index is available through {@link #getIndex()} once the whole file has been parsed.
+	 * It is not built by the parallel parsing.
+	 * 
+	 * @param interval the interval between the indexed rows, e.g. {@link RowIndex#INTERVAL}
+	 */
+	public void setIndexing(int interval){
+		if(interval<1) throw new IllegalArgumentException("Interval must be positive");
+		index = new RowIndex(interval);
+		indexCountdown = interval;
+	}
+
+	/**
+	 * Retrieves the index built while parsing
+	 * 
+	 * @return the index, or <code>null</code> if the indexing was not enabled, 
+	 * 			or the parsing was cancelled or is not over yet
+	 * @see #setIndexing(int)
+	 */
+	public RowIndex getIndex(){
+		return index!=null && index.getRows()>0 ? index : null;
+	}
+
+	/**
+	 * Restricts the parsing to a range of rows, using an index to 
+	 * move to the beginning of the range.
+	 * <p>
+	 * The processors receive the headers and then the rows of the range, 
+	 * with their numbers in the file; the statistics count the rows notified.
+	 * The input must be the file the index was built for, opened 
+	 * from the same position, either by name or as a channel.
+	 * 
+	 * @param index the index of the file
+	 * @param first the first row, 1 is the row following the headers
+	 * @param last the row after the last one, or {@link Long#MAX_VALUE} for the rest of the file
+	 */
+	public void setRange(RowIndex index, long first, long last){
+		if(first<1 || last<first){
+			throw new IllegalArgumentException("Invalid range of rows " + first + ".." + last);
 		}
+		this.range = index;
+		this.rangeFirst = first;
+		this.rangeEnd = last;
+	}
 
+	/** Default maximum size of a row, in characters (bytes for ASCII-compatible encodings) */
+	public static final int MAX_ROW_SIZE = 1<<28;
+
+	/**
+	 * Sets the pool the input buffer is taken from, by default {@link BufferPool#SHARED}.
+	 * <p>
+	 * The buffer is taken from the pool when the parsing starts and
+	 * returned at the end, therefore the rows and cells must not be
+	 * accessed after the parsing.
+	 * 
+	 * @param pool the pool, its buffer size is the initial size of the buffer
+	 */
+	public void setBufferPool(BufferPool pool){
+		tok.pool = pool;
 	}
-	
-	private int next() throws IOException{
-		if(current==limit){
-			if(begin>0){
-				System.arraycopy(buffer, begin, buffer, 0, limit-begin);
-				int ns=begin;
-				begin=0;
-				end-=ns;
-				int nl = in.read(buffer, limit-ns, ns);
-				if(nl==-1){
-					return -1;
-				}
-				charCount+=nl;
-				current=limit-ns;
-				limit-=ns-nl;
-			}else{
-				char[] newBuffer = new char[buffer.length*2];
-				System.arraycopy(buffer,0, newBuffer, 0, buffer.length);
-				int nl = in.read(newBuffer, limit, buffer.length);
-				if(nl==-1) return -1;
-				charCount+=nl;
-				limit+=nl;
-				buffer=newBuffer;
+
+	/**
+	 * Sets the maximum size of a row, by default {@value #MAX_ROW_SIZE}.
+	 * <p>
+	 * The buffer is enlarged when a row does not fit into it, up to this size;
+	 * a longer row stops the parsing with an {@link IOException}.
+	 * When the file is mapped into memory, the limit applies to the
+	 * enlargement of the mapped window.
+	 * 
+	 * @param size the maximum size in characters (bytes for ASCII-compatible encodings)
+	 */
+	public void setMaxRowSize(int size){
+		if(size<BufferPool.MIN_SIZE) throw new IllegalArgumentException("Row size must be at least " + BufferPool.MIN_SIZE);
+		tok.maxRowSize = size;
+	}
+
+	/** Default number of values of the cache of an interned column */
+	public static final int INTERNING = 1024;
+
+	private String[] interned;
+	private int internSize;
+
+	/**
+	 * Makes the given columns interned, i.e. the cells of a column with the same
+	 * content are converted by {@link Cell#toString()} and {@link Row#get(int)}
+	 * to the same {@link String}.
+	 * <p>
+	 * Each column has a cache of the most recent values: the cell is looked up
+	 * by its content before creating a new string, therefore the columns with few
+	 * distinct values, e.g. regions or categories, are decoded without allocations
+	 * and the processors that keep their values retain a single copy of each.
+	 * The cache has a bounded size, a column with many distinct values
+	 * evicts the oldest ones and it is decoded as usual.
+	 * 
+	 * @param size the maximum number of values cached for each column, e.g. {@value #INTERNING}
+	 * @param columns the headers of the columns, all the columns if none is given
+	 * @throws IllegalArgumentException if a column is not among the headers, when the parsing starts
+	 */
+	public void setInterning(int size, String... columns){
+		if(size<1) throw new IllegalArgumentException("Invalid cache size " + size);
+		internSize = size;
+		interned = columns;
+	}
+
+	/**
+	 * Creates the caches of the interned columns
+	 */
+	private void intern(String[] fields){
+		if(interned==null) return;
+		Interner[] caches = new Interner[fields.length];
+		if(interned.length==0){
+			for(int i=0; i<fields.length; ++i){
+				caches[i] = new Interner(internSize);
 			}
 		}
-		return buffer[current++];
+		for(String c : interned){
+			Integer i = titoliIndici.get(c);
+			if(i==null) throw new IllegalArgumentException("Unknown column " + c);
+			caches[i] = new Interner(internSize);
+		}
+		tok.interners = caches;
 	}
-	
-	private void beginfield(){
-		begin=current-1;
-		end=begin;
+
+	private Filter filter;
+	private long rejected;
+
+	/**
+	 * Adds a condition selecting the rows notified to the processors;
+	 * the rows must satisfy all the conditions added.
+	 * <p>
+	 * The conditions are evaluated as soon as a row has been tokenized,
+	 * on the views of its cells, and the rows that are rejected are neither
+	 * copied into batches nor notified to any processor, including those
+	 * of the pipeline and of the parallel parsing. The columns of the
+	 * conditions are tokenized even if no processor selects them.
+	 * The rejected rows are counted in the statistics and keep their number.
+	 * 
+	 * @param condition the condition
+	 * @throws IllegalArgumentException (when parsing) if a column of the condition is unknown
+	 */
+	public void addFilter(Filter condition){
+		filter = filter==null ? condition : Filter.and(filter, condition);
+	}
+
+	/**
+	 * Retrieves the number of rows rejected by the filters
+	 * 
+	 * @return the number of rows
+	 * @see #addFilter(Filter)
+	 */
+	public long getRejectedRows(){
+		return rejected;
+	}
+
+	/** Default threshold of the slow rows */
+	public static final Duration SLOW_ROW = Duration.ofMillis(10);
+
+	private Duration slowRow;
+	private Instrumentation probe;
+
+	/**
+	 * Enables the detailed instrumentation of the parsing.
+	 * <p>
+	 * The returned {@link Stats} report the time spent reading the input,
+	 * tokenizing, and in each processor, the number of times the buffer
+	 * was enlarged, the largest cell, and the memory allocated by the
+	 * parsing thread. The rows taking longer than the threshold, from
+	 * the end of the previous row, are reported as JFR events
+	 * (<code>it.polito.softeng.csvparser.SlowRow</code>).
+	 * <p>
+	 * Measuring the rows has a cost, therefore the instrumentation is
+	 * disabled by default; it is ignored by the parallel parsing.
+	 * 
+	 * @param slowRow the threshold of the slow rows, e.g. {@link #SLOW_ROW},
+	 * 			or <code>null</code> to disable the instrumentation
+	 */
+	public void setInstrumentation(Duration slowRow){
+		this.slowRow = slowRow;
 	}
 	
-	private void closefield(){
-		String f = new String(buffer,begin,end-begin);
-		if(fields!=null){
-			fields[col] = f;
-		}else{
-			titoliList.add(f);
+	private int ringSize;
+	private int batchSize = BATCH_SIZE;
+	private WaitStrategy waitStrategy;
+	private Pipeline pipeline;
+
+	/**
+	 * Enables the pipelined mode, where each processor runs on its own thread.
+	 * <p>
+	 * The parser copies the rows into batches, taken from a ring
+	 * of pre-allocated batches that are recycled, and publishes
+	 * each batch when full. The processors consume the batches independently
+	 * so that a slow processor does not stall the parsing, until the ring
+	 * is full. The {@link Processor#end()} method is called on the 
+	 * thread of the processor. The {@link BatchProcessor}s receive the
+	 * batches directly, the other processors receive their rows one at a time.
+	 * <p>
+	 * The {@link Processor#headers(String[]) headers()} method is called on the 
+	 * parsing thread. If a processor throws an exception, the parsing is stopped
+	 * and the exception is thrown by {@link #parse()}.
+	 * 
+	 * @param ringSize the number of batches in the ring
+	 * @param batchSize the number of rows in a batch
+	 * @param wait how threads wait for batches to be published or released
+	 */
+	public void setPipeline(int ringSize, int batchSize, WaitStrategy wait){
+		if(ringSize<1 || batchSize<1){
+			throw new IllegalArgumentException("Ring and batch sizes must be positive");
 		}
-		col++;
-		cells++;
-		//System.out.print("'" + f +  "'  ");
+		this.ringSize = ringSize;
+		this.batchSize = batchSize;
+		this.waitStrategy = wait;
 	}
+
+	private Tokenizer tok;
+	private long row;
+	private long cells;
+	private Map<String,Integer> titoliIndici;
+	private ArrayList<String> titoliList = new ArrayList<String>();
 	
-	private Row currentRow;;
-	private void endrow(){
+	private Row currentRow;
+	private Batch batch;
+	private RowBatch batchView;
+
+	private String[] headers(){
+		for(int i=0; i<tok.col; ++i){
+			titoliList.add(tok.cell(i));
+		}
+		titoliIndici = new HashMap<String,Integer>();
+		for(int i=0; i<titoliList.size(); ++i){
+			titoliIndici.put(titoliList.get(i), i);
+		}
+		return titoliList.toArray(new String[titoliList.size()]);
+	}
+
+	private void endrow() throws IOException{
 		if(row==0){
-			titoliIndici = new HashMap<String,Integer>();
-			for(int i=0; i<titoliList.size(); ++i){
-				titoliIndici.put(titoliList.get(i), i);
-			}
-			fields=titoliList.toArray(new String[titoliList.size()]);
+			String[] fields=headers();
+			intern(fields);
+			Projection all = new Projection(fields);
 			for(Processor e : processors){
-				e.headers(fields);
+				Projection p = new Projection(fields);
+				e.headers(fields,p);
+				all.add(p);
+			}
+			for(BatchProcessor e : batchProcessors){
+				Projection p = new Projection(fields);
+				e.headers(fields,p);
+				all.add(p);
+			}
+			if(filter!=null){
+				filter.bind(fields);
+				filter.select(all);
+			}
+			tok.projection = all.columns();
+			currentRow = new Row(titoliIndici,tok,0);
+			if(waitStrategy!=null){
+				List<BatchProcessor> consumers = new ArrayList<>();
+				for(Processor e : processors){
+					consumers.add(new RowAdapter(e,tok,titoliIndici));
+				}
+				consumers.addAll(batchProcessors);
+				pipeline = new Pipeline(tok,consumers,ringSize,batchSize,waitStrategy);
+				pipeline.start();
+			}else if(!batchProcessors.isEmpty()){
+				batch = new Batch(tok,batchSize);
+				batchView = new RowBatch(tok);
 			}
-			currentRow = new Row(titoliIndici,fields,0);
+		}else if(filter!=null && !accept()){
+			rejected++;
+		}else if(probe!=null){
+			endrowInstrumented();
+		}else if(pipeline!=null){
+			pipeline.add(row);
 		}else{
-			//Row r = new Row(titoliIndici,fields,row);
-			currentRow.init(fields, row);
+			currentRow.init(row);
 			for(Processor e : processors){
 				e.newLine(currentRow);
-			}			
+			}
+			if(batch!=null){
+				batch.add(tok,row);
+				if(batch.isFull()) flushBatch();
+			}
 		}
-		col=0;
+		cells+=tok.col;
 		row++;
-		begin=end;
-		//System.out.print("\n");
 	}
 	
-	private void addtofield(){
-		if(end==current-1){
-			end++;
+	/**
+	 * Evaluates the filters on the current row
+	 */
+	private boolean accept(){
+		currentRow.init(row);
+		return filter.test(currentRow);
+	}
+
+	/**
+	 * Same as {@link #endrow()} for the rows after the headers, with the measures
+	 */
+	private void endrowInstrumented() throws IOException{
+		long t = probe.rowBegin();
+		if(pipeline!=null){
+			pipeline.add(row);
 		}else{
-			buffer[end++] = buffer[current-1];
+			currentRow.init(row);
+			int i = 0;
+			for(Processor e : processors){
+				e.newLine(currentRow);
+				t = probe.processed(i++, t);
+			}
+			if(batch!=null){
+				batch.add(tok,row);
+				if(batch.isFull()) flushBatch();
+			}
 		}
+		probe.rowEnd(row);
 	}
-	
-	private static final int START=0;
-	private static final int UNQUOTED=1;
-	private static final int ENDROW=2;
-	private static final int QUOTED=3;
-	private static final int QUOTEBEGIN=6;
-	private static final int DQUOTE=4;
-	private static final int CR=5;
-	
-//	private static final int END=-1;
-	private static final int EOF = -1;
-	
+
+	/**
+	 * Notifies the batch to the batch processors
+	 */
+	private void flushBatch(){
+		batchView.attach(batch);
+		long t = probe!=null ? System.nanoTime() : 0;
+		int i = processors.size();
+		for(BatchProcessor e : batchProcessors){
+			e.newBatch(batchView);
+			if(probe!=null) t = probe.processed(i++, t);
+		}
+		batch.clear();
+	}
+
 	/**
 	 * Class that contains the parsing statistics.
 	 * 
@@ -251,7 +682,7 @@ public class CsvParser {
 	 *
 	 */
 	
-	public class Stats {
+	public static class Stats {
 		/** Parsing elapsed time */
 		public final Duration elapsed;
 
@@ -263,27 +694,83 @@ public class CsvParser {
 
 		/** Parsing number of cells */
 		public final long cells;
+
+		/** Whether the detailed measures below are available, see {@link CsvParser#setInstrumentation(Duration)} */
+		public final boolean instrumented;
+
+		/** Time spent reading the input, including any decompression;
+		 *  for mapped files the page faults are part of the tokenizing */
+		public final Duration reading;
+
+		/** Time spent tokenizing, i.e. the elapsed time not spent reading or in the processors;
+		 *  with the pipeline the processors run concurrently and their time is not subtracted */
+		public final Duration tokenizing;
+
+		/** Time spent by each processor, row-at-a-time processors first, in the order they were added */
+		public final Map<Object,Duration> processing;
+
+		/** Number of times the buffer was enlarged because a row did not fit into it */
+		public final int bufferGrowths;
+
+		/** Length of the largest cell as it appears in the input, in characters (in bytes for ASCII-compatible encodings):
+		 *  the enclosing quotes are excluded, the escaped quotes are counted before unescaping, e.g. 4 for {@code "a""b"} */
+		public final int largestCell;
+
+		/** Bytes allocated by the parsing thread, -1 if not supported by the JVM */
+		public final long allocated;
 		
 		Stats(Duration e, long r, long i, long c){
 			elapsed = e;
 			rows = r;
 			cells = i;
 			chars = c;
+			instrumented = false;
+			reading = tokenizing = Duration.ZERO;
+			processing = Collections.emptyMap();
+			bufferGrowths = largestCell = 0;
+			allocated = -1;
+		}
+
+		Stats(Duration e, long r, long i, long c, Duration reading, Duration tokenizing,
+				Map<Object,Duration> processing, int growths, int largest, long allocated){
+			elapsed = e;
+			rows = r;
+			cells = i;
+			chars = c;
+			instrumented = true;
+			this.reading = reading;
+			this.tokenizing = tokenizing;
+			this.processing = Collections.unmodifiableMap(processing);
+			bufferGrowths = growths;
+			largestCell = largest;
+			this.allocated = allocated;
 		}
 
 		/**
 		 * Computes the throughput
 		 * 
-		 * @return Million lines per second
+		 * @return Million characters per second
 		 */
 		public double throughput(){
 			return chars/1000000.0 / (elapsed.getSeconds()+elapsed.getNano()/1000000000.0);
 		}
 
 		public String toString(){
-			return "Processed " + chars + " chars, " + cells + " cells, "+ row + " rows, in " + elapsed+
+			String s = "Processed " + chars + " chars, " + cells + " cells, "+ rows + " rows, in " + elapsed+
 					" : throughput: " + String.format("%.3f",throughput()) +
 					"Mch/s";
+			if(instrumented){
+				StringBuilder d = new StringBuilder(s);
+				d.append("\n  reading: ").append(reading).append(", tokenizing: ").append(tokenizing);
+				for(Map.Entry<Object,Duration> e : processing.entrySet()){
+					d.append(", ").append(e.getKey().getClass().getSimpleName()).append(": ").append(e.getValue());
+				}
+				d.append("\n  buffer growths: ").append(bufferGrowths)
+				 .append(", largest cell: ").append(largestCell);
+				if(allocated>=0) d.append(", allocated: ").append(allocated/1024).append(" KB");
+				s = d.toString();
+			}
+			return s;
 		}
 	}
 	
@@ -297,174 +784,442 @@ public class CsvParser {
 	public Stats parse() throws IOException{
 
 		Instant beginTime = Instant.now();
-		start();
-		int state = START;
-		while(true){
-			int ch = next();
-			if(ch==EOF){
-				if(col>0 || end>begin){
-					closefield();
-	  		  		endrow();
+		Instrumentation.ParseEvent event = new Instrumentation.ParseEvent();
+		event.begin();
+		if(slowRow!=null){
+			probe = new Instrumentation(tok, processors.size()+batchProcessors.size(), slowRow);
+		}
+		ProgressMeter meter = listener!=null ? new ProgressMeter(listener, progressInterval, inputSize) : null;
+		try{
+			tok.start();
+			if(range!=null) skipTo(rangeFirst);
+			while(!cancelled && row<rangeEnd && tok.nextRow()){
+				endrow();
+				if(meter!=null && --meter.countdown==0) meter.check(tok.consumed(), row);
+				if(index!=null && --indexCountdown==0){
+					index.add(tok.consumed());
+					indexCountdown = index.getInterval();
 				}
-	  			for(Processor e : processors){
-	  				e.end();
-	  			}
-	  			Instant endTime = Instant.now();
-	  			return new Stats(Duration.between(beginTime, endTime),row,cells,charCount);
 			}
-			switch(state){
-			case START:
-				switch(ch){
-				case '"': state = QUOTEBEGIN;
-						  break;
-				case ',': if(CSV_SEPARATOR==','){
-								beginfield();
-								closefield();
-							    state = START;
-						  }else{
-							  beginfield();
-							  addtofield();
-						  }
-						  break;
-				case ';': if(CSV_SEPARATOR==';'){ 
-								beginfield();
-								closefield();
-							    state = START;
-						  }else{
-							  beginfield();
-							  addtofield();
-						  }
-						  break;
-				default: beginfield();
-						 addtofield();
-						 state = UNQUOTED;
-						 break;
-				}
-				break;
-			case UNQUOTED :
-				switch(ch){
-				case ',': if(CSV_SEPARATOR==','){ 
-								closefield();
-							    state = START;
-						  }else{
-							  addtofield();
-						  }
-						  break;
-				case ';': if(CSV_SEPARATOR==';'){ 
-								closefield();
-							    state = START;
-						  }else{
-							  addtofield();
-						  }
-						  break;
-				case '\r':closefield();
-				  		  endrow();
-				  		  state = ENDROW;
-				  		  break;
-				case '\n':closefield();
-						  endrow();
-				  		  state = ENDROW;
-				  		  break;
-				default:  addtofield();
-				}
-				break;
-			case ENDROW :
-				switch(ch){
-				case '\n'://state = START;
-						  break;
-				case '\r'://state = START;
-						  break;
-				case '"': state = QUOTEBEGIN;
-						  break;
-				case ',': if(CSV_SEPARATOR==','){
-								beginfield();
-								closefield();
-							    state = START;
-						  }else{
-							  beginfield();
-							  addtofield();
-						  }
-						  break;
-				case ';': if(CSV_SEPARATOR==';'){ 
-								beginfield();
-								closefield();
-							    state = START;
-						  }else{
-							  beginfield();
-							  addtofield();
-						  }
-						  break;
-				default:  beginfield();
-						  addtofield();
-						  state = UNQUOTED;
-				}
-				break;
-			case QUOTEBEGIN :
-				switch(ch){
-				case '"': beginfield();
-						  state = DQUOTE;
-						  break;
-				case '\n':beginfield();
-						  addtofield();
-				  		  state = CR;
-				  		  break;
-				default: beginfield();
-						 addtofield();
-						 state=QUOTED;
-				}
-				break;
-			case QUOTED :
-				switch(ch){
-				case '"': state = DQUOTE;
-						  break;
-				case '\n':addtofield();
-				  		  state = CR;
-				  		  break;
-				default: addtofield();
+			if(index!=null && !cancelled) index.end(tok.consumed(), row);
+			if(pipeline!=null){
+				pipeline.finish();
+				if(probe!=null) probe.processed(pipeline.processingNanos());
+			}else{
+				if(batch!=null && batch.size>0){
+					flushBatch();
 				}
-				break;
-			case DQUOTE :
-				switch(ch){
-				case '"': state = QUOTED;
-						  addtofield();
-						  break;
-				case ',': if(CSV_SEPARATOR==','){
-								closefield();
-							    state = START;
-						  }else{
-							  addtofield();
-						  }
-						  break;
-				case ';': if(CSV_SEPARATOR==';'){ 
-								closefield();
-							    state = START;
-						  }else{
-							  addtofield();
-						  }
-						  break;
-				case '\n':closefield();
-						  endrow();
-				  		  state = ENDROW;
-				  		  break;
-				case '\r':closefield();
-				  		  endrow();
-				  		  state = ENDROW;
-				  		  break;
-				default: /* unexpected char */
-						 addtofield();
+				long t = probe!=null ? System.nanoTime() : 0;
+				int i = 0;
+				for(Processor e : processors){
+					e.end();
+					if(probe!=null) t = probe.processed(i++, t);
 				}
-				break;
-			case CR :
-				switch(ch){
-				case '\r':state = QUOTED;
-						  break;
-				case '"':state = DQUOTE;
-						 break;
-				default: addtofield();
-						 state = QUOTED;
+				for(BatchProcessor e : batchProcessors){
+					e.end();
+					if(probe!=null) t = probe.processed(i++, t);
 				}
-				break;
+			}
+		}finally{
+			if(pipeline!=null) pipeline.abort(); // stops the processors if the parsing failed
+			tok.release();
+		}
+		event.rows = row;
+		event.cells = cells;
+		event.chars = tok.count;
+		event.commit();
+		if(meter!=null) meter.end(tok.consumed(), row);
+		if(probe!=null){
+			List<Object> all = new ArrayList<>(processors);
+			all.addAll(batchProcessors);
+			return probe.stats(all, pipeline!=null, row-skipped, cells);
+		}
+		Instant endTime = Instant.now();
+		return new Stats(Duration.between(beginTime, endTime),row-skipped,cells,tok.count);
+	}
+
+	/**
+	 * Notifies the headers, then moves to the given row through the index
+	 */
+	private void skipTo(long first) throws IOException{
+		if(index!=null) throw new IllegalStateException("A range cannot be indexed");
+		if(inputSize>=0 && range.getSize()!=inputSize){
+			throw new IOException("The index does not match the input: size " + 
+								  range.getSize() + " instead of " + inputSize);
+		}
+		if(!tok.nextRow()) return;
+		endrow();
+		long start = range.indexedRow(first);
+		if(start>row){
+			tok.seek(range.position(first));
+			tok.rows = start;
+			skipped = start-row;
+			row = start;
+		}
+		while(row<first && tok.nextRow()){
+			row++;
+			skipped++;
+		}
+	}
+
+	/** Minimum size of the chunks for parallel parsing */
+	private static final int MIN_CHUNK = 1<<20;
+
+	/**
+	 * Start the parsing of the CSV content in parallel
+	 * using the common fork-join pool.
+	 * 
+	 * @param <P> the type of processor
+	 * @param processor the processor that will contain the merged results
+	 * @param factory creates the processors for the chunks after the first one
+	 * @return the parsing statistics
+	 * 
+	 * @throws IOException in case of I/O error
+	 * @see #parse(Processor, Supplier, ForkJoinPool, int)
+	 */
+	public <P extends Processor & Mergeable<P>> Stats parse(P processor, Supplier<P> factory) throws IOException{
+		ForkJoinPool pool = ForkJoinPool.commonPool();
+		return parse(processor, factory, pool, 0);
+	}
+
+	/**
+	 * Start the parsing of the CSV content in parallel.
+	 * <p>
+	 * The file is split into chunks of bytes that are parsed
+	 * in parallel on the given pool, each chunk is notified to its own 
+	 * processor. The row numbers are the same as for sequential parsing.
+	 * At the end the processors are merged, in the order of the
+	 * chunks, into the given <code>processor</code>, which is the only
+	 * one receiving the {@link Processor#end() end()} notification.
+	 * <p>
+	 * The record boundaries are located by counting the quotes,
+	 * therefore the quotes must appear only around the cells as prescribed
+	 * by RFC 4180, otherwise an {@link IOException} is thrown.
+	 * <p>
+	 * Parallel parsing is possible only for parsers reading from a {@link FileChannel}
+	 * with an ASCII-compatible encoding, and for dialects without comments and
+	 * where the escape character is the quote; otherwise the parsing is sequential.
+	 * The processors added through {@link #addProcessor(Processor)} and
+	 * {@link #addBatchProcessor(BatchProcessor)} are ignored in both cases.
+	 * 
+	 * @param <P> the type of processor
+	 * @param processor the processor that will contain the merged results
+	 * @param factory creates the processors for the chunks after the first one
+	 * @param pool the pool where the chunks are parsed
+	 * @param chunkSize the size in bytes of the chunks, 0 to have about four chunks per thread
+	 * @return the parsing statistics
+	 * 
+	 * @throws IOException in case of I/O error
+	 */
+	public <P extends Processor & Mergeable<P>> Stats parse(P processor, Supplier<P> factory,
+													ForkJoinPool pool, int chunkSize) throws IOException{
+		if(!(tok instanceof MappedTokenizer) || !tok.dialect.isSplittable()){
+			List<Processor> added = processors;
+			List<BatchProcessor> addedBatch = batchProcessors;
+			processors = new LinkedList<Processor>(Collections.singletonList(processor));
+			batchProcessors = new LinkedList<BatchProcessor>();
+			try{
+				return parse();
+			}finally{
+				processors = added;
+				batchProcessors = addedBatch;
+			}
+		}
+		Instant beginTime = Instant.now();
+		MappedTokenizer mt = (MappedTokenizer)tok;
+		FileChannel channel = mt.channel();
+		mt.start();
+		if(!mt.nextRow()){
+			processor.end();
+			return new Stats(Duration.between(beginTime, Instant.now()),row,cells,0);
+		}
+		String[] fields = headers();
+		intern(fields);
+		if(filter!=null) filter.bind(fields);
+		cells+=tok.col;
+		row++;
+		long size = channel.size();
+		List<long[]> ranges = split(mt, pool, chunkSize);
+
+		// parse the ranges
+		List<P> results = new ArrayList<>();
+		List<Callable<long[]>> tasks = new ArrayList<>();
+		for(long[] range : ranges){
+			P proc = results.isEmpty() ? processor : factory.get();
+			results.add(proc);
+			tasks.add(() -> parseRange(mt, range, fields, proc));
+		}
+		if(ranges.isEmpty()){
+			processor.headers(fields,new Projection(fields));
+		}
+		for(long[] c : invokeAll(pool, tasks)){
+			row+=c[0];
+			cells+=c[1];
+			rejected+=c[2];
+		}
+		for(int i=1; i<results.size(); ++i){
+			processor.merge(results.get(i));
+		}
+		processor.end();
+		Instant endTime = Instant.now();
+		return new Stats(Duration.between(beginTime, endTime),row,cells,size-channel.position());
+	}
+
+	/**
+	 * Splits the rest of the file, from the current position of the tokenizer,
+	 * into ranges of rows by scanning chunks of bytes in parallel
+	 * 
+	 * @param chunkSize the size in bytes of the chunks, 0 to have about four chunks per thread
+	 * @return the ranges: begin, first row, number of rows, end
+	 */
+	private List<long[]> split(MappedTokenizer mt, ForkJoinPool pool, int chunkSize) throws IOException{
+		FileChannel channel = mt.channel();
+		long bodyBegin = mt.position();
+		long size = channel.size();
+
+		// split the file and find the beginning of the rows
+		if(chunkSize<=0){
+			chunkSize = (int)Math.min(Integer.MAX_VALUE,
+						Math.max(MIN_CHUNK, (size-bodyBegin)/(4*pool.getParallelism())));
+		}
+		List<Callable<Chunk>> scans = new ArrayList<>();
+		for(long from=bodyBegin; from<size; from+=chunkSize){
+			Chunk c = new Chunk(from, Math.min(size, from+chunkSize));
+			scans.add(() -> c.scan(channel, mt.dialect));
+		}
+		List<Chunk> chunks = invokeAll(pool, scans);
+		
+		// chunks are grouped into ranges beginning with a row
+		List<long[]> ranges = new ArrayList<>();
+		int quotes = 0;
+		long rowNum = row;
+		for(Chunk c : chunks){
+			if(c.first[quotes]!=-1){
+				if(!ranges.isEmpty()) ranges.get(ranges.size()-1)[3] = c.first[quotes];
+				ranges.add(new long[]{c.first[quotes], rowNum, 0, size});
+			}
+			if(!ranges.isEmpty()){
+				ranges.get(ranges.size()-1)[2]+=c.rows[quotes];
+			}
+			rowNum+=c.rows[quotes];
+			quotes^=c.quotes;
+		}
+		return ranges;
+	}
+
+	/**
+	 * Creates a tokenizer for a range of rows of the file
+	 */
+	private MappedTokenizer rangeTokenizer(MappedTokenizer mt, long[] range) throws IOException{
+		MappedTokenizer t = new MappedTokenizer(mt.channel(), mt.charset, mt.window(), range[0], range[3]);
+		t.dialect = mt.dialect;
+		t.numbers = mt.numbers;
+		t.interners = mt.interners;
+		t.projection = mt.projection;
+		t.start();
+		return t;
+	}
+
+	/**
+	 * Checks that a range contained the rows counted when splitting the file
+	 */
+	private static void checkRange(long[] range, long rows) throws IOException{
+		if(rows!=range[2]){
+			throw new IOException("Inconsistent rows in range starting at " + range[0] + 
+								  ": quotes are not balanced");
+		}
+	}
+
+	/**
+	 * Parses a range of rows of the file
+	 * 
+	 * @return the number of rows, of cells, and of rejected rows
+	 */
+	private long[] parseRange(MappedTokenizer mt, long[] range, String[] fields, Processor proc) throws IOException{
+		MappedTokenizer t = rangeTokenizer(mt, range);
+		Projection p = new Projection(fields);
+		proc.headers(fields,p);
+		if(filter!=null) filter.select(p);
+		t.projection = p.columns();
+		Row r = new Row(titoliIndici,t,0);
+		long n = range[1];
+		long cells = 0;
+		long rejected = 0;
+		while(!cancelled && t.nextRow()){
+			r.init(n++);
+			if(filter==null || filter.test(r)){
+				proc.newLine(r);
+			}else{
+				rejected++;
+			}
+			cells+=t.col;
+		}
+		if(!cancelled) checkRange(range, n-range[1]);
+		return new long[]{n-range[1], cells, rejected};
+	}
+
+	/**
+	 * Retrieves the rows as a stream, reading the input as the rows are consumed.
+	 * <p>
+	 * The rows are copies (see {@link Row#copy()}), therefore they remain valid
+	 * after they have been consumed and can be used by any thread, e.g.:
+	 * <pre>
+	Map&lt;String,Long&gt; projects = p.stream("OC_TEMA_SINTETICO").parallel()
+			.collect(Collectors.groupingBy(r -&gt; r.get("OC_TEMA_SINTETICO"), Collectors.counting()));
+</pre>
+	 * Only the given columns are tokenized and copied, the other cells are {@code null}.
+	 * The filters added through {@link #addFilter(Filter)} are applied, 
+	 * the processors are ignored; the input can be either parsed or streamed, once.
+	 * <p>
+	 * A parallel stream of a parser reading from a {@link FileChannel}, with the
+	 * requirements of the {@link #parse(Processor, Supplier, ForkJoinPool, int) parallel parsing},
+	 * splits the rest of the file into ranges of rows that are parsed by the threads
+	 * of the fork-join pool running the stream; the other streams are read sequentially.
+	 * The I/O errors are thrown as {@link java.io.UncheckedIOException}s.
+	 * The buffer of the parser is released at the end of the input, 
+	 * or when the stream is closed.
+	 * 
+	 * @param columns the headers of the columns, all the columns if none is given
+	 * @return the stream of the rows following the headers
+	 * @throws IllegalArgumentException (when consuming) if a column is unknown
+	 */
+	public Stream<Row> stream(String... columns){
+		RowSpliterator rows = new RowSpliterator(this, columns);
+		return StreamSupport.stream(rows, false).onClose(rows::close);
+	}
+
+	/**
+	 * Retrieves the rows through an iterator, reading the input as the rows are requested
+	 * 
+	 * @param columns the headers of the columns, all the columns if none is given
+	 * @return the iterator of the rows following the headers
+	 * @see #stream(String...)
+	 */
+	public Iterator<Row> iterator(String... columns){
+		return Spliterators.iterator(new RowSpliterator(this, columns));
+	}
+
+	/**
+	 * Reads the headers for the pull-based access to the rows
+	 * 
+	 * @param columns the headers of the columns to be tokenized, all if none is given
+	 * @return {@code false} if the input is empty
+	 */
+	boolean pullHeaders(String[] columns) throws IOException{
+		tok.start();
+		if(!tok.nextRow()) return false;
+		String[] fields = headers();
+		intern(fields);
+		Projection p = new Projection(fields);
+		if(columns.length>0){
+			p.select(columns);
+		}else{
+			p.selectAll();
+		}
+		if(filter!=null){
+			filter.bind(fields);
+			filter.select(p);
+		}
+		tok.projection = p.columns();
+		currentRow = new Row(titoliIndici,tok,0);
+		cells+=tok.col;
+		row++;
+		return true;
+	}
+
+	/**
+	 * Reads the next row accepted by the filters, for the pull-based access to the rows
+	 * 
+	 * @return the row, valid until the next one is read, {@code null} at the end of the input
+	 */
+	Row pullRow() throws IOException{
+		while(!cancelled && tok.nextRow()){
+			currentRow.init(row);
+			cells+=tok.col;
+			row++;
+			if(filter==null || filter.test(currentRow)) return currentRow;
+			rejected++;
+		}
+		return null;
+	}
+
+	/**
+	 * Splits the rest of the input into ranges of rows, for the pull-based access to the rows
+	 * 
+	 * @return the ranges, {@code null} if the input cannot be split
+	 * @see #split(MappedTokenizer, ForkJoinPool, int)
+	 */
+	List<long[]> pullRanges(ForkJoinPool pool) throws IOException{
+		if(!(tok instanceof MappedTokenizer) || !tok.dialect.isSplittable()) return null;
+		return split((MappedTokenizer)tok, pool, 0);
+	}
+
+	/**
+	 * Creates the row reading a range, for the pull-based access to the rows;
+	 * the ranges can be read by different threads
+	 * 
+	 * @param range the range, from {@link #pullRanges(ForkJoinPool)}
+	 * @return the row, whose tokenizer is positioned before the first row of the range
+	 */
+	Row pullRange(long[] range) throws IOException{
+		return new Row(titoliIndici,rangeTokenizer((MappedTokenizer)tok, range),range[1]);
+	}
+
+	/**
+	 * Evaluates the filters on a row, for the pull-based access to the rows
+	 */
+	boolean accept(Row row){
+		return filter==null || filter.test(row);
+	}
+
+	/**
+	 * Ends the reading of a range, for the pull-based access to the rows
+	 * 
+	 * @param rows the number of rows read
+	 * @param rejected the number of rows rejected by the filters
+	 */
+	void pullRangeEnd(long[] range, long rows, long rejected) throws IOException{
+		synchronized(this){
+			this.rejected += rejected;
+		}
+		if(!cancelled) checkRange(range, rows);
+	}
+
+	/**
+	 * Estimates the size of the rest of the input, for the pull-based access to the rows
+	 * 
+	 * @return the number of characters (bytes for ASCII-compatible encodings), 
+	 * 			{@link Long#MAX_VALUE} if unknown
+	 */
+	long pullRemaining() throws IOException{
+		if(tok instanceof MappedTokenizer){
+			MappedTokenizer mt = (MappedTokenizer)tok;
+			return mt.channel().size()-mt.position();
+		}
+		return inputSize>=0 ? Math.max(0, inputSize-tok.consumed()) : Long.MAX_VALUE;
+	}
+
+	/**
+	 * Ends the pull-based access to the rows, releasing the buffer
+	 */
+	void pullEnd(){
+		tok.release();
+	}
+
+	private static <T> List<T> invokeAll(ForkJoinPool pool, List<Callable<T>> tasks) throws IOException{
+		List<T> res = new ArrayList<>();
+		for(Future<T> f : pool.invokeAll(tasks)){
+			try {
+				res.add(f.get());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException();
+			} catch (ExecutionException e) {
+				if(e.getCause() instanceof IOException) throw (IOException)e.getCause();
+				if(e.getCause() instanceof RuntimeException) throw (RuntimeException)e.getCause();
+				throw new IOException(e.getCause());
 			}
 		}
+		return res;
 	}
 }
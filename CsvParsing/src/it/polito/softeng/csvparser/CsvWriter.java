@@ -0,0 +1,378 @@
+package it.polito.softeng.csvparser;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streaming writer of CSV content.
+ * <p>
+ * The cells are encoded directly into a fixed-size byte buffer, taken from
+ * a {@link BufferPool}, which is written to the output when it is full;
+ * therefore the memory used does not depend on the size of the content.
+ * A cell is enclosed in quotes only when it contains the separator, the quote,
+ * the escape character, or a line break, e.g. to rewrite the selected columns of a file:
+ * <pre>
+	try(CsvWriter w = new CsvWriter(Paths.get("out.csv"))){
+		CsvParser p = new CsvParser("file.csv");
+		p.addProcessor(new CsvSink(w, "OC_TEMA_SINTETICO", "FINANZ_UE"));
+		p.parse();
+	}
+</pre>
+ * The {@link Cell}s are read directly from the buffer of the parser,
+ * therefore the content is copied without creating any {@link String}.
+ * UTF-8, ISO-8859-1, and US-ASCII are encoded by the writer itself,
+ * the other charsets through a {@link CharsetEncoder}.
+ *
+ * @see it.polito.softeng.csvparser.processor.CsvSink
+ * @version 0.6
+ */
+public class CsvWriter implements Closeable, Flushable {
+
+	private static final int UTF8 = 0;
+	private static final int LATIN1 = 1;
+	private static final int ASCII = 2;
+	private static final int OTHER = 3;
+
+	private final OutputStream out;
+	private final WritableByteChannel channel;
+	private final boolean owned;
+	private final int encoding;
+	private final CharsetEncoder encoder;
+	private final BufferPool pool;
+	private byte[] buf;
+	private ByteBuffer view;
+	/** position where the next byte is written */
+	private int pos;
+	/** position beyond which a character may not fit */
+	private int limit;
+	/** characters waiting to be encoded, for the other charsets */
+	private StringBuilder pending;
+	/** high surrogate waiting for the low one */
+	private char high;
+	private long written;
+
+	private char separator = ',';
+	private char quote = '"';
+	private char escape = '"';
+	private String terminator = "\r\n";
+	private int col;
+
+	/**
+	 * Builds a writer on a stream
+	 *
+	 * @param out the output, it is not closed by {@link #close()}
+	 * @param charset the encoding
+	 */
+	public CsvWriter(OutputStream out, Charset charset){
+		this(out, null, false, charset);
+	}
+
+	/**
+	 * Builds a writer on a channel, e.g. a {@link FileChannel}
+	 *
+	 * @param channel the output, it is not closed by {@link #close()}
+	 * @param charset the encoding
+	 */
+	public CsvWriter(WritableByteChannel channel, Charset charset){
+		this(null, channel, false, charset);
+	}
+
+	/**
+	 * Builds a writer creating, or replacing, a file encoded in UTF-8
+	 *
+	 * @param file the file, it is closed by {@link #close()}
+	 * @throws IOException in case of I/O error
+	 */
+	public CsvWriter(Path file) throws IOException{
+		this(null, FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+									StandardOpenOption.WRITE), true, StandardCharsets.UTF_8);
+	}
+
+	private CsvWriter(OutputStream out, WritableByteChannel channel, boolean owned, Charset charset){
+		this.out = out;
+		this.channel = channel;
+		this.owned = owned;
+		if(charset.equals(StandardCharsets.UTF_8)){
+			encoding = UTF8;
+		}else if(charset.equals(StandardCharsets.ISO_8859_1)){
+			encoding = LATIN1;
+		}else if(charset.equals(StandardCharsets.US_ASCII)){
+			encoding = ASCII;
+		}else{
+			encoding = OTHER;
+		}
+		encoder = encoding==OTHER ? charset.newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+											 .onUnmappableCharacter(CodingErrorAction.REPLACE) : null;
+		pending = encoding==OTHER ? new StringBuilder() : null;
+		pool = BufferPool.SHARED;
+		buf = pool.bytes();
+		view = ByteBuffer.wrap(buf);
+		limit = buf.length-4;
+	}
+
+	/**
+	 * Sets the separator and the quote and escape characters from a dialect,
+	 * by default those of {@link CsvDialect#RFC4180}.
+	 * <p>
+	 * A dialect detecting the separator writes commas; a dialect without
+	 * quote character never quotes the cells.
+	 *
+	 * @param dialect the dialect
+	 */
+	public void setDialect(CsvDialect dialect){
+		separator = dialect.getSeparator()==CsvDialect.NONE ? ',' : dialect.getSeparator();
+		quote = dialect.getQuote();
+		escape = dialect.getEscape();
+	}
+
+	/**
+	 * Sets the line terminator, CRLF by default
+	 *
+	 * @param terminator either <code>"\r\n"</code> or <code>"\n"</code>
+	 */
+	public void setLineTerminator(String terminator){
+		if(!terminator.equals("\r\n") && !terminator.equals("\n")){
+			throw new IllegalArgumentException("Line terminator must be CRLF or LF");
+		}
+		this.terminator = terminator;
+	}
+
+	/**
+	 * Writes a cell of the current row
+	 *
+	 * @param value the content, {@code null} is written as an empty cell
+	 * @throws IOException in case of I/O error
+	 */
+	public void writeCell(CharSequence value) throws IOException{
+		if(col++>0) put(separator);
+		if(value==null) return;
+		int n = value.length();
+		if(quote==CsvDialect.NONE || !needsQuotes(value, n)){
+			for(int i=0; i<n; ++i){
+				put(value.charAt(i));
+			}
+			return;
+		}
+		put(quote);
+		for(int i=0; i<n; ++i){
+			char c = value.charAt(i);
+			if(c==quote || c==escape) put(escape);
+			put(c);
+		}
+		put(quote);
+	}
+
+	private boolean needsQuotes(CharSequence value, int n){
+		for(int i=0; i<n; ++i){
+			char c = value.charAt(i);
+			if(c==separator || c==quote || c==escape || c=='\n' || c=='\r') return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Writes a cell of the current row containing an integer
+	 *
+	 * @param value the value
+	 * @throws IOException in case of I/O error
+	 */
+	public void writeCell(long value) throws IOException{
+		if(col++>0) put(separator);
+		if(value<0){
+			put('-');
+		}else{
+			value = -value; // negative values include Long.MIN_VALUE
+		}
+		long p = -1;
+		while(p>=-Long.MAX_VALUE/10 && p*10>=value) p *= 10;
+		for(; p!=0; p/=10){
+			put((char)('0' + value/p));
+			value %= p;
+		}
+	}
+
+	/**
+	 * Ends the current row
+	 *
+	 * @throws IOException in case of I/O error
+	 */
+	public void endRow() throws IOException{
+		for(int i=0; i<terminator.length(); ++i){
+			put(terminator.charAt(i));
+		}
+		col = 0;
+	}
+
+	/**
+	 * Writes a row
+	 *
+	 * @param cells the content of the cells
+	 * @throws IOException in case of I/O error
+	 */
+	public void writeRow(CharSequence... cells) throws IOException{
+		for(CharSequence c : cells){
+			writeCell(c);
+		}
+		endRow();
+	}
+
+	/**
+	 * Writes a row read by the parser, the cells that are not
+	 * part of the {@link Projection} are written as empty cells
+	 *
+	 * @param row the row
+	 * @throws IOException in case of I/O error
+	 */
+	public void writeRow(Row row) throws IOException{
+		for(int i=0; i<row.getLength(); ++i){
+			writeCell(row.cell(i));
+		}
+		endRow();
+	}
+
+	/**
+	 * Writes a character into the buffer
+	 */
+	private void put(char c) throws IOException{
+		if(pos>limit) drain();
+		switch(encoding){
+		case UTF8:
+			if(high!=0 && !Character.isLowSurrogate(c)){
+				buf[pos++] = '?'; // unpaired surrogate
+				high = 0;
+			}
+			if(c<0x80){
+				buf[pos++] = (byte)c;
+			}else if(c<0x800){
+				buf[pos++] = (byte)(0xC0 | c>>6);
+				buf[pos++] = (byte)(0x80 | c&0x3F);
+			}else if(Character.isHighSurrogate(c)){
+				high = c;
+			}else if(Character.isLowSurrogate(c)){
+				if(high==0){
+					buf[pos++] = '?';
+				}else{
+					int cp = Character.toCodePoint(high, c);
+					buf[pos++] = (byte)(0xF0 | cp>>18);
+					buf[pos++] = (byte)(0x80 | cp>>12&0x3F);
+					buf[pos++] = (byte)(0x80 | cp>>6&0x3F);
+					buf[pos++] = (byte)(0x80 | cp&0x3F);
+					high = 0;
+				}
+			}else{
+				buf[pos++] = (byte)(0xE0 | c>>12);
+				buf[pos++] = (byte)(0x80 | c>>6&0x3F);
+				buf[pos++] = (byte)(0x80 | c&0x3F);
+			}
+			break;
+		case LATIN1:
+			buf[pos++] = (byte)(c<0x100 ? c : '?');
+			break;
+		case ASCII:
+			buf[pos++] = (byte)(c<0x80 ? c : '?');
+			break;
+		default:
+			pending.append(c);
+			if(pending.length()>=buf.length/4) drain();
+		}
+	}
+
+	/**
+	 * Writes the content of the buffer to the output
+	 */
+	private void drain() throws IOException{
+		if(encoding==OTHER){
+			CharBuffer chars = CharBuffer.wrap(pending);
+			view.clear().position(pos);
+			while(encoder.encode(chars, view, false).isOverflow()){
+				pos = view.position();
+				writeBuffer();
+				view.clear();
+			}
+			pos = view.position();
+			pending.delete(0, chars.position()); // keeps a high surrogate waiting for its pair
+		}
+		writeBuffer();
+	}
+
+	private void writeBuffer() throws IOException{
+		if(out!=null){
+			out.write(buf, 0, pos);
+		}else{
+			view.clear().limit(pos);
+			while(view.hasRemaining()){
+				channel.write(view);
+			}
+		}
+		written += pos;
+		pos = 0;
+	}
+
+	/**
+	 * Retrieves the number of bytes written so far to the output
+	 *
+	 * @return the number of bytes, excluding those still in the buffer
+	 */
+	public long getWritten(){
+		return written;
+	}
+
+	/**
+	 * Writes the buffered content to the output
+	 *
+	 * @throws IOException in case of I/O error
+	 */
+	@Override
+	public void flush() throws IOException{
+		if(encoding==OTHER){
+			drain();
+		}else{
+			writeBuffer();
+		}
+		if(out!=null) out.flush();
+	}
+
+	/**
+	 * Writes the buffered content and releases the buffer, the output
+	 * is closed only if it has been opened by the writer
+	 *
+	 * @throws IOException in case of I/O error
+	 */
+	@Override
+	public void close() throws IOException{
+		if(buf==null) return;
+		try{
+			if(high!=0){
+				high = 0;
+				put('?');
+			}
+			if(encoding==OTHER){
+				drain();
+				view.clear();
+				encoder.encode(CharBuffer.wrap(pending), view, true);
+				encoder.flush(view);
+				pos = view.position();
+				writeBuffer();
+				if(out!=null) out.flush();
+			}else{
+				flush();
+			}
+		}finally{
+			pool.release(buf);
+			buf = null;
+			if(owned) channel.close();
+		}
+	}
+}
@@ -0,0 +1,217 @@
+package it.polito.softeng.csvparser;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Stream decompressing the input on its own thread.
+ * <p>
+ * The decompressing thread fills blocks taken from a small pool and
+ * passes them to the reader through a bounded queue, therefore the
+ * decompression overlaps with the parsing and the memory used is bounded.
+ *
+ * @version 0.6
+ */
+class Decompressor extends InputStream implements Runnable {
+
+	static final int BLOCK_SIZE = 1<<18;
+	static final int BLOCKS = 4;
+
+	/**
+	 * A block of decompressed content
+	 */
+	private static final class Block {
+		final byte[] data = new byte[BLOCK_SIZE];
+		/** number of bytes, -1 at the end of the content */
+		int length;
+		/** failure of the decompression */
+		IOException failure;
+	}
+
+	private final InputStream source;
+	private final BlockingQueue<Block> full = new ArrayBlockingQueue<>(BLOCKS);
+	private final BlockingQueue<Block> free = new ArrayBlockingQueue<>(BLOCKS);
+	private final Thread thread;
+	private Block current;
+	private int pos;
+
+	private Decompressor(InputStream source, String name){
+		this.source = source;
+		for(int i=0; i<BLOCKS; ++i){
+			free.add(new Block());
+		}
+		thread = new Thread(this, "CsvParser-" + name);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Wraps the input into a decompressing stream if it is compressed
+	 * with gzip or zip, otherwise it returns a stream with the same content,
+	 * which is the input itself for a file.
+	 *
+	 * @param in the input
+	 * @param entry the name of the zip entry, or {@code null} for the first file in the archive
+	 * @return the decompressed input
+	 * @throws IOException in case of I/O error or if the entry is not found
+	 */
+	static InputStream open(InputStream in, String entry) throws IOException{
+		if(entry==null && in instanceof FileInputStream && !isCompressed(((FileInputStream)in).getChannel())){
+			return in;
+		}
+		PushbackInputStream pb = new PushbackInputStream(in, 4);
+		byte[] magic = new byte[4];
+		int n = 0;
+		while(n<magic.length){
+			int r = pb.read(magic, n, magic.length-n);
+			if(r==-1) break;
+			n += r;
+		}
+		pb.unread(magic, 0, n);
+		if(isGzip(magic, n)){
+			return new Decompressor(new GZIPInputStream(pb, 1<<16), "gzip");
+		}
+		if(isZip(magic, n)){
+			ZipInputStream zip = new ZipInputStream(pb);
+			for(ZipEntry e=zip.getNextEntry(); e!=null; e=zip.getNextEntry()){
+				if(entry==null ? !e.isDirectory() : e.getName().equals(entry)){
+					return new Decompressor(zip, "zip");
+				}
+			}
+			zip.close();
+			throw new FileNotFoundException(entry==null ? "No file in the zip archive" :
+														  "Zip entry not found: " + entry);
+		}
+		if(entry!=null){
+			pb.close();
+			throw new IOException("Not a zip archive");
+		}
+		return pb;
+	}
+
+	/**
+	 * Checks whether the file, from its current position, is compressed with gzip or zip
+	 *
+	 * @param channel the file
+	 * @return {@code true} if the file is compressed
+	 * @throws IOException in case of I/O error
+	 */
+	static boolean isCompressed(FileChannel channel) throws IOException{
+		ByteBuffer magic = ByteBuffer.allocate(4);
+		long pos = channel.position();
+		while(magic.hasRemaining() && channel.read(magic, pos+magic.position())>0);
+		return isGzip(magic.array(), magic.position()) || isZip(magic.array(), magic.position());
+	}
+
+	private static boolean isGzip(byte[] magic, int n){
+		return n>=2 && (magic[0]&0xFF)==0x1F && (magic[1]&0xFF)==0x8B;
+	}
+
+	private static boolean isZip(byte[] magic, int n){
+		return n==4 && magic[0]=='P' && magic[1]=='K' && magic[2]==3 && magic[3]==4;
+	}
+
+	@Override
+	public void run() {
+		try{
+			while(true){
+				Block b = free.take();
+				try{
+					b.length = fill(b.data);
+				}catch(IOException e){
+					b.failure = e;
+					b.length = -1;
+				}
+				full.put(b);
+				if(b.length<0) break;
+			}
+		}catch(InterruptedException e){
+			// closed by the reader
+		}finally{
+			try {
+				source.close();
+			} catch (IOException e) {
+				// nothing can be done
+			}
+		}
+	}
+
+	/**
+	 * Fills the block with the decompressed content
+	 *
+	 * @return the number of bytes, -1 at the end of the content
+	 */
+	private int fill(byte[] data) throws IOException{
+		int n = 0;
+		while(n<data.length){
+			int r = source.read(data, n, data.length-n);
+			if(r==-1) return n==0 ? -1 : n;
+			n += r;
+		}
+		return n;
+	}
+
+	/**
+	 * Makes the next block the current one
+	 *
+	 * @return {@code false} at the end of the content
+	 */
+	private boolean next() throws IOException{
+		if(current!=null){
+			if(current.length<0) return end();
+			free.add(current);
+		}
+		try {
+			current = full.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+		pos = 0;
+		return current.length>=0 || end();
+	}
+
+	/**
+	 * Reports the end of the content, or the failure of the decompression
+	 */
+	private boolean end() throws IOException{
+		if(current.failure!=null) throw current.failure;
+		return false;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if((current==null || pos>=current.length) && !next()) return -1;
+		return current.data[pos++] & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if(len==0) return 0;
+		if((current==null || pos>=current.length) && !next()) return -1;
+		int n = Math.min(len, current.length-pos);
+		System.arraycopy(current.data, pos, b, off, n);
+		pos += n;
+		return n;
+	}
+
+	/**
+	 * Stops the decompressing thread, which closes the source
+	 * and drops the blocks
+	 */
+	@Override
+	public void close() {
+		thread.interrupt();
+	}
+}
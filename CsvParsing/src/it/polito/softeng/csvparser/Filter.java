@@ -0,0 +1,227 @@
+package it.polito.softeng.csvparser;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Condition on the cells of a row, selecting the rows notified to the processors.
+ * <p>
+ * The conditions are evaluated by the parser as soon as a row has been
+ * tokenized, on the views of the cells (see {@link Cell}), therefore
+ * the rows that are rejected are never copied, decoded, or dispatched
+ * to the processors, e.g.:
+ * <pre>
+	p.addFilter(Filter.and(Filter.equal("OC_TEMA_SINTETICO", "Ambiente"),
+	                       Filter.range("FINANZ_UE", 1e6, Double.POSITIVE_INFINITY)));
+</pre>
+ * A condition on a column is false for the rows missing the cell.
+ *
+ * @see CsvParser#addFilter(Filter)
+ * @version 0.6
+ */
+public abstract class Filter {
+
+	Filter(){}
+
+	/**
+	 * Finds the columns of the conditions among the headers
+	 *
+	 * @throws IllegalArgumentException if a column is not among the headers
+	 */
+	abstract void bind(String[] headers);
+
+	/**
+	 * Selects the columns of the conditions, so that they are tokenized
+	 */
+	abstract void select(Projection p);
+
+	/**
+	 * Evaluates the condition on the current row
+	 */
+	abstract boolean test(Row row);
+
+	/**
+	 * Condition on the content of a cell
+	 */
+	private abstract static class CellFilter extends Filter {
+		private final String column;
+		private int index;
+
+		CellFilter(String column){
+			this.column = column;
+		}
+
+		@Override
+		void bind(String[] headers){
+			index = Arrays.asList(headers).indexOf(column);
+			if(index<0) throw new IllegalArgumentException("Unknown column " + column);
+		}
+
+		@Override
+		void select(Projection p){
+			p.select(index);
+		}
+
+		@Override
+		boolean test(Row row){
+			Cell c = row.cell(index);
+			return c!=null && test(c);
+		}
+
+		abstract boolean test(Cell c);
+	}
+
+	/**
+	 * Selects the rows where a cell is equal to a value
+	 *
+	 * @param column the header of the column
+	 * @param value the value
+	 * @return the condition
+	 */
+	public static Filter equal(String column, String value){
+		return new CellFilter(column){
+			@Override
+			boolean test(Cell c){
+				return c.contentEquals(value);
+			}
+		};
+	}
+
+	/**
+	 * Selects the rows where a cell begins with a prefix
+	 *
+	 * @param column the header of the column
+	 * @param prefix the prefix
+	 * @return the condition
+	 */
+	public static Filter prefix(String column, String prefix){
+		return new CellFilter(column){
+			@Override
+			boolean test(Cell c){
+				int n = prefix.length();
+				if(c.length()<n) return false;
+				for(int i=0; i<n; ++i){
+					if(c.charAt(i)!=prefix.charAt(i)) return false;
+				}
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * Selects the rows where a cell is a number within a range, parsed
+	 * with the number style of the parser (see {@link Cell#toDouble()})
+	 *
+	 * @param column the header of the column
+	 * @param min the smallest value accepted
+	 * @param max the largest value accepted
+	 * @return the condition, false for the cells that are not numbers
+	 */
+	public static Filter range(String column, double min, double max){
+		return new CellFilter(column){
+			@Override
+			boolean test(Cell c){
+				if(c.isEmpty()) return false;
+				try{
+					double v = c.toDouble();
+					return v>=min && v<=max;
+				}catch(NumberFormatException e){
+					return false;
+				}
+			}
+		};
+	}
+
+	/**
+	 * Selects the rows where a cell is equal to one of the given values
+	 *
+	 * @param column the header of the column
+	 * @param values the values
+	 * @return the condition
+	 */
+	public static Filter in(String column, String... values){
+		Set<String> set = new HashSet<>(Arrays.asList(values));
+		return new CellFilter(column){
+			@Override
+			boolean test(Cell c){
+				return set.contains(c); // a cell can look up String elements
+			}
+		};
+	}
+
+	/**
+	 * Selects the rows satisfying all the conditions, which are
+	 * evaluated in the given order until one is false
+	 *
+	 * @param filters the conditions
+	 * @return the condition
+	 */
+	public static Filter and(Filter... filters){
+		return new Combined(filters, true);
+	}
+
+	/**
+	 * Selects the rows satisfying any of the conditions, which are
+	 * evaluated in the given order until one is true
+	 *
+	 * @param filters the conditions
+	 * @return the condition
+	 */
+	public static Filter or(Filter... filters){
+		return new Combined(filters, false);
+	}
+
+	/**
+	 * Selects the rows not satisfying this condition
+	 *
+	 * @return the condition
+	 */
+	public Filter negate(){
+		Filter f = this;
+		return new Filter(){
+			@Override
+			void bind(String[] headers){
+				f.bind(headers);
+			}
+
+			@Override
+			void select(Projection p){
+				f.select(p);
+			}
+
+			@Override
+			boolean test(Row row){
+				return !f.test(row);
+			}
+		};
+	}
+
+	private static final class Combined extends Filter {
+		private final Filter[] filters;
+		private final boolean all;
+
+		Combined(Filter[] filters, boolean all){
+			this.filters = filters.clone();
+			this.all = all;
+		}
+
+		@Override
+		void bind(String[] headers){
+			for(Filter f : filters) f.bind(headers);
+		}
+
+		@Override
+		void select(Projection p){
+			for(Filter f : filters) f.select(p);
+		}
+
+		@Override
+		boolean test(Row row){
+			for(Filter f : filters){
+				if(f.test(row)!=all) return !all;
+			}
+			return all;
+		}
+	}
+}
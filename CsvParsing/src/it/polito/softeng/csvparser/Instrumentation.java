@@ -0,0 +1,180 @@
+package it.polito.softeng.csvparser;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Collects the detailed statistics of an instrumented parsing.
+ * <p>
+ * The time of each row is measured from the end of the previous row,
+ * therefore it includes the tokenizing of the row and its processing.
+ *
+ * @version 0.6
+ */
+class Instrumentation {
+
+	/**
+	 * JFR event spanning the whole parsing
+	 */
+	@Name("it.polito.softeng.csvparser.Parse")
+	@Label("CSV Parsing")
+	@Category("CsvParser")
+	static class ParseEvent extends Event {
+		@Label("Rows")
+		long rows;
+		@Label("Cells")
+		long cells;
+		@Label("Characters")
+		long chars;
+	}
+
+	/**
+	 * JFR event reporting a row slower than the threshold
+	 */
+	@Name("it.polito.softeng.csvparser.SlowRow")
+	@Label("Slow CSV Row")
+	@Category("CsvParser")
+	@Description("Row whose tokenizing and processing took longer than the threshold")
+	static class SlowRowEvent extends Event {
+		@Label("Row")
+		long row;
+		@Label("Cells")
+		int cells;
+		@Label("Elapsed")
+		@Timespan(Timespan.NANOSECONDS)
+		long elapsed;
+	}
+
+	private final Tokenizer tok;
+	private final long slowRow;
+	private final long beginTime;
+	private final long beginAllocated;
+	private final long[] processing;
+	private long lastRow;
+	private int largestCell;
+
+	/**
+	 * Starts the instrumentation of the parsing
+	 *
+	 * @param tok the tokenizer
+	 * @param processors the number of processors, row-at-a-time ones first
+	 * @param slowRow the threshold of the slow rows
+	 */
+	Instrumentation(Tokenizer tok, int processors, Duration slowRow){
+		this.tok = tok;
+		this.slowRow = slowRow.toNanos();
+		this.processing = new long[processors];
+		tok.timed = true;
+		beginAllocated = allocated();
+		beginTime = lastRow = System.nanoTime();
+	}
+
+	/**
+	 * Method called when the tokenizer completed a row
+	 *
+	 * @return the current time
+	 */
+	long rowBegin(){
+		final int[] starts = tok.starts;
+		final int[] ends = tok.ends;
+		int largest = largestCell;
+		for(int i=0; i<tok.col; ++i){
+			int len = ends[i]-starts[i];
+			if(len>largest) largest = len;
+		}
+		largestCell = largest;
+		return System.nanoTime();
+	}
+
+	/**
+	 * Records the time spent by a processor
+	 *
+	 * @param proc the index of the processor
+	 * @param since the time the processor was invoked
+	 * @return the current time
+	 */
+	long processed(int proc, long since){
+		long now = System.nanoTime();
+		processing[proc] += now-since;
+		return now;
+	}
+
+	/**
+	 * Method called when the row has been processed
+	 *
+	 * @param num the number of the row
+	 */
+	void rowEnd(long num){
+		long now = System.nanoTime();
+		if(now-lastRow>slowRow){
+			SlowRowEvent e = new SlowRowEvent();
+			if(e.isEnabled()){
+				e.row = num;
+				e.cells = tok.col;
+				e.elapsed = now-lastRow;
+				e.commit();
+			}
+		}
+		lastRow = now;
+	}
+
+	/**
+	 * Adds the time spent by the processors running on their own threads
+	 *
+	 * @param nanos the time of each processor
+	 */
+	void processed(long[] nanos){
+		for(int i=0; i<nanos.length; ++i){
+			processing[i] += nanos[i];
+		}
+	}
+
+	/**
+	 * Builds the statistics at the end of the parsing
+	 *
+	 * @param processors the processors, in the same order as the measures
+	 * @param concurrent whether the processors ran on their own threads
+	 */
+	CsvParser.Stats stats(List<Object> processors, boolean concurrent, long rows, long cells){
+		long elapsed = System.nanoTime()-beginTime;
+		long allocated = beginAllocated<0 ? -1 : allocated()-beginAllocated;
+		tok.timed = false;
+		Map<Object,Duration> times = new LinkedHashMap<>();
+		long total = 0;
+		for(int i=0; i<processing.length; ++i){
+			times.put(processors.get(i), Duration.ofNanos(processing[i]));
+			total += processing[i];
+		}
+		long tokenizing = elapsed - tok.readNanos - (concurrent ? 0 : total);
+		return new CsvParser.Stats(Duration.ofNanos(elapsed), rows, cells, tok.count,
+				Duration.ofNanos(tok.readNanos), Duration.ofNanos(Math.max(0, tokenizing)),
+				times, tok.growths, largestCell, allocated);
+	}
+
+	/**
+	 * Bytes allocated so far by the current thread
+	 *
+	 * @return the number of bytes, -1 if not supported by the JVM
+	 */
+	private static long allocated(){
+		ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+		if(mx instanceof com.sun.management.ThreadMXBean){
+			com.sun.management.ThreadMXBean smx = (com.sun.management.ThreadMXBean)mx;
+			if(smx.isThreadAllocatedMemorySupported() && smx.isThreadAllocatedMemoryEnabled()){
+				return smx.getThreadAllocatedBytes(Thread.currentThread().getId());
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,64 @@
+package it.polito.softeng.csvparser;
+
+/**
+ * Bounded cache of the values of a column, returning the same {@link String}
+ * for all the cells with the same content.
+ * <p>
+ * A cell is looked up by its hash code, computed directly on the buffer of the
+ * parser, therefore a {@link String} is created only when the value is not
+ * in the cache. The cache is a set-associative table: each value can be stored
+ * only in the {@value #WAYS} slots of the set chosen by its hash, and when the
+ * set is full the oldest value of the set is evicted, so that the memory is
+ * bounded also for columns with many distinct values.
+ * <p>
+ * The cache can be used by several threads without locking: since the strings
+ * are immutable, a race can only cause a value to be missed and created again.
+ *
+ * @version 0.6
+ */
+final class Interner {
+
+	/** Number of slots of each set */
+	static final int WAYS = 4;
+
+	private final String[] values;
+	private final int[] hashes;
+	private final int sets;
+
+	/**
+	 * Creates a cache
+	 *
+	 * @param size the maximum number of values, rounded up to a power of two
+	 */
+	Interner(int size){
+		int n = Integer.highestOneBit((Math.max(WAYS, size)-1)<<1);
+		values = new String[n];
+		hashes = new int[n];
+		sets = n/WAYS - 1;
+	}
+
+	/**
+	 * Retrieves the value of a cell
+	 *
+	 * @param c the cell
+	 * @return the string with the content of the cell
+	 */
+	String intern(Cell c){
+		int h = c.hashCode();
+		int first = ((h ^ (h>>>16)) & sets) * WAYS;
+		for(int i=first; i<first+WAYS; ++i){
+			String v = values[i];
+			if(v==null) break;
+			if(hashes[i]==h && c.contentEquals(v)) return v;
+		}
+		String v = c.text();
+		// the new value takes the first slot, the oldest one is evicted
+		for(int i=first+WAYS-1; i>first; --i){
+			hashes[i] = hashes[i-1];
+			values[i] = values[i-1];
+		}
+		hashes[first] = h;
+		values[first] = v;
+		return v;
+	}
+}
@@ -0,0 +1,100 @@
+package it.polito.softeng.csvparser;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Tokenizer scanning a file mapped into memory.
+ * <p>
+ * The file is mapped through a window that is moved forward when
+ * the scan reaches its end; the new window starts at the beginning
+ * of the current row so that no content needs to be copied.
+ * The window is enlarged when a single row does not fit into it.
+ *
+ * @version 0.6
+ */
+class MappedTokenizer extends ByteTokenizer {
+
+	/** Default size of the mapped window */
+	static final int WINDOW_SIZE = 1<<30;
+
+	private final FileChannel channel;
+	/** position in the file where the parsing ends */
+	private final long size;
+	private int window;
+	/** position in the file of the beginning of the window */
+	private long base;
+	/** position in the file where the parsing started */
+	private final long origin;
+
+	MappedTokenizer(FileChannel channel, Charset charset, int window) throws IOException{
+		this(channel,charset,window,channel.position(),channel.size());
+	}
+
+	/**
+	 * Builds a tokenizer for the portion of the file between
+	 * the given positions.
+	 */
+	MappedTokenizer(FileChannel channel, Charset charset, int window, long from, long to){
+		super(charset);
+		this.channel = channel;
+		this.window = window;
+		this.origin = from;
+		this.size = to;
+	}
+
+	@Override
+	void start() throws IOException {
+		map(origin);
+		detectSeparator();
+	}
+
+	@Override
+	boolean reposition(long position) throws IOException {
+		current = limit = rowBegin = 0;
+		map(origin+position);
+		return true;
+	}
+
+	/**
+	 * Position in the file of the next byte to be scanned
+	 */
+	long position(){
+		return base+current;
+	}
+
+	FileChannel channel(){
+		return channel;
+	}
+
+	int window(){
+		return window;
+	}
+
+	@Override
+	boolean fill() throws IOException {
+		if(base+limit>=size){
+			return false;
+		}
+		if(rowBegin==0){
+			// the current row does not fit into the window
+			window = enlarge(window);
+		}
+		long newBase = base+rowBegin;
+		shift(rowBegin);
+		map(newBase);
+		return true;
+	}
+
+	/**
+	 * Maps the window starting at the given position of the file
+	 */
+	private void map(long position) throws IOException{
+		int len = (int)Math.min(window, size-position);
+		buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, len);
+		base = position;
+		limit = len;
+		count = position+len-origin;
+	}
+}
@@ -0,0 +1,22 @@
+package it.polito.softeng.csvparser;
+
+/**
+ * This interface must be implemented by the processors whose
+ * partial results, computed on separate portions of the same file,
+ * can be combined together.
+ * <p>
+ * It is used by the parallel parsing mode of {@link CsvParser}.
+ *
+ * @param <T> the type of the partial results
+ * 
+ * @version 0.6
+ */
+public interface Mergeable<T> {
+	/**
+	 * Adds the partial results of another processor
+	 * that processed the rows following those of this one.
+	 * 
+	 * @param other the partial results to be merged
+	 */
+	void merge(T other);
+}
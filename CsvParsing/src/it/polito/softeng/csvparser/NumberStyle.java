@@ -0,0 +1,70 @@
+package it.polito.softeng.csvparser;
+
+/**
+ * Describes how numbers are written in the cells,
+ * i.e. the decimal and grouping separators.
+ * <p>
+ * For instance Italian open data use <code>1.234,56</code>,
+ * described by {@link #ITALIAN}.
+ *
+ * @see Cell#toLong(NumberStyle)
+ * @see CsvParser#setNumberStyle(NumberStyle)
+ *
+ * @version 0.6
+ */
+public final class NumberStyle {
+
+	/** Character used when there is no grouping separator */
+	public static final char NONE = '\uFFFF';
+
+	/** Decimal point and no grouping separator, e.g. <code>1234.56</code> */
+	public static final NumberStyle PLAIN = new NumberStyle('.', NONE);
+
+	/** Decimal point and comma grouping separator, e.g. <code>1,234.56</code> */
+	public static final NumberStyle ENGLISH = new NumberStyle('.', ',');
+
+	/** Decimal comma and point grouping separator, e.g. <code>1.234,56</code> */
+	public static final NumberStyle ITALIAN = new NumberStyle(',', '.');
+
+	final char decimal;
+	final char grouping;
+
+	/**
+	 * Builds a new number style
+	 *
+	 * @param decimal the decimal separator
+	 * @param grouping the grouping separator, it is ignored when parsing numbers
+	 */
+	public NumberStyle(char decimal, char grouping){
+		if(decimal==grouping){
+			throw new IllegalArgumentException("Decimal and grouping separators must be different");
+		}
+		this.decimal = decimal;
+		this.grouping = grouping;
+	}
+
+	/**
+	 * Builds a new number style without grouping separator
+	 *
+	 * @param decimal the decimal separator
+	 */
+	public NumberStyle(char decimal){
+		this(decimal, NONE);
+	}
+
+	/**
+	 * The decimal separator
+	 * @return the separator
+	 */
+	public char getDecimal(){
+		return decimal;
+	}
+
+	/**
+	 * The grouping separator
+	 * @return the separator, or {@link #NONE} if none
+	 */
+	public char getGrouping(){
+		return grouping;
+	}
+}
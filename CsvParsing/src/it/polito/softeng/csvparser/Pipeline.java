@@ -0,0 +1,203 @@
+package it.polito.softeng.csvparser;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+
+/**
+ * Pipeline connecting the parser to processors running on their own threads.
+ * <p>
+ * The parser copies the rows into batches taken from a ring of pre-allocated
+ * batches and publishes each batch when full; each processor consumes
+ * the published batches in order on its own thread.
+ * A batch is reused by the parser once all the processors consumed it.
+ *
+ * @version 0.6
+ */
+class Pipeline {
+
+	private final Tokenizer tok;
+	private final Batch[] ring;
+	private final WaitStrategy wait;
+	private final Object lock = new Object();
+	private final Consumer[] consumers;
+
+	/** sequence of the last published batch */
+	private volatile long published = -1;
+	private volatile boolean done;
+	private volatile boolean aborted;
+	private volatile Throwable failure;
+	/** sequence of the batch being filled */
+	private long sequence = 0;
+	private Batch batch;
+
+	Pipeline(Tokenizer tok, List<BatchProcessor> processors, int ringSize, int batchSize, WaitStrategy wait){
+		this.tok = tok;
+		this.wait = wait;
+		ring = new Batch[ringSize];
+		for(int i=0; i<ring.length; ++i){
+			ring[i] = new Batch(tok, batchSize);
+		}
+		consumers = new Consumer[processors.size()];
+		for(int i=0; i<consumers.length; ++i){
+			consumers[i] = new Consumer(processors.get(i));
+		}
+		batch = ring[0];
+	}
+
+	void start(){
+		for(Consumer c : consumers){
+			c.start();
+		}
+	}
+
+	/**
+	 * Adds the current row of the tokenizer to the pipeline
+	 */
+	void add(long num) throws IOException{
+		batch.add(tok, num);
+		if(batch.isFull()){
+			publish();
+		}
+	}
+
+	private void publish() throws IOException{
+		published = sequence++;
+		wait.signal(lock);
+		// wait for the next batch to be released by all consumers
+		int attempt=0;
+		while(failure==null && sequence-ring.length > minConsumed()){
+			try {
+				wait.idle(attempt++, lock);
+			} catch (InterruptedException e) {
+				throw new InterruptedIOException();
+			}
+		}
+		checkFailure();
+		batch = ring[(int)(sequence%ring.length)];
+		batch.clear();
+	}
+
+	private long minConsumed(){
+		long min = Long.MAX_VALUE;
+		for(Consumer c : consumers){
+			if(c.consumed<min) min = c.consumed;
+		}
+		return min;
+	}
+
+	/**
+	 * Publishes the remaining rows and waits for the processors to terminate
+	 */
+	void finish() throws IOException{
+		if(batch.size>0){
+			publish();
+		}
+		done = true;
+		wait.signal(lock);
+		for(Consumer c : consumers){
+			try {
+				c.join();
+			} catch (InterruptedException e) {
+				throw new InterruptedIOException();
+			}
+		}
+		checkFailure();
+	}
+
+	/**
+	 * Stops the processors when the parsing fails, discarding the batches
+	 * not consumed yet and without notifying the end; it waits for
+	 * the processors to terminate and has no effect once finished
+	 */
+	void abort(){
+		aborted = true;
+		wait.signal(lock);
+		boolean interrupted = false;
+		for(Consumer c : consumers){
+			while(c.isAlive()){
+				try {
+					c.join();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		}
+		if(interrupted) Thread.currentThread().interrupt();
+	}
+
+	/**
+	 * Time spent by each processor, available once finished
+	 *
+	 * @return the nanoseconds, in the order of the processors
+	 */
+	long[] processingNanos(){
+		long[] nanos = new long[consumers.length];
+		for(int i=0; i<nanos.length; ++i){
+			nanos[i] = consumers[i].nanos;
+		}
+		return nanos;
+	}
+
+	/**
+	 * Propagates the failure of a processor to the parser
+	 */
+	private void checkFailure() throws IOException{
+		Throwable t = failure;
+		if(t!=null){
+			if(t instanceof RuntimeException) throw (RuntimeException)t;
+			if(t instanceof Error) throw (Error)t;
+			throw new IOException(t);
+		}
+	}
+
+	/**
+	 * Thread feeding a processor with the published batches
+	 */
+	private class Consumer extends Thread {
+		private final BatchProcessor proc;
+		private final RowBatch view;
+		/** sequence of the last consumed batch */
+		volatile long consumed = -1;
+		/** time spent by the processor */
+		long nanos;
+
+		Consumer(BatchProcessor proc){
+			super("CsvParser-" + (proc instanceof RowAdapter ? 
+								((RowAdapter)proc).processor() : proc).getClass().getSimpleName());
+			setDaemon(true);
+			this.proc = proc;
+			this.view = new RowBatch(tok);
+		}
+
+		@Override
+		public void run(){
+			try{
+				int attempt=0;
+				while(failure==null && !aborted){
+					long next = consumed+1;
+					if(next>published){
+						if(done && next>published) break;
+						wait.idle(attempt++, lock);
+						continue;
+					}
+					attempt=0;
+					long t = System.nanoTime();
+					proc.newBatch(view.attach(ring[(int)(next%ring.length)]));
+					nanos += System.nanoTime()-t;
+					consumed = next;
+					wait.signal(lock);
+				}
+				if(failure==null && !aborted){
+					long t = System.nanoTime();
+					proc.end();
+					nanos += System.nanoTime()-t;
+				}
+			}catch(Throwable t){
+				failure = t;
+				consumed = Long.MAX_VALUE; // releases the parser
+				wait.signal(lock);
+			}
+		}
+	}
+}
@@ -17,6 +17,23 @@ public interface Processor {
 	 */
 	void headers(String[] headers);
 	
+	/**
+	 * Method called after reading the first row of CSV that
+	 * is expected to contain the headers of the columns (or field names),
+	 * it allows the processor to select the columns it needs.
+	 * <p>
+	 * The parser scans past the cells of the columns that no
+	 * processor selected; by default all the columns are selected
+	 * and {@link #headers(String[])} is invoked.
+	 * 
+	 * @param headers  an array of {@link java.lang.String}s containing the field names
+	 * @param projection  the columns required by the processor
+	 */
+	default void headers(String[] headers, Projection projection){
+		projection.selectAll();
+		headers(headers);
+	}
+	
 	/**
 	 * Method called upon reading each row
 	 * 
@@ -0,0 +1,77 @@
+package it.polito.softeng.csvparser;
+
+import java.time.Duration;
+
+/**
+ * Snapshot of the progress of the parsing.
+ * 
+ * @see ProgressListener
+ * 
+ * @version 0.6
+ */
+public class Progress {
+	/** Number of characters (bytes for ASCII-compatible encodings) consumed so far */
+	public final long consumed;
+
+	/** Size of the input, -1 if not known, e.g. for compressed files */
+	public final long size;
+
+	/** Number of rows parsed so far, including the headers */
+	public final long rows;
+
+	/** Time elapsed since the beginning of the parsing */
+	public final Duration elapsed;
+
+	/** Million characters per second over the recent reports */
+	public final double throughput;
+
+	/** Rows per second since the beginning of the parsing */
+	public final double rowsPerSecond;
+
+	/** Whether the parsing is over */
+	public final boolean done;
+
+	Progress(long consumed, long size, long rows, Duration elapsed, double throughput, boolean done){
+		this.consumed = consumed;
+		this.size = size;
+		this.rows = rows;
+		this.elapsed = elapsed;
+		this.throughput = throughput;
+		this.done = done;
+		double secs = elapsed.toNanos()/1e9;
+		this.rowsPerSecond = secs>0 ? rows/secs : 0;
+	}
+
+	/**
+	 * Computes the fraction of the input consumed so far
+	 * 
+	 * @return the fraction between 0 and 1, or -1 if the size of the input is not known
+	 */
+	public double fraction(){
+		if(size<0) return -1;
+		if(size==0) return 1;
+		return Math.min(1.0, (double)consumed/size);
+	}
+
+	/**
+	 * Estimates the time to the end of the parsing, based on the recent throughput
+	 * 
+	 * @return the estimated time, or <code>null</code> if the size of the input is not known
+	 */
+	public Duration eta(){
+		if(size<0) return null;
+		if(done || consumed>=size) return Duration.ZERO;
+		if(throughput<=0) return null;
+		return Duration.ofNanos((long)((size-consumed)/throughput*1000));
+	}
+
+	public String toString(){
+		StringBuilder s = new StringBuilder();
+		s.append(rows).append(" rows, ").append(consumed).append(" chars");
+		if(size>=0) s.append(String.format(" (%.1f%%)", fraction()*100));
+		s.append(String.format(", %.3f Mch/s, %.0f rows/s", throughput, rowsPerSecond));
+		Duration eta = eta();
+		if(eta!=null && !done) s.append(", ETA ").append(eta);
+		return s.toString();
+	}
+}
@@ -0,0 +1,21 @@
+package it.polito.softeng.csvparser;
+
+/**
+ * This interface must be implemented by the objects receiving
+ * the progress of the parsing.
+ * 
+ * @see CsvParser#setProgressListener(ProgressListener, java.time.Duration)
+ * 
+ * @version 0.6
+ */
+@FunctionalInterface
+public interface ProgressListener {
+	/**
+	 * Method called periodically on the parsing thread, and once at the end of the parsing.
+	 * <p>
+	 * The listener may stop the parsing through {@link CsvParser#cancel()}.
+	 * 
+	 * @param progress the current progress
+	 */
+	void progress(Progress progress);
+}
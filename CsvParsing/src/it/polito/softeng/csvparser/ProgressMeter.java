@@ -0,0 +1,72 @@
+package it.polito.softeng.csvparser;
+
+import java.time.Duration;
+
+/**
+ * Measures the progress of the parsing and notifies it to a listener.
+ * <p>
+ * The clock is checked every {@value #CHECK_ROWS} rows, the throughput
+ * is computed over the last {@value #WINDOW} reports.
+ *
+ * @version 0.6
+ */
+class ProgressMeter {
+
+	static final int CHECK_ROWS = 1024;
+	static final int WINDOW = 8;
+
+	private final ProgressListener listener;
+	private final long interval;
+	private final long size;
+	private final long begin;
+	/** time and characters of the recent reports, used as a circular buffer */
+	private final long[] times = new long[WINDOW];
+	private final long[] chars = new long[WINDOW];
+	private int samples;
+	private long next;
+	/** rows to the next check of the clock */
+	int countdown = CHECK_ROWS;
+
+	ProgressMeter(ProgressListener listener, Duration interval, long size){
+		this.listener = listener;
+		this.interval = interval.toNanos();
+		this.size = size;
+		begin = System.nanoTime();
+		next = begin + this.interval;
+		times[0] = begin;
+		samples = 1;
+	}
+
+	/**
+	 * Checks the clock and notifies the progress if the interval elapsed
+	 *
+	 * @param consumed the characters consumed so far
+	 * @param rows the rows parsed so far
+	 */
+	void check(long consumed, long rows){
+		countdown = CHECK_ROWS;
+		long now = System.nanoTime();
+		if(now>=next){
+			report(now, consumed, rows, false);
+			next = now + interval;
+		}
+	}
+
+	/**
+	 * Notifies the final progress
+	 */
+	void end(long consumed, long rows){
+		report(System.nanoTime(), consumed, rows, true);
+	}
+
+	private void report(long now, long consumed, long rows, boolean done){
+		int slot = samples%WINDOW;
+		int oldest = samples<WINDOW ? 0 : slot;
+		long dt = now-times[oldest];
+		double throughput = dt>0 ? (consumed-chars[oldest])*1000.0/dt : 0;
+		times[slot] = now;
+		chars[slot] = consumed;
+		samples++;
+		listener.progress(new Progress(consumed, size, rows, Duration.ofNanos(now-begin), throughput, done));
+	}
+}
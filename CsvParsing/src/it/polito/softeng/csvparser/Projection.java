@@ -0,0 +1,83 @@
+package it.polito.softeng.csvparser;
+
+import java.util.Arrays;
+
+/**
+ * The set of columns required by a processor.
+ * <p>
+ * A processor selects the columns it needs while receiving the headers
+ * through {@link Processor#headers(String[], Projection)}; the parser scans
+ * past the cells of the columns that no processor selected, and such cells
+ * are not available through {@link Row#get(int)}.
+ *
+ * @version 0.6
+ */
+public final class Projection {
+
+	private final String[] headers;
+	private boolean[] selected;
+	private boolean all;
+
+	Projection(String[] headers){
+		this.headers = headers;
+		this.selected = new boolean[headers.length];
+	}
+
+	/**
+	 * Selects the columns with the given indexes
+	 *
+	 * @param indexes the positional indexes of the columns
+	 */
+	public void select(int... indexes){
+		for(int i : indexes){
+			if(i<0) throw new IllegalArgumentException("Invalid column index " + i);
+			if(i>=selected.length){
+				selected = Arrays.copyOf(selected, i+1);
+			}
+			selected[i] = true;
+		}
+	}
+
+	/**
+	 * Selects the columns with the given titles
+	 *
+	 * @param titles the titles of the columns
+	 * @throws IllegalArgumentException if a title is not among the headers
+	 */
+	public void select(String... titles){
+		for(String t : titles){
+			int i = Arrays.asList(headers).indexOf(t);
+			if(i<0) throw new IllegalArgumentException("Unknown column " + t);
+			selected[i] = true;
+		}
+	}
+
+	/**
+	 * Selects all the columns
+	 */
+	public void selectAll(){
+		all = true;
+	}
+
+	/**
+	 * Adds the columns selected in another projection
+	 */
+	void add(Projection other){
+		if(other.all){
+			all = true;
+		}else{
+			for(int i=0; i<other.selected.length; ++i){
+				if(other.selected[i]) select(i);
+			}
+		}
+	}
+
+	/**
+	 * The selected columns
+	 *
+	 * @return the flags of the selected columns, or {@code null} if all the columns are selected
+	 */
+	boolean[] columns(){
+		return all ? null : selected;
+	}
+}
@@ -1,5 +1,6 @@
 package it.polito.softeng.csvparser;
 
+import java.util.Arrays;
 import java.util.Map;
 
 /**
@@ -11,27 +12,37 @@ import java.util.Map;
 public class Row {
 
 	private Map<String,Integer> titoliIndici;
-	private String[] campi;
+	private Tokenizer campi;
 	private long riga;
+	private Cell[] celle = new Cell[0];
 	
-	Row(Map<String, Integer> titoliIndici, String[] campi, long count) {
+	Row(Map<String, Integer> titoliIndici, Tokenizer campi, long count) {
 		this.titoliIndici = titoliIndici;
 		this.campi = campi;
 		this.riga = count;
 	}
 	
-	void init(String[] fields, long count) {
-		this.campi = fields;
+	void init(long count) {
 		this.riga = count;
 	}
 	
+	Tokenizer tokenizer() {
+		return campi;
+	}
+	
 	/**
 	 * Retrieves the cell identified by the index
+	 * <p>
+	 * The content of the cell is decoded upon each invocation.
+	 * 
 	 * @param index the positional index
-	 * @return the value of the cell
+	 * @return the value of the cell, or {@code null} if the row has fewer cells
+	 * 			or the column is not part of the {@link Projection}
 	 */
 	public String get(int index){
-		return campi[index];
+		if(index>=campi.col || campi.starts[index]<0) return null;
+		if(campi.interner(index)!=null) return cell(index).toString();
+		return campi.cell(index);
 	}
 	
 	/**
@@ -40,7 +51,140 @@ public class Row {
 	 * @return the value of the cell
 	 */
 	public String get(String title){
-		return campi[titoliIndici.get(title)];
+		return get(titoliIndici.get(title));
+	}
+	
+	/**
+	 * Retrieves a view of the cell identified by the index.
+	 * <p>
+	 * The view reads the content of the cell directly from the parser
+	 * buffer, without creating a {@link String}; it is valid only until 
+	 * the processing of the row ends.
+	 * 
+	 * @param index the positional index
+	 * @return the view of the cell, or {@code null} if the row has fewer cells
+	 * 			or the column is not part of the {@link Projection}
+	 */
+	public Cell cell(int index){
+		if(index>=campi.col || campi.starts[index]<0) return null;
+		if(index>=celle.length){
+			Cell[] nc = Arrays.copyOf(celle, Math.max(index+1, celle.length*2));
+			for(int i=celle.length; i<nc.length; ++i){
+				nc[i] = new Cell(campi,i);
+				nc[i].interner = campi.interner(i);
+			}
+			celle = nc;
+		}
+		return celle[index];
+	}
+	
+	/**
+	 * Retrieves a view of the cell by title of the column
+	 * 
+	 * @param title the title of the column
+	 * @return the view of the cell
+	 * @see #cell(int)
+	 */
+	public Cell cell(String title){
+		return cell(titoliIndici.get(title));
+	}
+	
+	/**
+	 * Retrieves the cell identified by the index as a <code>long</code>
+	 * 
+	 * @param index the positional index
+	 * @return the value of the cell
+	 * @throws NumberFormatException if the cell does not contain an integer number
+	 * @see Cell#toLong()
+	 */
+	public long getLong(int index){
+		return cell(index).toLong();
+	}
+	
+	/**
+	 * Retrieves a cell by title of the column as a <code>long</code>
+	 * 
+	 * @param title the title of the column
+	 * @return the value of the cell
+	 * @throws NumberFormatException if the cell does not contain an integer number
+	 * @see Cell#toLong()
+	 */
+	public long getLong(String title){
+		return cell(title).toLong();
+	}
+	
+	/**
+	 * Retrieves the cell identified by the index as an <code>int</code>
+	 * 
+	 * @param index the positional index
+	 * @return the value of the cell
+	 * @throws NumberFormatException if the cell does not contain an integer number
+	 * @see Cell#toInt()
+	 */
+	public int getInt(int index){
+		return cell(index).toInt();
+	}
+	
+	/**
+	 * Retrieves a cell by title of the column as an <code>int</code>
+	 * 
+	 * @param title the title of the column
+	 * @return the value of the cell
+	 * @throws NumberFormatException if the cell does not contain an integer number
+	 * @see Cell#toInt()
+	 */
+	public int getInt(String title){
+		return cell(title).toInt();
+	}
+	
+	/**
+	 * Retrieves the cell identified by the index as a <code>double</code>
+	 * 
+	 * @param index the positional index
+	 * @return the value of the cell
+	 * @throws NumberFormatException if the cell does not contain a number
+	 * @see Cell#toDouble()
+	 */
+	public double getDouble(int index){
+		return cell(index).toDouble();
+	}
+	
+	/**
+	 * Retrieves a cell by title of the column as a <code>double</code>
+	 * 
+	 * @param title the title of the column
+	 * @return the value of the cell
+	 * @throws NumberFormatException if the cell does not contain a number
+	 * @see Cell#toDouble()
+	 */
+	public double getDouble(String title){
+		return cell(title).toDouble();
+	}
+	
+	/**
+	 * Retrieves the cell identified by the index as a fixed-point decimal number
+	 * 
+	 * @param index the positional index
+	 * @param scale the number of decimal digits
+	 * @return the value of the cell multiplied by 10<sup>scale</sup>
+	 * @throws NumberFormatException if the cell does not contain a number
+	 * @see Cell#toDecimal(int)
+	 */
+	public long getDecimal(int index, int scale){
+		return cell(index).toDecimal(scale);
+	}
+	
+	/**
+	 * Retrieves a cell by title of the column as a fixed-point decimal number
+	 * 
+	 * @param title the title of the column
+	 * @param scale the number of decimal digits
+	 * @return the value of the cell multiplied by 10<sup>scale</sup>
+	 * @throws NumberFormatException if the cell does not contain a number
+	 * @see Cell#toDecimal(int)
+	 */
+	public long getDecimal(String title, int scale){
+		return cell(title).toDecimal(scale);
 	}
 	
 	/**
@@ -56,6 +200,40 @@ public class Row {
 	 * @return the number of columns
 	 */
 	public long getLength(){
-		return campi.length;
+		return campi.col;
+	}
+
+	/**
+	 * Copies the row, so that the copy and its cells remain valid
+	 * after the processing of the row ends, e.g. to keep the row or
+	 * to pass it to another thread.
+	 * <p>
+	 * Only the cells that are part of the {@link Projection} are copied,
+	 * into a buffer owned by the copy, without decoding them.
+	 * 
+	 * @return the copy of the row
+	 */
+	public Row copy(){
+		int n = campi.col;
+		int from = Integer.MAX_VALUE;
+		int to = 0;
+		for(int i=0; i<n; ++i){
+			if(campi.starts[i]>=0){
+				from = Math.min(from, campi.starts[i]);
+				to = Math.max(to, campi.ends[i]);
+			}
+		}
+		if(from>to) from = to; // no cells
+		Tokenizer store = campi.newView(to-from, n);
+		int delta = store.append(campi, from, to) - from;
+		for(int i=0; i<n; ++i){
+			int s = campi.starts[i];
+			store.starts[i] = s<0 ? -1 : s+delta;
+			store.ends[i] = s<0 ? -1 : campi.ends[i]+delta;
+			store.escaped[i] = campi.escaped[i];
+		}
+		store.col = n;
+		store.rows = 1;
+		return new Row(titoliIndici, store, riga);
 	}
 }
@@ -0,0 +1,46 @@
+package it.polito.softeng.csvparser;
+
+import java.util.Map;
+
+/**
+ * Adapter feeding a row-at-a-time {@link Processor} with batches of rows.
+ *
+ * @version 0.6
+ */
+class RowAdapter implements BatchProcessor {
+
+	private final Processor proc;
+	private final Row row;
+	private final Tokenizer view;
+
+	RowAdapter(Processor proc, Tokenizer source, Map<String,Integer> titoliIndici){
+		this.proc = proc;
+		this.view = source.newView();
+		this.row = new Row(titoliIndici, view, 0);
+	}
+
+	@Override
+	public void headers(String[] headers, Projection projection) {
+		proc.headers(headers, projection);
+	}
+
+	@Override
+	public void newBatch(RowBatch batch) {
+		Batch b = batch.batch();
+		view.share(b.data);
+		for(int i=0; i<b.size; ++i){
+			b.load(i, view);
+			row.init(b.nums[i]);
+			proc.newLine(row);
+		}
+	}
+
+	@Override
+	public void end() {
+		proc.end();
+	}
+
+	Processor processor(){
+		return proc;
+	}
+}
@@ -0,0 +1,142 @@
+package it.polito.softeng.csvparser;
+
+/**
+ * A batch of consecutive rows in columnar layout.
+ * <p>
+ * The content of the rows is stored in a buffer shared by all
+ * the cells; for each column the batch provides the arrays with the
+ * offsets and the lengths of the cells in the buffer, so that a 
+ * {@link BatchProcessor} can run tight loops over a column, e.g.:
+ * <pre>
+	int[] len = batch.lengths(column);
+	for(int r=0; r&lt;batch.size(); ++r){
+		if(len[r]==0) empty++;
+	}
+</pre>
+ * The batch is recycled by the parser, it is valid only 
+ * during the invocation of {@link BatchProcessor#newBatch(RowBatch)}.
+ *
+ * @version 0.6
+ */
+public final class RowBatch {
+
+	private Batch batch;
+	/** tokenizer used to provide a view of a single cell */
+	private final Tokenizer view;
+	private final Cell cell;
+
+	RowBatch(Tokenizer source){
+		view = source.newView();
+		cell = new Cell(view,0);
+	}
+
+	/**
+	 * Makes this object provide access to the given batch
+	 */
+	RowBatch attach(Batch b){
+		batch = b;
+		view.share(b.data);
+		return this;
+	}
+
+	Batch batch(){
+		return batch;
+	}
+
+	/**
+	 * Number of rows in the batch
+	 * @return the number of rows
+	 */
+	public int size(){
+		return batch.size;
+	}
+
+	/**
+	 * Number of columns, i.e. the number of cells of the longest row
+	 * @return the number of columns
+	 */
+	public int getColumns(){
+		return batch.offsets.length;
+	}
+
+	/**
+	 * Number of the row, as in {@link Row#getNum()}
+	 * @param row the index of the row in the batch
+	 * @return the number of the row in the file
+	 */
+	public long getNum(int row){
+		return batch.nums[row];
+	}
+
+	/**
+	 * Number of cells in the row
+	 * @param row the index of the row in the batch
+	 * @return the number of cells
+	 */
+	public int getLength(int row){
+		return batch.cols[row];
+	}
+
+	/**
+	 * Offsets of the cells of a column in the buffer of the batch.
+	 * <p>
+	 * The offset is -1 for cells that are missing or not part of the {@link Projection}.
+	 * The array must not be modified and it can be longer than the batch.
+	 * 
+	 * @param column the index of the column
+	 * @return the offsets indexed by row
+	 */
+	public int[] offsets(int column){
+		return batch.offsets[column];
+	}
+
+	/**
+	 * Lengths of the cells of a column in the buffer of the batch.
+	 * <p>
+	 * The length is 0 for empty cells and -1 for cells that are missing 
+	 * or not part of the {@link Projection}; for cells containing escaped 
+	 * quotes it includes the escape characters.
+	 * The array must not be modified and it can be longer than the batch.
+	 * 
+	 * @param column the index of the column
+	 * @return the lengths indexed by row
+	 */
+	public int[] lengths(int column){
+		return batch.lengths[column];
+	}
+
+	/**
+	 * Retrieves a view of the cell.
+	 * <p>
+	 * The same view object is returned by every invocation,
+	 * therefore it is valid only until the next invocation.
+	 * 
+	 * @param row the index of the row in the batch
+	 * @param column the index of the column
+	 * @return the view of the cell, or {@code null} if the cell is not available
+	 */
+	public Cell cell(int row, int column){
+		if(column>=batch.offsets.length) return null;
+		int s = batch.offsets[column][row];
+		if(s<0) return null;
+		view.starts[0] = s;
+		view.ends[0] = s+batch.lengths[column][row];
+		view.escaped[0] = batch.escaped[column][row];
+		view.col = 1;
+		view.rows++;
+		cell.interner = view.interner(column);
+		return cell;
+	}
+
+	/**
+	 * Retrieves the value of the cell
+	 * 
+	 * @param row the index of the row in the batch
+	 * @param column the index of the column
+	 * @return the value of the cell, or {@code null} if the cell is not available
+	 */
+	public String get(int row, int column){
+		Cell c = cell(row, column);
+		return c==null ? null : c.toString();
+	}
+}
@@ -0,0 +1,211 @@
+package it.polito.softeng.csvparser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Index of the positions of the rows of a CSV file.
+ * <p>
+ * The index records the position of the beginning of every N-th row,
+ * numbered as the {@link Row}s (the headers are row 0); it is built by the
+ * parser while parsing the whole file, and allows the parser to start
+ * from any row scanning at most N-1 rows, e.g.:
+ * <pre>
+	CsvParser p = new CsvParser("file.csv");
+	p.setIndexing(RowIndex.INTERVAL);
+	p.parse();
+	p.getIndex().save(RowIndex.sidecar(Paths.get("file.csv")));
+	...
+	CsvParser q = new CsvParser("file.csv");
+	q.setRange(RowIndex.load(RowIndex.sidecar(Paths.get("file.csv"))), 5_000_000, 5_000_100);
+	q.addProcessor(proc);
+	q.parse();
+</pre>
+ * The positions are in bytes from the beginning of the input, therefore the
+ * index can be used only with files with an ASCII-compatible encoding, which
+ * are not compressed. The positions are found by the tokenizer,
+ * therefore the quoted cells spanning several lines are handled correctly.
+ * <p>
+ * The index is saved in a compact binary format, where the differences
+ * between consecutive positions are stored as variable-length integers.
+ *
+ * @version 0.6
+ */
+public class RowIndex {
+
+	/** Default interval between the indexed rows */
+	public static final int INTERVAL = 10000;
+
+	private static final int MAGIC = 0x43535649; // "CSVI"
+	private static final int VERSION = 1;
+
+	private final int interval;
+	private long size;
+	private long rows;
+	/** positions of the rows 0, interval, 2*interval, ... */
+	private long[] positions;
+	private int count;
+
+	RowIndex(int interval){
+		this.interval = interval;
+		this.positions = new long[64];
+		this.count = 1; // row 0 starts at the beginning
+	}
+
+	private RowIndex(int interval, long size, long rows, long[] positions){
+		this.interval = interval;
+		this.size = size;
+		this.rows = rows;
+		this.positions = positions;
+		this.count = positions.length;
+	}
+
+	/**
+	 * Records the position of the next indexed row
+	 */
+	void add(long position){
+		if(count==positions.length){
+			positions = Arrays.copyOf(positions, count*2);
+		}
+		positions[count++] = position;
+	}
+
+	/**
+	 * Completes the index at the end of the parsing
+	 */
+	void end(long size, long rows){
+		this.size = size;
+		this.rows = rows;
+		positions = Arrays.copyOf(positions, count);
+	}
+
+	/**
+	 * Retrieves the interval between the indexed rows
+	 *
+	 * @return the number of rows
+	 */
+	public int getInterval(){
+		return interval;
+	}
+
+	/**
+	 * Retrieves the number of rows of the file, including the headers
+	 *
+	 * @return the number of rows
+	 */
+	public long getRows(){
+		return rows;
+	}
+
+	/**
+	 * Retrieves the size of the indexed file
+	 *
+	 * @return the size in bytes
+	 */
+	public long getSize(){
+		return size;
+	}
+
+	/**
+	 * Finds the last indexed row not after the given row
+	 *
+	 * @param row the row number
+	 * @return the indexed row number
+	 */
+	public long indexedRow(long row){
+		return Math.min(row/interval, count-1) * interval;
+	}
+
+	/**
+	 * Retrieves the position of the last indexed row not after the given row
+	 *
+	 * @param row the row number
+	 * @return the position in bytes from the beginning of the file
+	 */
+	public long position(long row){
+		return positions[(int)(indexedRow(row)/interval)];
+	}
+
+	/**
+	 * Computes the name of the sidecar file of the index of a CSV file
+	 *
+	 * @param csv the CSV file
+	 * @return the path of the index, in the same directory with the <code>.idx</code> extension appended
+	 */
+	public static Path sidecar(Path csv){
+		return csv.resolveSibling(csv.getFileName() + ".idx");
+	}
+
+	/**
+	 * Saves the index
+	 *
+	 * @param file the file where the index is saved
+	 * @throws IOException in case of I/O error
+	 */
+	public void save(Path file) throws IOException{
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))){
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(interval);
+			out.writeLong(size);
+			out.writeLong(rows);
+			out.writeInt(count);
+			long prev = 0;
+			for(int i=0; i<count; ++i){
+				writeVarLong(out, positions[i]-prev);
+				prev = positions[i];
+			}
+		}
+	}
+
+	/**
+	 * Loads an index
+	 *
+	 * @param file the file where the index was saved
+	 * @return the index
+	 * @throws IOException in case of I/O error or if the file is not an index
+	 */
+	public static RowIndex load(Path file) throws IOException{
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))){
+			if(in.readInt()!=MAGIC || in.readInt()!=VERSION){
+				throw new IOException("Not a row index: " + file);
+			}
+			int interval = in.readInt();
+			long size = in.readLong();
+			long rows = in.readLong();
+			long[] positions = new long[in.readInt()];
+			long prev = 0;
+			for(int i=0; i<positions.length; ++i){
+				positions[i] = prev += readVarLong(in);
+			}
+			return new RowIndex(interval, size, rows, positions);
+		}
+	}
+
+	private static void writeVarLong(DataOutputStream out, long v) throws IOException{
+		while((v & ~0x7FL)!=0){
+			out.writeByte((int)(v & 0x7F) | 0x80);
+			v >>>= 7;
+		}
+		out.writeByte((int)v);
+	}
+
+	private static long readVarLong(DataInputStream in) throws IOException{
+		long v = 0;
+		for(int shift=0; ; shift+=7){
+			int b = in.readUnsignedByte();
+			v |= (long)(b & 0x7F) << shift;
+			if((b & 0x80)==0) return v;
+		}
+	}
+
+	public String toString(){
+		return "Index of " + rows + " rows, " + count + " positions every " + interval + " rows";
+	}
+}
@@ -0,0 +1,178 @@
+package it.polito.softeng.csvparser;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+/**
+ * Spliterator pulling the rows from a {@link CsvParser}.
+ * <p>
+ * Until it is split, the spliterator reads the rows sequentially through
+ * the parser. The first split divides the rest of the file into ranges
+ * of rows, as the parallel parsing does, and each split takes the first
+ * half of the ranges that have not been read yet; each range is read
+ * by a tokenizer of its own. The sizes are estimated in characters
+ * (bytes for ASCII-compatible encodings), which is consistent
+ * before and after the first split.
+ *
+ * @see CsvParser#stream(String...)
+ * @version 0.6
+ */
+class RowSpliterator implements Spliterator<Row> {
+
+	private final CsvParser parser;
+	private final String[] columns;
+	/** whether the rows are read sequentially through the parser, i.e. not split yet */
+	private boolean sequential;
+	private boolean started;
+	private boolean ended;
+
+	/** ranges of rows: begin, first row, number of rows, end */
+	private List<long[]> ranges;
+	/** first range not read yet */
+	private int next;
+	/** range after the last one of this spliterator */
+	private final int last;
+	/** range being read, with its row and counters */
+	private long[] range;
+	private Row row;
+	private long num;
+	private long rejected;
+
+	RowSpliterator(CsvParser parser, String[] columns){
+		this.parser = parser;
+		this.columns = columns;
+		this.sequential = true;
+		this.last = Integer.MAX_VALUE;
+	}
+
+	private RowSpliterator(CsvParser parser, List<long[]> ranges, int next, int last){
+		this.parser = parser;
+		this.columns = null;
+		this.ranges = ranges;
+		this.next = next;
+		this.last = last;
+		this.started = true;
+	}
+
+	@Override
+	public boolean tryAdvance(Consumer<? super Row> action) {
+		try{
+			Row r = sequential ? sequentialRow() : rangeRow();
+			if(r==null) return false;
+			action.accept(r.copy());
+			return true;
+		}catch(IOException e){
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public void forEachRemaining(Consumer<? super Row> action) {
+		try{
+			Row r;
+			while((r = sequential ? sequentialRow() : rangeRow())!=null){
+				action.accept(r.copy());
+			}
+		}catch(IOException e){
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private boolean start() throws IOException{
+		if(!started){
+			started = true;
+			if(!parser.pullHeaders(columns)) close();
+		}
+		return !ended;
+	}
+
+	private Row sequentialRow() throws IOException{
+		if(!start()) return null;
+		Row r = parser.pullRow();
+		if(r==null) close();
+		return r;
+	}
+
+	private Row rangeRow() throws IOException{
+		while(!ended){
+			if(row==null){
+				if(next>=last || next>=ranges.size() || parser.isCancelled()){
+					ended = true;
+					return null;
+				}
+				range = ranges.get(next++);
+				row = parser.pullRange(range);
+				num = range[1];
+				rejected = 0;
+			}
+			Tokenizer t = row.tokenizer();
+			while(!parser.isCancelled() && t.nextRow()){
+				row.init(num++);
+				if(parser.accept(row)) return row;
+				rejected++;
+			}
+			parser.pullRangeEnd(range, num-range[1], rejected);
+			row = null;
+		}
+		return null;
+	}
+
+	@Override
+	public Spliterator<Row> trySplit() {
+		try{
+			if(sequential){
+				if(!start()) return null;
+				ForkJoinPool pool = ForkJoinTask.inForkJoinPool() ? ForkJoinTask.getPool() : ForkJoinPool.commonPool();
+				List<long[]> split = parser.pullRanges(pool);
+				if(split==null) return null;
+				parser.pullEnd();
+				sequential = false;
+				ranges = split;
+				next = 0;
+			}
+			int end = Math.min(last, ranges.size());
+			if(row!=null || end-next<2) return null; // the prefix must precede the current range
+			int mid = (next+end)>>>1;
+			RowSpliterator prefix = new RowSpliterator(parser, ranges, next, mid);
+			next = mid;
+			return prefix;
+		}catch(IOException e){
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public long estimateSize() {
+		if(ended) return 0;
+		if(sequential){
+			try{
+				return parser.pullRemaining();
+			}catch(IOException e){
+				return Long.MAX_VALUE;
+			}
+		}
+		long size = row!=null ? range[3]-((MappedTokenizer)row.tokenizer()).position() : 0;
+		for(int i=next; i<Math.min(last, ranges.size()); ++i){
+			size += ranges.get(i)[3]-ranges.get(i)[0];
+		}
+		return size;
+	}
+
+	@Override
+	public int characteristics() {
+		return ORDERED | NONNULL;
+	}
+
+	/**
+	 * Stops the reading, releasing the buffer of the parser
+	 */
+	void close(){
+		if(sequential && started && !ended) parser.pullEnd();
+		ended = true;
+	}
+}
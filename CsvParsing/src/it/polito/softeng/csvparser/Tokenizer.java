@@ -0,0 +1,581 @@
+package it.polito.softeng.csvparser;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static it.polito.softeng.csvparser.CsvDialect.*;
+
+/**
+ * Base class of the tokenizers used by {@link CsvParser}.
+ * <p>
+ * A tokenizer runs the CSV state machine over a buffer and, for each
+ * cell of the current row, records its boundaries within the buffer.
+ * Cells are decoded into strings only when they are requested.
+ * <p>
+ * The state machine is driven by the transition table of the {@link CsvDialect}.
+ * Cells that contain escaped quotes (<code>""</code>) are marked as
+ * <i>escaped</i> and their content is unescaped when decoded, therefore
+ * the buffer is never modified while tokenizing.
+ *
+ * @version 0.6
+ */
+abstract class Tokenizer {
+
+	static final char[] CSV_SEPARATORS = {',',';','\t'};
+
+	/** Default size of the buffer */
+	static final int BUFFER_SIZE = 65536;
+	/** Default number of cells of a row */
+	static final int CELLS = 16;
+
+	protected int begin;
+	protected int current;
+	protected int end;
+	protected int limit;
+	/** position of the first character of the current row in the buffer */
+	protected int rowBegin;
+	/** number of characters (or bytes) read so far */
+	protected long count;
+	/** whether the time spent reading is measured */
+	boolean timed;
+	/** time spent reading, in nanoseconds */
+	long readNanos;
+	/** number of times the buffer was enlarged to contain a row */
+	int growths;
+	/** pool of the buffers */
+	BufferPool pool = BufferPool.SHARED;
+	/** maximum size the buffer can be enlarged to */
+	int maxRowSize = CsvParser.MAX_ROW_SIZE;
+	/** the dialect, with a known separator once started */
+	CsvDialect dialect = CsvDialect.DEFAULT;
+	private byte[] classes;
+	private int[] table;
+	/** characters ending the runs of unquoted and quoted content */
+	private int sep, stopU1, stopU2, stopQ1, stopQ2, stopQ3;
+	/** columns to be tokenized, {@code null} means all */
+	boolean[] projection;
+	/** default style for parsing numbers */
+	NumberStyle numbers = NumberStyle.PLAIN;
+	/** caches of the interned columns, {@code null} means none */
+	Interner[] interners;
+	/** decompressing input, stopped by {@link #release()} */
+	Decompressor decompressor;
+
+	/** number of cells in the current row */
+	int col;
+	/** number of rows read so far, identifies the current row */
+	long rows;
+	int[] starts;
+	int[] ends;
+	boolean[] escaped;
+	private boolean escapes;
+
+	private int state = ENDROW;
+	private boolean eof;
+
+	Tokenizer(){
+		this(CELLS);
+	}
+
+	/**
+	 * @param cells the initial number of cells of a row
+	 */
+	Tokenizer(int cells){
+		starts = new int[cells];
+		ends = new int[cells];
+		escaped = new boolean[cells];
+	}
+
+	/**
+	 * Fills the buffer for the first time and detects the separator
+	 */
+	abstract void start() throws IOException;
+
+	/**
+	 * Reads more content into the buffer, the content starting from
+	 * {@link #rowBegin} must be preserved.
+	 *
+	 * @return {@code false} when the end of input has been reached
+	 */
+	abstract boolean fill() throws IOException;
+
+	/**
+	 * Moves to the given position of the input, which must be the beginning of a row
+	 * 
+	 * @param position the number of characters (or bytes) from the beginning of the input
+	 * @throws IOException if the input does not support random access
+	 */
+	final void seek(long position) throws IOException{
+		col = 0;
+		state = ENDROW;
+		eof = false;
+		if(!reposition(position)){
+			throw new IOException("The input does not support random access");
+		}
+	}
+
+	/**
+	 * Empties the buffer and moves the input to the given position
+	 * 
+	 * @return {@code false} if the input does not support random access
+	 */
+	boolean reposition(long position) throws IOException{
+		return false;
+	}
+
+	/**
+	 * Returns the buffer to the pool at the end of the parsing
+	 * and stops the decompression of the input, if any
+	 */
+	void release(){
+		if(decompressor!=null) decompressor.close();
+	}
+
+	/**
+	 * Computes the size of the buffer to be allocated when the current row
+	 * does not fit into a buffer of the given size
+	 * 
+	 * @throws IOException if the row exceeds the maximum size
+	 */
+	final int enlarge(int length) throws IOException{
+		if(length>=maxRowSize){
+			throw new IOException("Row " + (rows-1) + " exceeds the maximum size of " + maxRowSize);
+		}
+		growths++;
+		return (int)Math.min(2L*length, maxRowSize);
+	}
+
+	/**
+	 * Checks whether a buffer enlarged for a long row can be replaced 
+	 * by a buffer of the pool, since the current content fits into it
+	 */
+	final boolean shrinkable(int length){
+		return length>pool.getBufferSize() && limit-rowBegin<=pool.getBufferSize()/2;
+	}
+
+	/**
+	 * Number of characters (or bytes) consumed so far
+	 */
+	final long consumed(){
+		return count-(limit-current);
+	}
+
+	/**
+	 * Reads more content into the buffer, measuring the time if required
+	 *
+	 * @return {@code false} when the end of input has been reached
+	 */
+	final boolean refill() throws IOException{
+		if(!timed) return fill();
+		long t = System.nanoTime();
+		try{
+			return fill();
+		}finally{
+			readNanos += System.nanoTime()-t;
+		}
+	}
+
+	/**
+	 * Returns the character (or byte) at the given position of the buffer
+	 */
+	abstract int at(int pos);
+
+	/**
+	 * Decodes the characters in the given portion of the buffer
+	 */
+	abstract String text(int begin, int end);
+
+	/**
+	 * Checks whether each position in the given portion of the buffer
+	 * corresponds to a single character, obtained through {@link #charAt(int)}
+	 */
+	abstract boolean direct(int begin, int end);
+
+	/**
+	 * Returns the character at the given position of a
+	 * {@link #direct(int, int) direct} portion of the buffer
+	 */
+	abstract char charAt(int pos);
+
+	/**
+	 * Decodes the characters in the given portion of the buffer
+	 * removing the escape quotes
+	 */
+	abstract String unescape(int begin, int end);
+
+	/**
+	 * Creates an empty tokenizer of the same kind, whose buffer is used
+	 * to store copies of the rows read by this tokenizer.
+	 * 
+	 * @param capacity the initial size of the buffer
+	 * @param cells the initial number of cells of a row
+	 */
+	abstract Tokenizer newStore(int capacity, int cells);
+
+	/**
+	 * Appends to the buffer of this store a portion of the buffer of the source
+	 * 
+	 * @param source the tokenizer this store was created by
+	 * @return the position in this buffer where the portion has been copied
+	 */
+	abstract int append(Tokenizer source, int begin, int end);
+
+	/**
+	 * Makes this tokenizer read the buffer of the given store
+	 */
+	abstract void share(Tokenizer store);
+
+	/**
+	 * Finds the first occurrence of any of the given characters in
+	 * a portion of the buffer; it is used to move past runs of 
+	 * characters that have no effect on the state.
+	 *
+	 * @return the position of the character, or <code>to</code> if not found
+	 */
+	int find(int from, int to, int c1, int c2, int c3){
+		for(int i=from; i<to; ++i){
+			int ch = at(i);
+			if(ch==c1 || ch==c2 || ch==c3) return i;
+		}
+		return to;
+	}
+
+	/**
+	 * Retrieves the content of the i-th cell in the current row
+	 */
+	final String cell(int i){
+		if(escaped[i]){
+			return unescape(starts[i],ends[i]);
+		}
+		return text(starts[i],ends[i]);
+	}
+
+	/**
+	 * Retrieves the cache of the values of a column
+	 *
+	 * @return the cache, {@code null} if the column is not interned
+	 */
+	final Interner interner(int i){
+		return interners!=null && i<interners.length ? interners[i] : null;
+	}
+
+	/**
+	 * Computes the separator, if not given by the dialect, as the 
+	 * most frequent among the candidate separators within the first block.
+	 */
+	final void detectSeparator(){
+		if(dialect.getSeparator()==CsvDialect.NONE){
+			int n = Math.min(limit, BUFFER_SIZE);
+			long max = 0;
+			char separator = ';';
+			for(int i=0; i<CSV_SEPARATORS.length; ++i){
+				char c = CSV_SEPARATORS[i];
+				long ns = 0;
+				for(int j=0; j<n; ++j){
+					if(at(j)==c) ns++;
+				}
+				if(ns>max){
+					max = ns;
+					separator = c;
+				}
+			}
+			dialect = dialect.withSeparator(separator);
+		}
+		use(dialect);
+	}
+
+	/**
+	 * Loads the tables of the given dialect, whose separator must be known
+	 */
+	final void use(CsvDialect d){
+		dialect = d;
+		classes = d.classes;
+		table = d.table;
+		int[] u = d.stopUnquoted();
+		sep = u[0]; stopU1 = u[1]; stopU2 = u[2];
+		int[] q = d.stopQuoted();
+		stopQ1 = q[0]; stopQ2 = q[1]; stopQ3 = q[2];
+	}
+
+	/**
+	 * Shares the tables of the dialect loaded by the given tokenizer
+	 */
+	private void use(Tokenizer source){
+		if(source.classes==null){
+			use(source.dialect);
+			return;
+		}
+		dialect = source.dialect;
+		classes = source.classes;
+		table = source.table;
+		sep = source.sep; stopU1 = source.stopU1; stopU2 = source.stopU2;
+		stopQ1 = source.stopQ1; stopQ2 = source.stopQ2; stopQ3 = source.stopQ3;
+	}
+
+	/**
+	 * Creates a store that can decode the cells read by this tokenizer
+	 */
+	final Tokenizer newView(){
+		return newView(BUFFER_SIZE, CELLS);
+	}
+
+	/**
+	 * Creates a store that can decode the cells read by this tokenizer
+	 * 
+	 * @param capacity the initial size of the buffer
+	 * @param cells the initial number of cells of a row
+	 */
+	final Tokenizer newView(int capacity, int cells){
+		Tokenizer view = newStore(capacity, cells);
+		view.numbers = numbers;
+		view.interners = interners;
+		view.use(this);
+		return view;
+	}
+
+	/**
+	 * Moves all the positions back by the given offset,
+	 * used when the buffer is compacted.
+	 */
+	final void shift(int delta){
+		begin-=delta;
+		end-=delta;
+		current-=delta;
+		limit-=delta;
+		rowBegin-=delta;
+		for(int i=0; i<col; ++i){
+			starts[i]-=delta;
+			ends[i]-=delta;
+		}
+	}
+
+	private int next() throws IOException{
+		if(current==limit && !refill()){
+			return EOF;
+		}
+		return at(current++);
+	}
+
+	private void beginfield(){
+		begin=current-1;
+		end=begin;
+		escapes=false;
+	}
+
+	/**
+	 * Ensures the arrays of the cells can contain at least n cells
+	 */
+	final void ensureCells(int n){
+		if(n>starts.length){
+			n = Math.max(n, starts.length*2);
+			starts = Arrays.copyOf(starts, n);
+			ends = Arrays.copyOf(ends, n);
+			escaped = Arrays.copyOf(escaped, n);
+		}
+	}
+
+	private void closefield(){
+		ensureCells(col+1);
+		starts[col] = begin;
+		ends[col] = end;
+		escaped[col] = escapes;
+		col++;
+	}
+
+	private boolean skipping(int c){
+		return projection!=null && (c>=projection.length || !projection[c]);
+	}
+
+	private int classOf(int ch){
+		return (ch & ~0x7F)==0 ? classes[ch] : C_OTHER;
+	}
+
+	/**
+	 * Scans past a cell that is not part of the projection.
+	 * The cell is recorded as not available.
+	 * 
+	 * @param ch the first character of the cell
+	 * @return {@code true} if the row ended
+	 */
+	private boolean skipfield(int ch) throws IOException{
+		int cls = classOf(ch);
+		if(cls==C_QUOTE){
+			boolean quoted=true;
+			while(true){
+				ch=next();
+				if(ch==EOF) break;
+				cls = classOf(ch);
+				if(quoted){
+					if(cls==C_QUOTE){
+						quoted=false;
+					}else if(cls==C_ESCAPE){
+						ch=next();
+						if(ch==EOF) break;
+					}
+				}else if(cls==C_QUOTE){
+					quoted=true;
+				}else if(cls==C_SEP || cls==C_LF || cls==C_CR){
+					break;
+				}
+			}
+		}else if(cls!=C_SEP && cls!=C_LF && cls!=C_CR){
+			ch = scan();
+		}
+		begin=end=-1;
+		escapes=false;
+		closefield();
+		if(ch==EOF){
+			eof = true;
+		}else if(classOf(ch)==C_SEP){
+			state = START;
+			return false;
+		}
+		state = ENDROW;
+		return true;
+	}
+
+	/**
+	 * Moves past the characters of an unquoted cell
+	 * 
+	 * @return the character ending the cell
+	 */
+	private int scan() throws IOException{
+		while(true){
+			int i = find(current, limit, sep, stopU1, stopU2);
+			if(i<limit){
+				current=i+1;
+				return at(i);
+			}
+			current=i;
+			if(!refill()) return EOF;
+		}
+	}
+
+	static final int EOF = -1;
+
+	/**
+	 * Scans the input until the end of the next row.
+	 *
+	 * @return {@code true} if a row has been read, {@code false} at the end of the input
+	 * @throws IOException in case of I/O error
+	 */
+	final boolean nextRow() throws IOException{
+		if(eof) return false;
+		rows++;
+		col=0;
+		rowBegin=current;
+		begin=end=current;
+		final int[] table = this.table;
+		while(true){
+			int ch = next();
+			if(ch==EOF){
+				eof=true;
+				if(state==START || state==QUOTEBEGIN){
+					// the row ends with an empty cell
+					if(col==0) return false;
+					begin=end=current;
+					escapes=false;
+					closefield();
+					return true;
+				}
+				if(col>0 || end>begin){
+					closefield();
+					return true;
+				}
+				return false;
+			}
+			int cls = classOf(ch);
+			if(projection!=null && (state==START || state==ENDROW && cls!=C_LF && cls!=C_CR && cls!=C_COMMENT) 
+			   && skipping(col)){
+				if(skipfield(ch)) return true;
+				continue;
+			}
+			int t = table[state<<CLASS_BITS | cls];
+			state = t>>>ACTION_BITS;
+			switch(t & (1<<ACTION_BITS)-1){
+			case A_NONE: 
+				break;
+			case A_RUN_UNQUOTED: 
+				current = find(current, limit, sep, stopU1, stopU2);
+				end=current;
+				break;
+			case A_RUN_QUOTED: 
+				current = find(current, limit, stopQ1, stopQ2, stopQ3);
+				end=current;
+				break;
+			case A_ADD: 
+				end=current;
+				break;
+			case A_BEGIN: 
+				beginfield();
+				break;
+			case A_BEGIN_ADD:
+				beginfield();
+				end=current;
+				break;
+			case A_CLOSE: 
+				closefield();
+				break;
+			case A_BEGIN_CLOSE:
+				beginfield();
+				closefield();
+				break;
+			case A_CLOSE_ROW: 
+				closefield();
+				return true;
+			case A_BEGIN_CLOSE_ROW:
+				beginfield();
+				closefield();
+				return true;
+			case A_NEWROW: 
+				rowBegin=current;
+				break;
+			case A_SKIP:
+				escapes=true;
+				break;
+			case A_SKIP_ADD:
+			case A_ESCAPE:
+				escapes=true;
+				end=current;
+				break;
+			case A_BEGIN_ESCAPE:
+				beginfield();
+				escapes=true;
+				end=current;
+				break;
+			case A_RUN_COMMENT:
+				current = find(current, limit, stopU1, stopU2, stopU2);
+				rowBegin = current; // the comment is not kept in the buffer
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Removes the escape characters from the given portion of the buffer,
+	 * replaying the quoted states of {@link #nextRow()}.
+	 * The unescaped characters are stored into <code>out</code>.
+	 *
+	 * @return the number of characters stored
+	 */
+	final int unescape(int begin, int end, Unescaped out){
+		int n=0;
+		int s=QUOTED;
+		for(int i=begin; i<end; ++i){
+			int ch = at(i);
+			int t = table[s<<CLASS_BITS | classOf(ch)];
+			s = t>>>ACTION_BITS;
+			if(emits(t & (1<<ACTION_BITS)-1)){
+				out.put(n++,ch);
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * Destination of the unescaped characters
+	 */
+	interface Unescaped {
+		void put(int pos, int ch);
+	}
+}
@@ -0,0 +1,70 @@
+package it.polito.softeng.csvparser;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Strategies used by the threads of a pipelined parser while
+ * waiting for a batch of rows to be available (the processors) or
+ * for a batch to be released (the parser).
+ *
+ * @see CsvParser#setPipeline(int, int, WaitStrategy)
+ *
+ * @version 0.6
+ */
+public enum WaitStrategy {
+	/** Keeps checking, lowest latency at the cost of a busy core per thread */
+	BUSY_SPIN,
+	/** Yields the processor to other threads between checks */
+	YIELDING,
+	/** Spins for a while then sleeps briefly between checks */
+	SLEEPING,
+	/** Waits until notified, lowest CPU usage */
+	BLOCKING;
+
+	private static final int SPINS = 100;
+	private static final long SLEEP = 100_000; // nanoseconds
+
+	/**
+	 * Waits before checking again
+	 * 
+	 * @param attempt the number of checks already performed
+	 * @param lock the object notified when a batch is published or released
+	 */
+	void idle(int attempt, Object lock) throws InterruptedException{
+		switch(this){
+		case BUSY_SPIN:
+			break;
+		case YIELDING:
+			Thread.yield();
+			break;
+		case SLEEPING:
+			if(attempt<SPINS){
+				Thread.yield();
+			}else{
+				LockSupport.parkNanos(SLEEP);
+			}
+			break;
+		case BLOCKING:
+			synchronized(lock){
+				lock.wait(1);
+			}
+			break;
+		}
+		if(Thread.interrupted()){
+			throw new InterruptedException();
+		}
+	}
+
+	/**
+	 * Notifies the waiting threads
+	 * 
+	 * @param lock the object the threads are waiting on
+	 */
+	void signal(Object lock){
+		if(this==BLOCKING){
+			synchronized(lock){
+				lock.notifyAll();
+			}
+		}
+	}
+}
@@ -0,0 +1,387 @@
+package it.polito.softeng.csvparser.processor;
+
+import java.text.NumberFormat;
+import java.util.Arrays;
+
+import it.polito.softeng.csvparser.Cell;
+import it.polito.softeng.csvparser.Mergeable;
+import it.polito.softeng.csvparser.Processor;
+import it.polito.softeng.csvparser.Row;
+
+/**
+ * Data quality processor computing the profile of each column.
+ * <p>
+ * For each column the profile reports the missing and empty cells,
+ * the minimum and maximum length of the cells, the type of the content,
+ * and for the numeric columns the minimum, maximum, and sum of the values.
+ * The profile of the rows reports the empty rows and the rows with fewer
+ * or more cells than the headers.
+ * <p>
+ * The profile is kept into arrays of primitive values sized when the
+ * headers are read, therefore the memory used does not depend on the size
+ * of the file; the cells are examined directly on the buffer of the parser
+ * and the type of a column is only widened (see {@link Type}), so that the
+ * cells of a text column are not parsed at all.
+ * The numbers are parsed with the number style of the parser.
+ * <p>
+ * The profiler can be used with the parallel parsing, since the partial
+ * profiles are {@link Mergeable}.
+ *
+ * @version 0.6
+ */
+public class ColumnProfiler implements Processor, Mergeable<ColumnProfiler> {
+
+	/**
+	 * The type of the content of a column.
+	 * <p>
+	 * The type is the narrowest one including all the non-empty cells:
+	 * a column with integers and decimal numbers is {@link #DECIMAL},
+	 * while any other mix of types is {@link #TEXT}.
+	 */
+	public enum Type {
+		/** no non-empty cells */
+		EMPTY,
+		/** integer numbers, see {@link Cell#toLong()} */
+		INTEGER,
+		/** decimal numbers, see {@link Cell#toDouble()} */
+		DECIMAL,
+		/** dates in the form <code>yyyy-mm-dd</code> or <code>dd/mm/yyyy</code> */
+		DATE,
+		/** anything else */
+		TEXT;
+
+		/**
+		 * Computes the narrowest type including this and another one
+		 */
+		Type join(Type other){
+			if(this==other || other==EMPTY) return this;
+			if(this==EMPTY) return other;
+			if((this==INTEGER && other==DECIMAL) || (this==DECIMAL && other==INTEGER)) return DECIMAL;
+			return TEXT;
+		}
+	}
+
+	private String[] headers;
+	private long rows;
+	private long emptyRows;
+	private long shortRows;
+	private long longRows;
+
+	private long[] missing;
+	private long[] empty;
+	private int[] minLength;
+	private int[] maxLength;
+	private Type[] types;
+	private double[] min;
+	private double[] max;
+	private double[] sum;
+
+	@Override
+	public void headers(String[] headers) {
+		int n = headers.length;
+		this.headers = headers;
+		missing = new long[n];
+		empty = new long[n];
+		minLength = new int[n];
+		Arrays.fill(minLength, Integer.MAX_VALUE);
+		maxLength = new int[n];
+		types = new Type[n];
+		Arrays.fill(types, Type.EMPTY);
+		min = new double[n];
+		Arrays.fill(min, Double.POSITIVE_INFINITY);
+		max = new double[n];
+		Arrays.fill(max, Double.NEGATIVE_INFINITY);
+		sum = new double[n];
+	}
+
+	@Override
+	public void newLine(Row r) {
+		rows++;
+		int n = headers.length;
+		long length = r.getLength();
+		if(length<n) shortRows++;
+		else if(length>n) longRows++;
+		boolean emptyRow = true;
+		for(int i=0; i<n; ++i){
+			Cell c = r.cell(i);
+			if(c==null){
+				missing[i]++;
+				continue;
+			}
+			if(c.isEmpty()){
+				empty[i]++;
+				continue;
+			}
+			emptyRow = false;
+			int len = c.length();
+			if(len<minLength[i]) minLength[i] = len;
+			if(len>maxLength[i]) maxLength[i] = len;
+			types[i] = type(i, c);
+		}
+		if(emptyRow) emptyRows++;
+	}
+
+	/**
+	 * Computes the type of the column including a new cell
+	 */
+	private Type type(int i, Cell c){
+		switch(types[i]){
+		case EMPTY:
+			// the first value decides among date, integer, and decimal
+			return isDate(c) ? Type.DATE : integer(i, c);
+		case INTEGER:
+			return integer(i, c);
+		case DECIMAL:
+			return decimal(i, c);
+		case DATE:
+			return isDate(c) ? Type.DATE : Type.TEXT;
+		default:
+			return Type.TEXT;
+		}
+	}
+
+	/**
+	 * Type of a column of integers including a new cell
+	 */
+	private Type integer(int i, Cell c){
+		try{
+			value(i, c.toLong());
+			return Type.INTEGER;
+		}catch(NumberFormatException e){
+			return decimal(i, c);
+		}
+	}
+
+	/**
+	 * Type of a column of decimal numbers including a new cell
+	 */
+	private Type decimal(int i, Cell c){
+		try{
+			value(i, c.toDouble());
+			return Type.DECIMAL;
+		}catch(NumberFormatException e){
+			return Type.TEXT;
+		}
+	}
+
+	private void value(int i, double v){
+		if(v<min[i]) min[i] = v;
+		if(v>max[i]) max[i] = v;
+		sum[i] += v;
+	}
+
+	/**
+	 * Checks whether the cell contains a date as <code>yyyy-mm-dd</code> or <code>dd/mm/yyyy</code>
+	 */
+	private static boolean isDate(Cell c){
+		if(c.length()!=10) return false;
+		int day, month;
+		if(c.charAt(4)=='-' && c.charAt(7)=='-'){
+			if(digits(c,0,4)<0) return false;
+			month = digits(c,5,7);
+			day = digits(c,8,10);
+		}else if(c.charAt(2)=='/' && c.charAt(5)=='/'){
+			if(digits(c,6,10)<0) return false;
+			month = digits(c,3,5);
+			day = digits(c,0,2);
+		}else{
+			return false;
+		}
+		return month>=1 && month<=12 && day>=1 && day<=31;
+	}
+
+	private static int digits(Cell c, int from, int to){
+		int v = 0;
+		for(int i=from; i<to; ++i){
+			char ch = c.charAt(i);
+			if(ch<'0' || ch>'9') return -1;
+			v = v*10 + ch-'0';
+		}
+		return v;
+	}
+
+	@Override
+	public void merge(ColumnProfiler other) {
+		rows += other.rows;
+		emptyRows += other.emptyRows;
+		shortRows += other.shortRows;
+		longRows += other.longRows;
+		for(int i=0; i<headers.length; ++i){
+			missing[i] += other.missing[i];
+			empty[i] += other.empty[i];
+			minLength[i] = Math.min(minLength[i], other.minLength[i]);
+			maxLength[i] = Math.max(maxLength[i], other.maxLength[i]);
+			types[i] = types[i].join(other.types[i]);
+			min[i] = Math.min(min[i], other.min[i]);
+			max[i] = Math.max(max[i], other.max[i]);
+			sum[i] += other.sum[i];
+		}
+	}
+
+	@Override
+	public void end() {
+		// the profile is available through the getters
+	}
+
+	/**
+	 * Retrieves the headers of the profiled columns
+	 *
+	 * @return the headers
+	 */
+	public String[] getHeaders(){
+		return headers.clone();
+	}
+
+	/**
+	 * Retrieves the index of a column
+	 *
+	 * @param header the header of the column
+	 * @return the index, -1 if not found
+	 */
+	public int column(String header){
+		return Arrays.asList(headers).indexOf(header);
+	}
+
+	/**
+	 * Retrieves the number of rows, excluding the headers
+	 *
+	 * @return the number of rows
+	 */
+	public long getRows(){
+		return rows;
+	}
+
+	/**
+	 * Retrieves the number of rows whose cells are all empty or missing
+	 *
+	 * @return the number of rows
+	 */
+	public long getEmptyRows(){
+		return emptyRows;
+	}
+
+	/**
+	 * Retrieves the number of rows with fewer cells than the headers
+	 *
+	 * @return the number of rows
+	 */
+	public long getShortRows(){
+		return shortRows;
+	}
+
+	/**
+	 * Retrieves the number of rows with more cells than the headers,
+	 * the additional cells are not profiled
+	 *
+	 * @return the number of rows
+	 */
+	public long getLongRows(){
+		return longRows;
+	}
+
+	/**
+	 * Retrieves the number of rows missing the cell of a column
+	 *
+	 * @param column the index of the column
+	 * @return the number of missing cells
+	 */
+	public long getMissing(int column){
+		return missing[column];
+	}
+
+	/**
+	 * Retrieves the number of empty cells of a column
+	 *
+	 * @param column the index of the column
+	 * @return the number of empty cells
+	 */
+	public long getEmpty(int column){
+		return empty[column];
+	}
+
+	/**
+	 * Retrieves the length of the shortest non-empty cell of a column
+	 *
+	 * @param column the index of the column
+	 * @return the number of characters, 0 if all the cells are empty
+	 */
+	public int getMinLength(int column){
+		return types[column]==Type.EMPTY ? 0 : minLength[column];
+	}
+
+	/**
+	 * Retrieves the length of the longest cell of a column
+	 *
+	 * @param column the index of the column
+	 * @return the number of characters
+	 */
+	public int getMaxLength(int column){
+		return maxLength[column];
+	}
+
+	/**
+	 * Retrieves the type of the content of a column
+	 *
+	 * @param column the index of the column
+	 * @return the type
+	 */
+	public Type getType(int column){
+		return types[column];
+	}
+
+	/**
+	 * Retrieves the smallest value of a numeric column
+	 *
+	 * @param column the index of the column
+	 * @return the value, NaN if the column is not numeric
+	 */
+	public double getMin(int column){
+		return numeric(column) ? min[column] : Double.NaN;
+	}
+
+	/**
+	 * Retrieves the largest value of a numeric column
+	 *
+	 * @param column the index of the column
+	 * @return the value, NaN if the column is not numeric
+	 */
+	public double getMax(int column){
+		return numeric(column) ? max[column] : Double.NaN;
+	}
+
+	/**
+	 * Retrieves the sum of the values of a numeric column
+	 *
+	 * @param column the index of the column
+	 * @return the value, NaN if the column is not numeric
+	 */
+	public double getSum(int column){
+		return numeric(column) ? sum[column] : Double.NaN;
+	}
+
+	private boolean numeric(int column){
+		return types[column]==Type.INTEGER || types[column]==Type.DECIMAL;
+	}
+
+	public String toString(){
+		NumberFormat nf = NumberFormat.getPercentInstance();
+		nf.setMaximumFractionDigits(1);
+		nf.setMinimumFractionDigits(1);
+		StringBuilder res = new StringBuilder();
+		res.append("Rows: ").append(rows)
+		   .append(" (empty ").append(emptyRows)
+		   .append(", short ").append(shortRows)
+		   .append(", long ").append(longRows).append(")\n");
+		for(int i=0; i<headers.length; ++i){
+			long blank = missing[i]+empty[i];
+			res.append(headers[i]).append(": ").append(types[i])
+			   .append(", empty ").append(blank).append(" (").append(nf.format(rows==0 ? 0 : blank/(double)rows)).append(")")
+			   .append(", length ").append(getMinLength(i)).append("-").append(maxLength[i]);
+			if(numeric(i)){
+				res.append(", min ").append(min[i]).append(", max ").append(max[i]).append(", sum ").append(sum[i]);
+			}
+			res.append("\n");
+		}
+		return res.toString();
+	}
+}
@@ -0,0 +1,276 @@
+package it.polito.softeng.csvparser.processor;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import it.polito.softeng.csvparser.Cell;
+import it.polito.softeng.csvparser.Mergeable;
+import it.polito.softeng.csvparser.Processor;
+import it.polito.softeng.csvparser.Projection;
+import it.polito.softeng.csvparser.Row;
+import it.polito.softeng.csvparser.sketch.HyperLogLog;
+import it.polito.softeng.csvparser.sketch.KllSketch;
+import it.polito.softeng.csvparser.sketch.SpaceSaving;
+
+/**
+ * Data quality processor computing approximate statistics of each column.
+ * <p>
+ * For each column the processor keeps a {@link HyperLogLog} sketch of the
+ * distinct values, a {@link SpaceSaving} sketch of the most frequent values
+ * and, as long as the column contains only numbers, a {@link KllSketch}
+ * of the quantiles of the values; the empty and missing cells are ignored.
+ * The memory used by each column is bounded by the configuration of the sketches,
+ * regardless of the size of the file, e.g.:
+ * <pre>
+	ColumnSketches s = new ColumnSketches("OC_TEMA_SINTETICO", "FINANZ_TOTALE_PUBBLICO");
+	p.addProcessor(s);
+	p.parse();
+	long themes = s.distinct("OC_TEMA_SINTETICO").estimate();
+	double median = s.quantiles("FINANZ_TOTALE_PUBBLICO").quantile(0.5);
+	s.save(Paths.get("sketches.bin"));
+</pre>
+ * The sketches can be used with the parallel parsing, since the partial
+ * results are {@link Mergeable}, and can be saved to be merged later
+ * with those of other files.
+ * The numbers are parsed with the number style of the parser.
+ *
+ * @version 0.6
+ */
+public class ColumnSketches implements Processor, Mergeable<ColumnSketches> {
+
+	private static final int MAGIC = 0x43535653; // "CSVS"
+	private static final int VERSION = 1;
+
+	private final String[] selected;
+	private int precision = HyperLogLog.PRECISION;
+	private int accuracy = KllSketch.K;
+	private int topValues = SpaceSaving.CAPACITY;
+
+	private String[] columns;
+	private int[] indexes;
+	private HyperLogLog[] distinct;
+	private KllSketch[] quantiles;
+	private SpaceSaving[] frequent;
+
+	/**
+	 * Creates the processor
+	 *
+	 * @param columns the headers of the columns, all the columns if none is given
+	 */
+	public ColumnSketches(String... columns){
+		this.selected = columns;
+	}
+
+	/**
+	 * Sets the precision of the distinct counts, by default {@value HyperLogLog#PRECISION}
+	 *
+	 * @param precision the base-2 logarithm of the bytes used by each column
+	 * @see HyperLogLog#HyperLogLog(int)
+	 */
+	public void setPrecision(int precision){
+		this.precision = precision;
+	}
+
+	/**
+	 * Sets the accuracy of the quantiles, by default {@value KllSketch#K}
+	 *
+	 * @param k the accuracy, each column uses about 3k values
+	 * @see KllSketch#KllSketch(int)
+	 */
+	public void setAccuracy(int k){
+		this.accuracy = k;
+	}
+
+	/**
+	 * Sets the number of the most frequent values tracked, by default {@value SpaceSaving#CAPACITY}
+	 *
+	 * @param capacity the number of counters of each column
+	 * @see SpaceSaving#SpaceSaving(int)
+	 */
+	public void setTopValues(int capacity){
+		this.topValues = capacity;
+	}
+
+	@Override
+	public void headers(String[] headers, Projection projection) {
+		if(selected.length>0){
+			projection.select(selected);
+		}else{
+			projection.selectAll();
+		}
+		headers(headers);
+	}
+
+	@Override
+	public void headers(String[] headers) {
+		columns = selected.length>0 ? selected : headers;
+		indexes = new int[columns.length];
+		distinct = new HyperLogLog[columns.length];
+		quantiles = new KllSketch[columns.length];
+		frequent = new SpaceSaving[columns.length];
+		for(int i=0; i<columns.length; ++i){
+			indexes[i] = Arrays.asList(headers).indexOf(columns[i]);
+			if(indexes[i]<0) throw new IllegalArgumentException("Unknown column " + columns[i]);
+			distinct[i] = new HyperLogLog(precision);
+			quantiles[i] = new KllSketch(accuracy);
+			frequent[i] = new SpaceSaving(topValues);
+		}
+	}
+
+	@Override
+	public void newLine(Row r) {
+		for(int i=0; i<indexes.length; ++i){
+			Cell c = r.cell(indexes[i]);
+			if(c==null || c.isEmpty()) continue;
+			distinct[i].add(c);
+			frequent[i].add(c);
+			if(quantiles[i]!=null){
+				try{
+					quantiles[i].add(c.toDouble());
+				}catch(NumberFormatException e){
+					quantiles[i] = null; // not a numeric column
+				}
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @throws IllegalArgumentException if the columns are different
+	 */
+	@Override
+	public void merge(ColumnSketches other) {
+		if(!Arrays.equals(columns, other.columns)){
+			throw new IllegalArgumentException("Different columns " + Arrays.toString(other.columns));
+		}
+		for(int i=0; i<columns.length; ++i){
+			distinct[i].merge(other.distinct[i]);
+			frequent[i].merge(other.frequent[i]);
+			if(quantiles[i]!=null && other.quantiles[i]!=null){
+				quantiles[i].merge(other.quantiles[i]);
+			}else{
+				quantiles[i] = null;
+			}
+		}
+	}
+
+	@Override
+	public void end() {
+		// the sketches are available through the getters
+	}
+
+	/**
+	 * Retrieves the headers of the columns
+	 *
+	 * @return the headers
+	 */
+	public String[] getColumns(){
+		return columns.clone();
+	}
+
+	private int column(String header){
+		int i = Arrays.asList(columns).indexOf(header);
+		if(i<0) throw new IllegalArgumentException("Unknown column " + header);
+		return i;
+	}
+
+	/**
+	 * Retrieves the sketch of the distinct values of a column
+	 *
+	 * @param column the header of the column
+	 * @return the sketch
+	 */
+	public HyperLogLog distinct(String column){
+		return distinct[column(column)];
+	}
+
+	/**
+	 * Retrieves the sketch of the quantiles of a column
+	 *
+	 * @param column the header of the column
+	 * @return the sketch, {@code null} if the column contains values that are not numbers
+	 */
+	public KllSketch quantiles(String column){
+		return quantiles[column(column)];
+	}
+
+	/**
+	 * Retrieves the sketch of the most frequent values of a column
+	 *
+	 * @param column the header of the column
+	 * @return the sketch
+	 */
+	public SpaceSaving frequent(String column){
+		return frequent[column(column)];
+	}
+
+	/**
+	 * Saves the sketches
+	 *
+	 * @param file the file where the sketches are saved
+	 * @throws IOException in case of I/O error
+	 */
+	public void save(Path file) throws IOException{
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))){
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(columns.length);
+			for(int i=0; i<columns.length; ++i){
+				out.writeUTF(columns[i]);
+				distinct[i].write(out);
+				frequent[i].write(out);
+				out.writeBoolean(quantiles[i]!=null);
+				if(quantiles[i]!=null) quantiles[i].write(out);
+			}
+		}
+	}
+
+	/**
+	 * Loads the sketches, e.g. to merge them with those of another file
+	 * with the same columns
+	 *
+	 * @param file the file where the sketches were saved
+	 * @return the processor with the sketches
+	 * @throws IOException in case of I/O error or if the file does not contain sketches
+	 */
+	public static ColumnSketches load(Path file) throws IOException{
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))){
+			if(in.readInt()!=MAGIC || in.readInt()!=VERSION){
+				throw new IOException("Not a sketches file: " + file);
+			}
+			int n = in.readInt();
+			ColumnSketches s = new ColumnSketches();
+			s.columns = new String[n];
+			s.indexes = new int[n];
+			s.distinct = new HyperLogLog[n];
+			s.frequent = new SpaceSaving[n];
+			s.quantiles = new KllSketch[n];
+			for(int i=0; i<n; ++i){
+				s.columns[i] = in.readUTF();
+				s.indexes[i] = i;
+				s.distinct[i] = HyperLogLog.read(in);
+				s.frequent[i] = SpaceSaving.read(in);
+				if(in.readBoolean()) s.quantiles[i] = KllSketch.read(in);
+			}
+			return s;
+		}
+	}
+
+	public String toString(){
+		StringBuilder res = new StringBuilder();
+		for(int i=0; i<columns.length; ++i){
+			res.append(columns[i]).append(": ").append(distinct[i])
+			   .append(", top ").append(frequent[i]);
+			if(quantiles[i]!=null) res.append(", ").append(quantiles[i]);
+			res.append("\n");
+		}
+		return res.toString();
+	}
+}
@@ -0,0 +1,652 @@
+package it.polito.softeng.csvparser.processor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import it.polito.softeng.csvparser.BatchProcessor;
+import it.polito.softeng.csvparser.Cell;
+import it.polito.softeng.csvparser.Projection;
+import it.polito.softeng.csvparser.RowBatch;
+
+/**
+ * Processor storing the content of the CSV in memory, one array per column.
+ * <p>
+ * The type of each column is inferred while parsing: a column is stored as
+ * <code>long</code> values as long as its cells contain integers, as
+ * <code>double</code> values if they contain decimal numbers, and as text
+ * otherwise. The text columns are dictionary-encoded, i.e. each row stores the
+ * <code>int</code> code of its value in the dictionary of the distinct values,
+ * unless the distinct values exceed a given number. The empty and missing cells
+ * are nulls, recorded in a bitset.
+ * <p>
+ * The table allows repeated scans without parsing the file again, e.g.:
+ * <pre>
+	ColumnarTable t = new ColumnarTable("OC_TEMA_SINTETICO", "FINANZ_TOTALE_PUBBLICO");
+	p.addBatchProcessor(t);
+	p.parse();
+	ColumnarTable.Column tema = t.column("OC_TEMA_SINTETICO");
+	ColumnarTable.Column total = t.column("FINANZ_TOTALE_PUBBLICO");
+	double[] sums = new double[tema.dictionary().length];
+	int[] codes = tema.codes();
+	double[] values = total.doubles();
+	for(int r=0; r&lt;t.getRows(); ++r){
+		if(!tema.isNull(r)) sums[codes[r]] += values[r];
+	}
+</pre>
+ * The integers are recognized only in their plain form (no leading zeros,
+ * plus sign, or grouping separators), so that a column turning out to contain
+ * text can be converted back without losses; for the same purpose, while parsing,
+ * a <code>double</code> column records how each cell is written (the number of
+ * decimals and whether the digits are grouped) in one byte, so that the text
+ * can be rendered back from the value, and it keeps the text only of the cells
+ * that cannot be rendered back, e.g. with an exponent; all this is
+ * discarded at the end. A column of integers becomes a <code>double</code> column
+ * only if its integers are represented exactly, i.e. they are within &plusmn;2<sup>53</sup>,
+ * otherwise it becomes a text column.
+ * The numbers are parsed with the number style of the parser.
+ *
+ * @version 0.6
+ */
+public class ColumnarTable implements BatchProcessor {
+
+	/** Default maximum number of distinct values of a dictionary-encoded column */
+	public static final int MAX_DICTIONARY = 1<<16;
+
+	/** flag of the format of a number whose digits are grouped */
+	private static final int GROUPED = 16;
+	private static final double[] POW10 = new double[GROUPED];
+	static{
+		POW10[0] = 1;
+		for(int i=1; i<POW10.length; ++i) POW10[i] = POW10[i-1]*10;
+	}
+
+	/**
+	 * The storage of a column
+	 */
+	public enum Type {
+		/** <code>long</code> values, see {@link Column#longs()} */
+		LONG,
+		/** <code>double</code> values, see {@link Column#doubles()} */
+		DOUBLE,
+		/** codes of the values in a dictionary, see {@link Column#codes()} */
+		DICTIONARY,
+		/** text values, see {@link Column#texts()} */
+		TEXT
+	}
+
+	/**
+	 * A column of the table
+	 */
+	public static final class Column {
+		private final String name;
+		private final int maxDictionary;
+		private Type type = Type.LONG;
+		private final BitSet nulls = new BitSet();
+		private long[] longs = new long[1024];
+		private double[] doubles;
+		private int[] codes;
+		private List<String> dictionary;
+		private Map<CharSequence,Integer> lookup;
+		private String[] texts;
+		/** how the cells of a DOUBLE column are written, until the end of the parsing:
+		 *  the number of decimals, plus {@link #GROUPED} if the digits are grouped,
+		 *  or -1 if the text cannot be rendered back from the value and is kept in raw */
+		private byte[] formats;
+		private Map<Integer,String> raw;
+		/** separators of the cells rendered back, 0 until found */
+		private char decimal, grouping;
+		private char[] scratch;
+
+		private Column(String name, int maxDictionary){
+			this.name = name;
+			this.maxDictionary = maxDictionary;
+		}
+
+		/**
+		 * Retrieves the name of the column
+		 * @return the header of the column
+		 */
+		public String getName(){
+			return name;
+		}
+
+		/**
+		 * Retrieves the type inferred for the column
+		 * @return the type
+		 */
+		public Type getType(){
+			return type;
+		}
+
+		/**
+		 * Checks whether the cell is empty or missing
+		 * @param row the index of the row, from 0 for the first row after the headers
+		 * @return {@code true} if the cell is null
+		 */
+		public boolean isNull(int row){
+			return nulls.get(row);
+		}
+
+		/**
+		 * Retrieves the null cells
+		 * @return the bitset of the rows with a null cell, it must not be modified
+		 */
+		public BitSet nulls(){
+			return nulls;
+		}
+
+		/**
+		 * Values of a {@link Type#LONG} column, 0 for nulls
+		 * @return the values indexed by row, the array must not be modified
+		 * @throws IllegalStateException if the column has a different type
+		 */
+		public long[] longs(){
+			check(Type.LONG);
+			return longs;
+		}
+
+		/**
+		 * Values of a numeric column, 0 for nulls
+		 * @return the values indexed by row, the array must not be modified
+		 * @throws IllegalStateException if the column is not numeric
+		 */
+		public double[] doubles(){
+			if(type==Type.LONG){
+				double[] d = new double[longs.length];
+				for(int i=0; i<d.length; ++i) d[i] = longs[i];
+				return d;
+			}
+			check(Type.DOUBLE);
+			return doubles;
+		}
+
+		/**
+		 * Codes of the values of a {@link Type#DICTIONARY} column, 0 for nulls
+		 * @return the indexes in the {@link #dictionary()} by row, the array must not be modified
+		 * @throws IllegalStateException if the column has a different type
+		 */
+		public int[] codes(){
+			check(Type.DICTIONARY);
+			return codes;
+		}
+
+		/**
+		 * Distinct values of a {@link Type#DICTIONARY} column
+		 * @return the values, in order of appearance
+		 * @throws IllegalStateException if the column has a different type
+		 */
+		public String[] dictionary(){
+			check(Type.DICTIONARY);
+			return dictionary.toArray(new String[dictionary.size()]);
+		}
+
+		/**
+		 * Values of a {@link Type#TEXT} column, <code>null</code> for nulls
+		 * @return the values indexed by row, the array must not be modified
+		 * @throws IllegalStateException if the column has a different type
+		 */
+		public String[] texts(){
+			check(Type.TEXT);
+			return texts;
+		}
+
+		/**
+		 * Retrieves the value of a cell as text
+		 * @param row the index of the row
+		 * @return the value, or <code>null</code> for nulls
+		 */
+		public String get(int row){
+			if(nulls.get(row)) return null;
+			switch(type){
+			case LONG: return Long.toString(longs[row]);
+			case DOUBLE: return Double.toString(doubles[row]);
+			case DICTIONARY: return dictionary.get(codes[row]);
+			default: return texts[row];
+			}
+		}
+
+		private void check(Type t){
+			if(type!=t) throw new IllegalStateException("Column " + name + " is " + type + ", not " + t);
+		}
+
+		/**
+		 * Makes room for the given number of rows
+		 */
+		private void ensure(int rows){
+			int n = type==Type.LONG ? longs.length : type==Type.DOUBLE ? doubles.length :
+					type==Type.DICTIONARY ? codes.length : texts.length;
+			if(rows<=n) return;
+			n = Math.max(rows, n*2);
+			switch(type){
+			case LONG: longs = Arrays.copyOf(longs, n); break;
+			case DOUBLE:
+				doubles = Arrays.copyOf(doubles, n);
+				formats = Arrays.copyOf(formats, n);
+				break;
+			case DICTIONARY: codes = Arrays.copyOf(codes, n); break;
+			default: texts = Arrays.copyOf(texts, n);
+			}
+		}
+
+		/**
+		 * Stores the cell at the given row, changing the type of the column if needed
+		 */
+		private void set(int row, Cell cell){
+			switch(type){
+			case LONG:
+				if(plainInteger(cell)){
+					try{
+						longs[row] = cell.toLong();
+						return;
+					}catch(NumberFormatException e){
+						// overflow, stored as double
+					}
+				}
+				if(plainNumber(cell) && exact(row)){
+					try{
+						double d = cell.toDouble();
+						toDoubles(row);
+						setDouble(row, d, cell);
+						return;
+					}catch(NumberFormatException e){
+						// text
+					}
+				}
+				toText(row);
+				encode(row, cell);
+				return;
+			case DOUBLE:
+				if(plainNumber(cell) && !inexactInteger(cell)){
+					try{
+						setDouble(row, cell.toDouble(), cell);
+						return;
+					}catch(NumberFormatException e){
+						// text
+					}
+				}
+				toText(row);
+				encode(row, cell);
+				return;
+			default:
+				encode(row, cell);
+			}
+		}
+
+		private void encode(int row, Cell cell){
+			if(type==Type.TEXT){
+				texts[row] = cell.toString();
+				return;
+			}
+			Integer code = lookup.get(cell);
+			if(code==null){
+				if(dictionary.size()>=maxDictionary){
+					toPlainText(row);
+					texts[row] = cell.toString();
+					return;
+				}
+				String value = cell.toString();
+				code = dictionary.size();
+				dictionary.add(value);
+				lookup.put(value, code);
+			}
+			codes[row] = code;
+		}
+
+		private void setDouble(int row, double d, CharSequence text){
+			doubles[row] = d;
+			int f = format(d, text);
+			formats[row] = (byte)f;
+			if(f<0) raw.put(row, text.toString());
+		}
+
+		/**
+		 * Finds how the text of a number is written, so that it is rendered back from the value
+		 *
+		 * @return the number of decimals, plus {@link #GROUPED} if the digits are grouped,
+		 * 			-1 if the text cannot be rendered back
+		 */
+		private int format(double d, CharSequence text){
+			int n = text.length();
+			int last = -1; // the last separator, decimal or grouping
+			char other = 0; // the separator before the last one, grouping
+			for(int i=n-1; i>=0; --i){
+				char ch = text.charAt(i);
+				if(isDigit(ch) || i==0 && ch=='-') continue;
+				if(last<0){
+					last = i;
+				}else if(other==0){
+					other = ch;
+				}else if(ch!=other){
+					return -1;
+				}
+			}
+			if(last<0) return format(d, text, 0, false, decimal, grouping);
+			char sep = text.charAt(last);
+			if(other!=0 && other!=sep) return format(d, text, n-1-last, true, sep, other);
+			if(other!=0) return format(d, text, 0, true, decimal, sep);
+			int f = format(d, text, n-1-last, false, sep, grouping);
+			return f>=0 ? f : format(d, text, 0, true, decimal, sep);
+		}
+
+		/**
+		 * Checks whether the text is rendered back from the value with the given format,
+		 * and then keeps the separators of the column
+		 */
+		private int format(double d, CharSequence text, int decimals, boolean grouped, char dec, char grp){
+			if(decimals>=GROUPED || (decimals>0 && decimal!=0 && dec!=decimal) ||
+					(grouped && grouping!=0 && grp!=grouping)) return -1;
+			int p = render(d, decimals, grouped, dec, grp);
+			if(text.length()!=scratch.length-p) return -1;
+			for(int i=0; p<scratch.length; ++i, ++p){
+				if(text.charAt(i)!=scratch[p]) return -1;
+			}
+			if(decimals>0) decimal = dec;
+			if(grouped) grouping = grp;
+			return grouped ? decimals|GROUPED : decimals;
+		}
+
+		/**
+		 * Renders the value into the end of the scratch buffer
+		 *
+		 * @return the beginning of the text in the buffer
+		 */
+		private int render(double d, int decimals, boolean grouped, char dec, char grp){
+			char[] b = scratch;
+			int p = b.length;
+			double a = Math.abs(d);
+			long m = decimals==0 ? (long)a : Math.round(a*POW10[decimals]);
+			for(int i=0; i<decimals; ++i, m/=10){
+				b[--p] = (char)('0' + m%10);
+			}
+			if(decimals>0) b[--p] = dec;
+			for(int k=0; k==0 || m>0; ++k, m/=10){
+				if(grouped && k>0 && k%3==0) b[--p] = grp;
+				b[--p] = (char)('0' + m%10);
+			}
+			if(d<0) b[--p] = '-';
+			return p;
+		}
+
+		/**
+		 * Checks whether the integers of the first rows are represented exactly as doubles
+		 */
+		private boolean exact(int rows){
+			for(int i=0; i<rows; ++i){
+				if(!exact(longs[i])) return false;
+			}
+			return true;
+		}
+
+		private static boolean exact(long v){
+			return v>=-(1L<<53) && v<=1L<<53;
+		}
+
+		/**
+		 * Checks whether the cell contains a <code>long</code> that is not
+		 * represented exactly as a double; an integer overflowing a long
+		 * is approximated, as in a LONG column
+		 */
+		private static boolean inexactInteger(Cell c){
+			if(!plainInteger(c)) return false;
+			try{
+				return !exact(c.toLong());
+			}catch(NumberFormatException e){
+				return false;
+			}
+		}
+
+		private void toDoubles(int rows){
+			doubles = new double[longs.length];
+			formats = new byte[longs.length];
+			raw = new HashMap<>();
+			scratch = new char[48];
+			type = Type.DOUBLE;
+			for(int i=0; i<rows; ++i){
+				doubles[i] = longs[i]; // exact, rendered back without decimals
+			}
+			longs = null;
+		}
+
+		/**
+		 * Retrieves the text of a cell of the first rows of a numeric column
+		 */
+		private String text(Type old, int row){
+			if(old==Type.LONG) return Long.toString(longs[row]);
+			int f = formats[row];
+			if(f<0) return raw.get(row);
+			int p = render(doubles[row], f&~GROUPED, (f&GROUPED)!=0, decimal, grouping);
+			return new String(scratch, p, scratch.length-p);
+		}
+
+		/**
+		 * Converts the numbers of the first rows to dictionary codes
+		 */
+		private void toText(int rows){
+			int n = type==Type.LONG ? longs.length : doubles.length;
+			dictionary = new ArrayList<>();
+			lookup = new HashMap<>();
+			codes = new int[n];
+			Type old = type;
+			type = Type.DICTIONARY;
+			for(int i=0; i<rows; ++i){
+				if(nulls.get(i)) continue;
+				String value = text(old, i);
+				Integer code = lookup.get(value);
+				if(code==null){
+					if(dictionary.size()>=maxDictionary){
+						// too many distinct numbers
+						String[] t = new String[n];
+						for(int j=0; j<rows; ++j){
+							if(!nulls.get(j)) t[j] = text(old, j);
+						}
+						texts = t;
+						type = Type.TEXT;
+						dictionary = null;
+						lookup = null;
+						codes = null;
+						break;
+					}
+					code = dictionary.size();
+					dictionary.add(value);
+					lookup.put(value, code);
+				}
+				codes[i] = code;
+			}
+			longs = null;
+			doubles = null;
+			formats = null;
+			raw = null;
+			scratch = null;
+		}
+
+		/**
+		 * Converts the codes of the first rows to their values
+		 */
+		private void toPlainText(int rows){
+			texts = new String[codes.length];
+			for(int i=0; i<rows; ++i){
+				if(!nulls.get(i)) texts[i] = dictionary.get(codes[i]);
+			}
+			codes = null;
+			dictionary = null;
+			lookup = null;
+			type = Type.TEXT;
+		}
+
+		/**
+		 * Trims the arrays to the number of rows
+		 */
+		private void trim(int rows){
+			switch(type){
+			case LONG: longs = Arrays.copyOf(longs, rows); break;
+			case DOUBLE:
+				doubles = Arrays.copyOf(doubles, rows);
+				formats = null; // the type is settled
+				raw = null;
+				scratch = null;
+				break;
+			case DICTIONARY: codes = Arrays.copyOf(codes, rows); lookup = null; break;
+			default: texts = Arrays.copyOf(texts, rows);
+			}
+		}
+
+		public String toString(){
+			return name + ": " + type + (type==Type.DICTIONARY ? " (" + dictionary.size() + " values)" : "") +
+					", " + nulls.cardinality() + " nulls";
+		}
+	}
+
+	/**
+	 * Checks whether the cell may contain a number in plain form, i.e. digits
+	 * and separators, without leading zeros or plus sign, and optionally
+	 * an exponent; the separators are checked when parsing the number
+	 */
+	private static boolean plainNumber(Cell c){
+		int n = c.length();
+		int i = c.charAt(0)=='-' ? 1 : 0;
+		if(i==n || !isDigit(c.charAt(i)) || !isDigit(c.charAt(n-1))) return false;
+		if(i+1<n && c.charAt(i)=='0' && isDigit(c.charAt(i+1))) return false;
+		for(; i<n; ++i){
+			char ch = c.charAt(i);
+			if(ch=='e' || ch=='E'){
+				// exponent: optional sign and digits only
+				if(++i<n && (c.charAt(i)=='-' || c.charAt(i)=='+')) i++;
+				for(; i<n; ++i){
+					if(!isDigit(c.charAt(i))) return false;
+				}
+				return true;
+			}
+			if(!isDigit(ch) && (Character.isLetter(ch) || Character.isWhitespace(ch))) return false;
+		}
+		return true;
+	}
+
+	private static boolean isDigit(char c){
+		return c>='0' && c<='9';
+	}
+
+	/**
+	 * Checks whether the cell contains an integer in plain form
+	 */
+	private static boolean plainInteger(Cell c){
+		int n = c.length();
+		int i = c.charAt(0)=='-' ? 1 : 0;
+		if(i==n || (c.charAt(i)=='0' && n>i+1)) return false;
+		for(; i<n; ++i){
+			char ch = c.charAt(i);
+			if(ch<'0' || ch>'9') return false;
+		}
+		return true;
+	}
+
+	private final String[] selected;
+	private int maxDictionary = MAX_DICTIONARY;
+	private Column[] columns;
+	private int[] indexes;
+	private int rows;
+
+	/**
+	 * Builds a table storing the given columns
+	 *
+	 * @param columns the headers of the columns, all the columns if none is given
+	 */
+	public ColumnarTable(String... columns){
+		this.selected = columns;
+	}
+
+	/**
+	 * Sets the maximum number of distinct values of a dictionary-encoded column,
+	 * columns with more values are stored as plain text, by default {@value #MAX_DICTIONARY}.
+	 *
+	 * @param max the number of distinct values
+	 */
+	public void setMaxDictionary(int max){
+		this.maxDictionary = max;
+	}
+
+	@Override
+	public void headers(String[] headers, Projection projection) {
+		String[] names = selected.length>0 ? selected : headers;
+		if(selected.length>0){
+			projection.select(selected);
+		}else{
+			projection.selectAll();
+		}
+		columns = new Column[names.length];
+		indexes = new int[names.length];
+		List<String> all = Arrays.asList(headers);
+		for(int i=0; i<names.length; ++i){
+			columns[i] = new Column(names[i], maxDictionary);
+			indexes[i] = all.indexOf(names[i]);
+		}
+	}
+
+	@Override
+	public void newBatch(RowBatch batch) {
+		int n = batch.size();
+		for(int c=0; c<columns.length; ++c){
+			Column col = columns[c];
+			int index = indexes[c];
+			col.ensure(rows+n);
+			int[] lengths = index<batch.getColumns() ? batch.lengths(index) : null;
+			for(int r=0; r<n; ++r){
+				if(lengths==null || lengths[r]<=0){
+					col.nulls.set(rows+r);
+				}else{
+					col.set(rows+r, batch.cell(r, index));
+				}
+			}
+		}
+		rows += n;
+	}
+
+	@Override
+	public void end() {
+		for(Column c : columns){
+			c.trim(rows);
+		}
+	}
+
+	/**
+	 * Retrieves the number of rows, excluding the headers
+	 *
+	 * @return the number of rows
+	 */
+	public int getRows(){
+		return rows;
+	}
+
+	/**
+	 * Retrieves the columns of the table
+	 *
+	 * @return the columns, in the order of the file or of the selection
+	 */
+	public Column[] getColumns(){
+		return columns.clone();
+	}
+
+	/**
+	 * Retrieves a column of the table
+	 *
+	 * @param name the header of the column
+	 * @return the column, or <code>null</code> if the table does not contain it
+	 */
+	public Column column(String name){
+		for(Column c : columns){
+			if(c.name.equals(name)) return c;
+		}
+		return null;
+	}
+
+	public String toString(){
+		StringBuilder s = new StringBuilder().append(rows).append(" rows\n");
+		for(Column c : columns){
+			s.append(c).append("\n");
+		}
+		return s.toString();
+	}
+}
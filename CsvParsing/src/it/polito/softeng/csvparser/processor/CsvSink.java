@@ -0,0 +1,95 @@
+package it.polito.softeng.csvparser.processor;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+import it.polito.softeng.csvparser.CsvWriter;
+import it.polito.softeng.csvparser.Processor;
+import it.polito.softeng.csvparser.Projection;
+import it.polito.softeng.csvparser.Row;
+
+/**
+ * Processor writing the rows, or some of their columns, to a {@link CsvWriter}.
+ * <p>
+ * The cells are copied from the buffer of the parser to the buffer of
+ * the writer, therefore a file can be rewritten, e.g. in another dialect,
+ * or reduced to some columns, without creating any {@link String}.
+ * The writer is flushed at the end of the parsing, but it is not closed.
+ * <p>
+ * The {@link IOException}s of the writer are thrown as {@link UncheckedIOException}s,
+ * which stop the parsing.
+ *
+ * @version 0.6
+ */
+public class CsvSink implements Processor {
+
+	private final CsvWriter out;
+	private final String[] selected;
+	private int[] indexes;
+
+	/**
+	 * Creates the processor
+	 *
+	 * @param out the writer
+	 * @param columns the headers of the columns to be written, in the given order,
+	 * 			all the columns if none is given
+	 */
+	public CsvSink(CsvWriter out, String... columns){
+		this.out = out;
+		this.selected = columns;
+	}
+
+	@Override
+	public void headers(String[] headers, Projection projection) {
+		if(selected.length>0){
+			projection.select(selected);
+		}else{
+			projection.selectAll();
+		}
+		headers(headers);
+	}
+
+	@Override
+	public void headers(String[] headers) {
+		try{
+			if(selected.length==0){
+				out.writeRow(headers);
+				return;
+			}
+			indexes = new int[selected.length];
+			for(int i=0; i<selected.length; ++i){
+				indexes[i] = Arrays.asList(headers).indexOf(selected[i]);
+				if(indexes[i]<0) throw new IllegalArgumentException("Unknown column " + selected[i]);
+			}
+			out.writeRow(selected);
+		}catch(IOException e){
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public void newLine(Row row) {
+		try{
+			if(indexes==null){
+				out.writeRow(row);
+				return;
+			}
+			for(int i : indexes){
+				out.writeCell(row.cell(i));
+			}
+			out.endRow();
+		}catch(IOException e){
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public void end() {
+		try{
+			out.flush();
+		}catch(IOException e){
+			throw new UncheckedIOException(e);
+		}
+	}
+}
@@ -4,6 +4,8 @@ import java.text.NumberFormat;
 import java.util.HashMap;
 import java.util.Map;
 
+import it.polito.softeng.csvparser.Cell;
+import it.polito.softeng.csvparser.Mergeable;
 import it.polito.softeng.csvparser.Processor;
 import it.polito.softeng.csvparser.Row;
 
@@ -13,9 +15,11 @@ import it.polito.softeng.csvparser.Row;
  * Computes empty cells, rows, columns
  * 
  * @author MTk (Marco Torchiano)
- *
+ * @deprecated replaced by {@link ColumnProfiler}, which reports the empty cells
+ * 				of each column and runs in constant memory
  */
-public class EmptyCells implements Processor {
+@Deprecated
+public class EmptyCells implements Processor, Mergeable<EmptyCells> {
 
 	private long lines=0;
 	private long cells=0;
@@ -29,10 +33,9 @@ public class EmptyCells implements Processor {
 		lines++;
 		boolean emptyLine=true;
 		for(int i=0; i<n; ++i){
-			String c=r.get(i);
-			if(c==null || c.equals("")){
+			Cell c=r.cell(i);
+			if(c==null || c.isEmpty()){
 				empty++;
-				emptyLine&=emptyLine;
 			}else{
 				emptyLine=false;
 			}
@@ -42,6 +45,15 @@ public class EmptyCells implements Processor {
 		lengths.put(r.getLength(), ++n);
 	}
 	
+	public void merge(EmptyCells other) {
+		lines+=other.lines;
+		empty+=other.empty;
+		emptyLines+=other.emptyLines;
+		for(Map.Entry<Long,Long> e : other.lengths.entrySet()){
+			lengths.merge(e.getKey(), e.getValue(), Long::sum);
+		}
+	}
+	
 	public String toString(){
 		NumberFormat nf = NumberFormat.getPercentInstance();
 		nf.setMaximumFractionDigits(1);
@@ -0,0 +1,488 @@
+package it.polito.softeng.csvparser.processor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import it.polito.softeng.csvparser.Cell;
+import it.polito.softeng.csvparser.Mergeable;
+import it.polito.softeng.csvparser.NumberStyle;
+import it.polito.softeng.csvparser.Processor;
+import it.polito.softeng.csvparser.Projection;
+import it.polito.softeng.csvparser.Row;
+
+/**
+ * Processor computing aggregates of the rows grouped by the values of some columns.
+ * <p>
+ * The groups are kept in an open-addressing hash table and the cells of the key
+ * columns are hashed and compared directly on the buffer of the parser, while the
+ * aggregates are accumulated into arrays of primitive values indexed by group:
+ * the values of the keys are converted to strings only when a new group is found,
+ * therefore the rows of the existing groups are processed without allocations, e.g.:
+ * <pre>
+	GroupByAggregator g = new GroupByAggregator("OC_TEMA_SINTETICO");
+	int total = g.aggregate(GroupByAggregator.Function.SUM, "FINANZ_UE", 2);
+	p.addProcessor(g);
+	p.parse();
+	for(int i=0; i&lt;g.getGroups(); ++i){
+		System.out.println(g.getKey(i, 0) + " : " + g.getDouble(i, total));
+	}
+</pre>
+ * The values of an aggregate are parsed as <code>long</code>, as fixed-point
+ * decimals (see {@link Cell#toDecimal(int)}), or as <code>double</code>,
+ * with the number style of the parser unless another is set;
+ * the empty and missing cells are ignored.
+ * A sum of <code>long</code> or decimal values overflowing a <code>long</code>
+ * is reported with an {@link ArithmeticException}, which stops the parsing.
+ * A missing key cell is a <code>null</code> key, different from an empty one.
+ * <p>
+ * The aggregator can be used with the parallel parsing, since the partial
+ * results are {@link Mergeable}.
+ *
+ * @version 0.6
+ */
+public class GroupByAggregator implements Processor, Mergeable<GroupByAggregator> {
+
+	/**
+	 * The aggregate functions
+	 */
+	public enum Function {
+		/** number of non-empty values, or of rows if no column is given */
+		COUNT,
+		/** sum of the values */
+		SUM,
+		/** smallest value */
+		MIN,
+		/** largest value */
+		MAX,
+		/** average of the values, always a <code>double</code> */
+		MEAN
+	}
+
+	/** Scale of the aggregates of <code>double</code> values */
+	private static final int DOUBLE = -1;
+	private static final int MIN_CAPACITY = 16;
+
+	private final String[] keyNames;
+	private final List<Function> functions = new ArrayList<>();
+	private final List<String> columns = new ArrayList<>();
+	/** number of decimal digits, 0 for <code>long</code> values and {@link #DOUBLE} */
+	private final List<Integer> scales = new ArrayList<>();
+	private NumberStyle style;
+
+	private int[] keyIndexes;
+	private int[] valueIndexes;
+	private Function[] fns;
+	private int[] scaleOf;
+
+	/** group+1 for each slot of the hash table, 0 for free slots */
+	private int[] slots = new int[MIN_CAPACITY];
+	private int groups;
+	private int[] hashes = new int[MIN_CAPACITY];
+	/** values of the keys, {@link #keyNames}.length for each group */
+	private String[] keys;
+	/** accumulators of each aggregate, indexed by group */
+	private long[][] longs;
+	private double[][] doubles;
+	private long[][] counts;
+
+	/**
+	 * Creates an aggregator
+	 *
+	 * @param keys the headers of the columns whose values identify the groups,
+	 * 				all the rows are a single group if none is given
+	 */
+	public GroupByAggregator(String... keys){
+		this.keyNames = keys;
+	}
+
+	/**
+	 * Adds an aggregate of <code>long</code> values
+	 *
+	 * @param f the function
+	 * @param column the header of the column, {@code null} for the count of rows
+	 * @return the index of the aggregate
+	 */
+	public int aggregate(Function f, String column){
+		return add(f, column, 0);
+	}
+
+	/**
+	 * Adds an aggregate of fixed-point decimal values, as {@link Cell#toDecimal(int)}
+	 *
+	 * @param f the function
+	 * @param column the header of the column
+	 * @param scale the number of decimal digits
+	 * @return the index of the aggregate
+	 */
+	public int aggregate(Function f, String column, int scale){
+		if(scale<0) throw new IllegalArgumentException("Invalid scale " + scale);
+		return add(f, column, scale);
+	}
+
+	/**
+	 * Adds an aggregate of <code>double</code> values
+	 *
+	 * @param f the function
+	 * @param column the header of the column
+	 * @return the index of the aggregate
+	 */
+	public int aggregateDouble(Function f, String column){
+		return add(f, column, DOUBLE);
+	}
+
+	private int add(Function f, String column, int scale){
+		if(column==null && f!=Function.COUNT){
+			throw new IllegalArgumentException("Missing column of " + f);
+		}
+		functions.add(f);
+		columns.add(column);
+		scales.add(scale);
+		return functions.size()-1;
+	}
+
+	/**
+	 * Sets the style used to parse the numbers, by default the one of the parser
+	 *
+	 * @param style the number style
+	 */
+	public void setNumberStyle(NumberStyle style){
+		this.style = style;
+	}
+
+	@Override
+	public void headers(String[] headers, Projection projection) {
+		List<String> used = new ArrayList<>(Arrays.asList(keyNames));
+		for(String c : columns){
+			if(c!=null) used.add(c);
+		}
+		projection.select(used.toArray(new String[used.size()]));
+		headers(headers);
+	}
+
+	@Override
+	public void headers(String[] headers) {
+		List<String> titles = Arrays.asList(headers);
+		keyIndexes = new int[keyNames.length];
+		for(int k=0; k<keyNames.length; ++k){
+			keyIndexes[k] = index(titles, keyNames[k]);
+		}
+		int n = functions.size();
+		fns = functions.toArray(new Function[n]);
+		valueIndexes = new int[n];
+		scaleOf = new int[n];
+		keys = new String[MIN_CAPACITY*keyNames.length];
+		longs = new long[n][];
+		doubles = new double[n][];
+		counts = new long[n][MIN_CAPACITY];
+		for(int a=0; a<n; ++a){
+			String c = columns.get(a);
+			valueIndexes[a] = c==null ? -1 : index(titles, c);
+			scaleOf[a] = scales.get(a);
+			if(scaleOf[a]==DOUBLE){
+				doubles[a] = new double[MIN_CAPACITY];
+			}else{
+				longs[a] = new long[MIN_CAPACITY];
+			}
+		}
+	}
+
+	private static int index(List<String> titles, String column){
+		int i = titles.indexOf(column);
+		if(i<0) throw new IllegalArgumentException("Unknown column " + column);
+		return i;
+	}
+
+	@Override
+	public void newLine(Row r) {
+		int g = group(r);
+		for(int a=0; a<valueIndexes.length; ++a){
+			int c = valueIndexes[a];
+			if(c<0){
+				counts[a][g]++;
+				continue;
+			}
+			Cell v = r.cell(c);
+			if(v==null || v.isEmpty()) continue;
+			if(fns[a]==Function.COUNT){
+				counts[a][g]++;
+				continue;
+			}
+			int scale = scaleOf[a];
+			if(scale==DOUBLE){
+				accumulate(a, g, style==null ? v.toDouble() : v.toDouble(style));
+			}else if(scale==0){
+				accumulate(a, g, style==null ? v.toLong() : v.toLong(style));
+			}else{
+				accumulate(a, g, style==null ? v.toDecimal(scale) : v.toDecimal(scale,style));
+			}
+		}
+	}
+
+	private void accumulate(int a, int g, long v){
+		long[] acc = longs[a];
+		long n = counts[a][g]++;
+		switch(fns[a]){
+		case SUM: case MEAN: acc[g] = sum(a, acc[g], v); break;
+		case MIN: if(n==0 || v<acc[g]) acc[g] = v; break;
+		case MAX: if(n==0 || v>acc[g]) acc[g] = v; break;
+		default:
+		}
+	}
+
+	/**
+	 * Adds two values of an aggregate
+	 *
+	 * @throws ArithmeticException if the sum overflows
+	 */
+	private long sum(int a, long x, long y){
+		try{
+			return Math.addExact(x, y);
+		}catch(ArithmeticException e){
+			throw new ArithmeticException("Overflow of " + fns[a] + "(" + columns.get(a) + ")");
+		}
+	}
+
+	private void accumulate(int a, int g, double v){
+		double[] acc = doubles[a];
+		long n = counts[a][g]++;
+		switch(fns[a]){
+		case SUM: case MEAN: acc[g] += v; break;
+		case MIN: if(n==0 || v<acc[g]) acc[g] = v; break;
+		case MAX: if(n==0 || v>acc[g]) acc[g] = v; break;
+		default:
+		}
+	}
+
+	/**
+	 * Finds the group of the row, adding it if new
+	 */
+	private int group(Row r){
+		int h = 0;
+		for(int k : keyIndexes){
+			Cell c = r.cell(k);
+			h = 31*h + (c==null ? -1 : c.hashCode());
+		}
+		int mask = slots.length-1;
+		for(int s=mix(h) & mask; ; s=(s+1) & mask){
+			int g = slots[s]-1;
+			if(g<0){
+				g = newGroup(h);
+				slots[s] = g+1;
+				for(int k=0; k<keyIndexes.length; ++k){
+					Cell c = r.cell(keyIndexes[k]);
+					keys[g*keyIndexes.length+k] = c==null ? null : c.toString();
+				}
+				if(groups*2>slots.length) rehash();
+				return g;
+			}
+			if(hashes[g]==h && sameKey(r, g)) return g;
+		}
+	}
+
+	private boolean sameKey(Row r, int g){
+		for(int k=0; k<keyIndexes.length; ++k){
+			Cell c = r.cell(keyIndexes[k]);
+			String key = keys[g*keyIndexes.length+k];
+			if(c==null ? key!=null : key==null || !c.contentEquals(key)) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Finds the group with the given key, adding it if new
+	 */
+	private int group(String[] key, int from){
+		int h = 0;
+		for(int k=0; k<keyNames.length; ++k){
+			String v = key[from+k];
+			h = 31*h + (v==null ? -1 : v.hashCode());
+		}
+		int mask = slots.length-1;
+		for(int s=mix(h) & mask; ; s=(s+1) & mask){
+			int g = slots[s]-1;
+			if(g<0){
+				g = newGroup(h);
+				slots[s] = g+1;
+				System.arraycopy(key, from, keys, g*keyNames.length, keyNames.length);
+				if(groups*2>slots.length) rehash();
+				return g;
+			}
+			if(hashes[g]==h && Arrays.equals(keys, g*keyNames.length, (g+1)*keyNames.length,
+											key, from, from+keyNames.length)) return g;
+		}
+	}
+
+	private static int mix(int h){
+		h *= 0x9E3779B9;
+		return h ^ (h>>>16);
+	}
+
+	private int newGroup(int h){
+		int g = groups++;
+		if(g==hashes.length){
+			int n = hashes.length*2;
+			hashes = Arrays.copyOf(hashes, n);
+			keys = Arrays.copyOf(keys, n*keyNames.length);
+			for(int a=0; a<counts.length; ++a){
+				counts[a] = Arrays.copyOf(counts[a], n);
+				if(longs[a]!=null) longs[a] = Arrays.copyOf(longs[a], n);
+				if(doubles[a]!=null) doubles[a] = Arrays.copyOf(doubles[a], n);
+			}
+		}
+		hashes[g] = h;
+		return g;
+	}
+
+	/**
+	 * Doubles the hash table
+	 */
+	private void rehash(){
+		slots = new int[slots.length*2];
+		int mask = slots.length-1;
+		for(int g=0; g<groups; ++g){
+			int s = mix(hashes[g]) & mask;
+			while(slots[s]!=0) s = (s+1) & mask;
+			slots[s] = g+1;
+		}
+	}
+
+	@Override
+	public void merge(GroupByAggregator other) {
+		int n = keyNames.length;
+		for(int o=0; o<other.groups; ++o){
+			int g = group(other.keys, o*n);
+			for(int a=0; a<counts.length; ++a){
+				long c = other.counts[a][o];
+				if(c==0) continue;
+				if(valueIndexes[a]<0){
+					counts[a][g] += c;
+				}else if(longs[a]!=null){
+					long v = other.longs[a][o];
+					switch(fns[a]){
+					case MIN: if(counts[a][g]>0) v = Math.min(v, longs[a][g]); break;
+					case MAX: if(counts[a][g]>0) v = Math.max(v, longs[a][g]); break;
+					default: v = sum(a, v, longs[a][g]);
+					}
+					longs[a][g] = v;
+					counts[a][g] += c;
+				}else{
+					double v = other.doubles[a][o];
+					switch(fns[a]){
+					case MIN: if(counts[a][g]>0) v = Math.min(v, doubles[a][g]); break;
+					case MAX: if(counts[a][g]>0) v = Math.max(v, doubles[a][g]); break;
+					default: v += doubles[a][g];
+					}
+					doubles[a][g] = v;
+					counts[a][g] += c;
+				}
+			}
+		}
+	}
+
+	@Override
+	public void end() {
+		// the results are available through the getters
+	}
+
+	/**
+	 * Retrieves the number of groups
+	 *
+	 * @return the number of groups, in order of appearance
+	 */
+	public int getGroups(){
+		return groups;
+	}
+
+	/**
+	 * Retrieves the value of a key column of a group
+	 *
+	 * @param group the index of the group
+	 * @param key the index of the key column
+	 * @return the value, {@code null} for the rows missing the column
+	 */
+	public String getKey(int group, int key){
+		check(group);
+		return keys[group*keyNames.length+key];
+	}
+
+	/**
+	 * Retrieves the number of values aggregated in a group, i.e. the non-empty cells
+	 *
+	 * @param group the index of the group
+	 * @param aggregate the index of the aggregate
+	 * @return the number of values
+	 */
+	public long getCount(int group, int aggregate){
+		check(group);
+		return counts[aggregate][group];
+	}
+
+	/**
+	 * Retrieves the value of an aggregate of <code>long</code> or decimal values.
+	 * <p>
+	 * The value of a decimal aggregate is in fixed-point, e.g.
+	 * <code>1234</code> is <code>12.34</code> with scale 2;
+	 * the {@link Function#COUNT} is available for any aggregate.
+	 *
+	 * @param group the index of the group
+	 * @param aggregate the index of the aggregate
+	 * @return the value, 0 if there are no values
+	 * @throws IllegalStateException if the aggregate is a mean or of <code>double</code> values
+	 */
+	public long getLong(int group, int aggregate){
+		check(group);
+		Function f = fns[aggregate];
+		if(f==Function.COUNT) return counts[aggregate][group];
+		if(f==Function.MEAN || longs[aggregate]==null){
+			throw new IllegalStateException("Aggregate " + aggregate + " is not a long");
+		}
+		return longs[aggregate][group];
+	}
+
+	/**
+	 * Retrieves the value of an aggregate as a <code>double</code>,
+	 * decimal values are scaled, e.g. <code>12.34</code>
+	 *
+	 * @param group the index of the group
+	 * @param aggregate the index of the aggregate
+	 * @return the value, NaN if there are no values
+	 */
+	public double getDouble(int group, int aggregate){
+		check(group);
+		long n = counts[aggregate][group];
+		Function f = fns[aggregate];
+		if(f==Function.COUNT) return n;
+		if(n==0) return Double.NaN;
+		double v = longs[aggregate]!=null ? longs[aggregate][group] / Math.pow(10, scaleOf[aggregate]) :
+											doubles[aggregate][group];
+		return f==Function.MEAN ? v/n : v;
+	}
+
+	private void check(int group){
+		if(group<0 || group>=groups) throw new IndexOutOfBoundsException("Group " + group);
+	}
+
+	public String toString(){
+		StringBuilder res = new StringBuilder();
+		for(String k : keyNames) res.append(k).append('\t');
+		for(int a=0; a<functions.size(); ++a){
+			res.append(functions.get(a));
+			if(columns.get(a)!=null) res.append('(').append(columns.get(a)).append(')');
+			res.append(a+1<functions.size() ? "\t" : "\n");
+		}
+		for(int g=0; g<groups; ++g){
+			for(int k=0; k<keyNames.length; ++k) res.append(getKey(g, k)).append('\t');
+			for(int a=0; a<functions.size(); ++a){
+				Function f = functions.get(a);
+				if(f==Function.COUNT || (f!=Function.MEAN && scales.get(a)==0)){
+					res.append(getLong(g, a));
+				}else{
+					res.append(getDouble(g, a));
+				}
+				res.append(a+1<functions.size() ? "\t" : "\n");
+			}
+		}
+		return res.toString();
+	}
+}
@@ -1,38 +1,55 @@
 package it.polito.softeng.csvparser.processor;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+import it.polito.softeng.csvparser.CsvWriter;
 import it.polito.softeng.csvparser.Processor;
 import it.polito.softeng.csvparser.Row;
 
+/**
+ * Processor collecting the CSV content in memory, one row per line,
+ * mostly useful for testing; see {@link CsvSink} to write large files.
+ * <p>
+ * The cells are quoted only when needed and the missing cells are empty.
+ */
 public class Printer implements Processor {
 
-	private StringBuffer output;
+	private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+	private CsvWriter output;
 
 	@Override
 	public void headers(String[] headers) {
-		output = new StringBuffer();
-		for (String h : headers) {
-			output.append(h);
-			output.append(",");
+		output = new CsvWriter(bytes, StandardCharsets.UTF_8);
+		output.setLineTerminator("\n");
+		try{
+			output.writeRow(headers);
+		}catch(IOException e){
+			throw new UncheckedIOException(e);
 		}
-		output.append("\n");
 	}
 
 	@Override
 	public void newLine(Row row) {
-		for (int i = 0; i < row.getLength(); ++i) {
-			if (i != 0)
-				output.append(",");
-			output.append(row.get(i));
+		try{
+			output.writeRow(row);
+		}catch(IOException e){
+			throw new UncheckedIOException(e);
 		}
-		output.append("\n");
 	}
 
 	@Override
 	public void end() {
-
+		try{
+			output.close();
+		}catch(IOException e){
+			throw new UncheckedIOException(e);
+		}
 	}
 
 	public String toString() {
-		return output.toString();
+		return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
 	}
 }
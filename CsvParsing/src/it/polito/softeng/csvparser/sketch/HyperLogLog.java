@@ -0,0 +1,155 @@
+package it.polito.softeng.csvparser.sketch;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import it.polito.softeng.csvparser.Mergeable;
+
+/**
+ * HyperLogLog sketch estimating the number of distinct values.
+ * <p>
+ * The sketch keeps 2<sup>p</sup> registers of one byte each, where p is the precision;
+ * the relative standard error of the estimate is about 1.04/&radic;2<sup>p</sup>,
+ * e.g. 1.6% with the default precision, regardless of the number of values.
+ * The values are hashed one character at a time, therefore a
+ * {@link it.polito.softeng.csvparser.Cell} is added without creating a {@link String}.
+ *
+ * @see <a href="https://algo.inria.fr/flajolet/Publications/FlFuGaMe07.pdf">Flajolet et al., HyperLogLog</a>
+ * @version 0.6
+ */
+public class HyperLogLog implements Mergeable<HyperLogLog> {
+
+	/** Default precision, using 4 KB */
+	public static final int PRECISION = 12;
+	/** Minimum precision */
+	public static final int MIN_PRECISION = 4;
+	/** Maximum precision */
+	public static final int MAX_PRECISION = 18;
+
+	private final int p;
+	private final byte[] registers;
+
+	/**
+	 * Creates a sketch with the default precision
+	 */
+	public HyperLogLog(){
+		this(PRECISION);
+	}
+
+	/**
+	 * Creates a sketch
+	 *
+	 * @param precision the base-2 logarithm of the number of registers,
+	 * 			between {@value #MIN_PRECISION} and {@value #MAX_PRECISION}
+	 */
+	public HyperLogLog(int precision){
+		if(precision<MIN_PRECISION || precision>MAX_PRECISION){
+			throw new IllegalArgumentException("Invalid precision " + precision);
+		}
+		this.p = precision;
+		this.registers = new byte[1<<precision];
+	}
+
+	/**
+	 * Adds a value
+	 *
+	 * @param value the value
+	 */
+	public void add(CharSequence value){
+		addHash(Sketches.hash(value));
+	}
+
+	/**
+	 * Adds the 64-bit hash of a value
+	 *
+	 * @param h the hash, whose bits must be uniformly distributed
+	 */
+	public void addHash(long h){
+		int i = (int)(h>>>(64-p));
+		// the marker bit bounds the rank when the remaining bits are all zeros
+		int rank = Long.numberOfLeadingZeros((h<<p) | (1L<<(p-1))) + 1;
+		if(rank>registers[i]) registers[i] = (byte)rank;
+	}
+
+	/**
+	 * Estimates the number of distinct values added
+	 *
+	 * @return the estimated cardinality
+	 */
+	public long estimate(){
+		int m = registers.length;
+		double sum = 0;
+		int zeros = 0;
+		for(byte r : registers){
+			sum += 1.0 / (1L<<r);
+			if(r==0) zeros++;
+		}
+		double alpha;
+		switch(m){
+		case 16: alpha = 0.673; break;
+		case 32: alpha = 0.697; break;
+		case 64: alpha = 0.709; break;
+		default: alpha = 0.7213 / (1 + 1.079/m);
+		}
+		double e = alpha * m * m / sum;
+		if(e<=2.5*m && zeros>0){
+			// linear counting is more accurate for small cardinalities
+			e = m * Math.log((double)m/zeros);
+		}
+		return Math.round(e);
+	}
+
+	/**
+	 * Retrieves the precision
+	 *
+	 * @return the base-2 logarithm of the number of registers
+	 */
+	public int getPrecision(){
+		return p;
+	}
+
+	/**
+	 * Adds the values of another sketch with the same precision
+	 *
+	 * @param other the sketch to be merged
+	 * @throws IllegalArgumentException if the precision is different
+	 */
+	@Override
+	public void merge(HyperLogLog other){
+		if(other.p!=p) throw new IllegalArgumentException("Different precision " + other.p);
+		for(int i=0; i<registers.length; ++i){
+			if(other.registers[i]>registers[i]) registers[i] = other.registers[i];
+		}
+	}
+
+	/**
+	 * Writes the sketch
+	 *
+	 * @param out the output
+	 * @throws IOException in case of I/O error
+	 */
+	public void write(DataOutput out) throws IOException{
+		out.writeByte(p);
+		out.write(registers);
+	}
+
+	/**
+	 * Reads a sketch written by {@link #write(DataOutput)}
+	 *
+	 * @param in the input
+	 * @return the sketch
+	 * @throws IOException in case of I/O error or invalid content
+	 */
+	public static HyperLogLog read(DataInput in) throws IOException{
+		int p = in.readByte();
+		Sketches.check(p>=MIN_PRECISION && p<=MAX_PRECISION, "precision");
+		HyperLogLog h = new HyperLogLog(p);
+		in.readFully(h.registers);
+		return h;
+	}
+
+	public String toString(){
+		return "~" + estimate() + " distinct";
+	}
+}
@@ -0,0 +1,293 @@
+package it.polito.softeng.csvparser.sketch;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+import it.polito.softeng.csvparser.Mergeable;
+
+/**
+ * KLL sketch estimating the quantiles of a stream of numbers.
+ * <p>
+ * The values are kept in a hierarchy of compactors: when a level is full,
+ * its values are sorted and every other one, starting from a random offset,
+ * is promoted to the next level with double weight. The capacity of the levels
+ * decreases geometrically from the top one, therefore the memory is about
+ * 3k values regardless of the number of values, and the rank error is
+ * about 1.7/k, e.g. less than 1% with the default k.
+ *
+ * @see <a href="https://arxiv.org/abs/1603.05346">Karnin, Lang, Liberty, Optimal Quantile Approximation in Streams</a>
+ * @version 0.6
+ */
+public class KllSketch implements Mergeable<KllSketch> {
+
+	/** Default accuracy parameter */
+	public static final int K = 200;
+	/** Minimum capacity of a level */
+	private static final int MIN_CAPACITY = 8;
+
+	private final int k;
+	private double[][] levels = new double[1][];
+	private int[] sizes = new int[1];
+	private int[] capacities;
+	private long n;
+	private double min = Double.NaN;
+	private double max = Double.NaN;
+	/** state of the generator of the random offsets */
+	private long random = 0x9E3779B97F4A7C15L;
+
+	/**
+	 * Creates a sketch with the default accuracy
+	 */
+	public KllSketch(){
+		this(K);
+	}
+
+	/**
+	 * Creates a sketch
+	 *
+	 * @param k the capacity of the top level, the larger the more accurate
+	 */
+	public KllSketch(int k){
+		if(k<MIN_CAPACITY) throw new IllegalArgumentException("Invalid accuracy " + k);
+		this.k = k;
+		levels[0] = new double[k];
+		capacities = capacities(1);
+	}
+
+	private int[] capacities(int height){
+		int[] c = new int[height];
+		for(int h=0; h<height; ++h){
+			c[h] = Math.max(MIN_CAPACITY, (int)Math.ceil(k*Math.pow(2.0/3, height-1-h)));
+		}
+		return c;
+	}
+
+	/**
+	 * Adds a value
+	 *
+	 * @param v the value, NaN is ignored
+	 */
+	public void add(double v){
+		if(Double.isNaN(v)) return;
+		if(n==0 || v<min) min = v;
+		if(n==0 || v>max) max = v;
+		n++;
+		append(0, v);
+		if(sizes[0]>=capacities[0]) compress();
+	}
+
+	private void append(int h, double v){
+		if(sizes[h]==levels[h].length){
+			levels[h] = Arrays.copyOf(levels[h], Math.max(MIN_CAPACITY, sizes[h]*2));
+		}
+		levels[h][sizes[h]++] = v;
+	}
+
+	/**
+	 * Compacts the levels exceeding their capacity
+	 */
+	private void compress(){
+		for(int h=0; h<levels.length; ++h){
+			if(sizes[h]<capacities[h]) continue;
+			if(h+1==levels.length){
+				levels = Arrays.copyOf(levels, h+2);
+				levels[h+1] = new double[MIN_CAPACITY];
+				sizes = Arrays.copyOf(sizes, h+2);
+				capacities = capacities(h+2);
+			}
+			double[] a = levels[h];
+			int s = sizes[h];
+			Arrays.sort(a, 0, s);
+			// with an odd number of values the largest one stays
+			int odd = s & 1;
+			random ^= random<<13;
+			random ^= random>>>7;
+			random ^= random<<17;
+			for(int i=(int)(random & 1); i<s-odd; i+=2){
+				append(h+1, a[i]);
+			}
+			if(odd==1) a[0] = a[s-1];
+			sizes[h] = odd;
+		}
+	}
+
+	/**
+	 * Retrieves the number of values added
+	 *
+	 * @return the number of values
+	 */
+	public long getCount(){
+		return n;
+	}
+
+	/**
+	 * Retrieves the smallest value
+	 *
+	 * @return the value, NaN if empty
+	 */
+	public double getMin(){
+		return min;
+	}
+
+	/**
+	 * Retrieves the largest value
+	 *
+	 * @return the value, NaN if empty
+	 */
+	public double getMax(){
+		return max;
+	}
+
+	/**
+	 * Estimates a quantile
+	 *
+	 * @param q the fraction of the values, from 0 to 1, e.g. 0.5 for the median
+	 * @return the estimated value, NaN if empty
+	 */
+	public double quantile(double q){
+		if(q<0 || q>1) throw new IllegalArgumentException("Invalid quantile " + q);
+		if(n==0) return Double.NaN;
+		if(q==0) return min;
+		if(q==1) return max;
+		int count = 0;
+		for(int s : sizes) count += s;
+		double[] values = new double[count];
+		long[] weights = new long[count];
+		int j = 0;
+		for(int h=0; h<levels.length; ++h){
+			for(int i=0; i<sizes[h]; ++i){
+				values[j] = levels[h][i];
+				weights[j++] = 1L<<h;
+			}
+		}
+		Integer[] order = new Integer[count];
+		for(int i=0; i<count; ++i) order[i] = i;
+		Arrays.sort(order, (a,b) -> Double.compare(values[a], values[b]));
+		long total = 0;
+		for(long w : weights) total += w;
+		double target = q*total;
+		long cumulative = 0;
+		for(int i : order){
+			cumulative += weights[i];
+			if(cumulative>=target) return values[i];
+		}
+		return max;
+	}
+
+	/**
+	 * Estimates the rank of a value
+	 *
+	 * @param v the value
+	 * @return the estimated fraction of the values not greater than the given one
+	 */
+	public double rank(double v){
+		if(n==0) return Double.NaN;
+		long below = 0;
+		long total = 0;
+		for(int h=0; h<levels.length; ++h){
+			for(int i=0; i<sizes[h]; ++i){
+				if(levels[h][i]<=v) below += 1L<<h;
+				total += 1L<<h;
+			}
+		}
+		return (double)below/total;
+	}
+
+	/**
+	 * Retrieves the accuracy parameter
+	 *
+	 * @return the capacity of the top level
+	 */
+	public int getK(){
+		return k;
+	}
+
+	/**
+	 * Adds the values of another sketch
+	 *
+	 * @param other the sketch to be merged
+	 */
+	@Override
+	public void merge(KllSketch other){
+		if(other.n==0) return;
+		if(n==0 || other.min<min) min = other.min;
+		if(n==0 || other.max>max) max = other.max;
+		n += other.n;
+		if(other.levels.length>levels.length){
+			int height = other.levels.length;
+			levels = Arrays.copyOf(levels, height);
+			sizes = Arrays.copyOf(sizes, height);
+			for(int h=0; h<height; ++h){
+				if(levels[h]==null) levels[h] = new double[MIN_CAPACITY];
+			}
+			capacities = capacities(height);
+		}
+		for(int h=0; h<other.levels.length; ++h){
+			for(int i=0; i<other.sizes[h]; ++i){
+				append(h, other.levels[h][i]);
+			}
+		}
+		int height;
+		do{
+			height = levels.length;
+			compress();
+		}while(height!=levels.length);
+	}
+
+	/**
+	 * Writes the sketch
+	 *
+	 * @param out the output
+	 * @throws IOException in case of I/O error
+	 */
+	public void write(DataOutput out) throws IOException{
+		out.writeInt(k);
+		out.writeLong(n);
+		out.writeDouble(min);
+		out.writeDouble(max);
+		out.writeInt(levels.length);
+		for(int h=0; h<levels.length; ++h){
+			out.writeInt(sizes[h]);
+			for(int i=0; i<sizes[h]; ++i){
+				out.writeDouble(levels[h][i]);
+			}
+		}
+	}
+
+	/**
+	 * Reads a sketch written by {@link #write(DataOutput)}
+	 *
+	 * @param in the input
+	 * @return the sketch
+	 * @throws IOException in case of I/O error or invalid content
+	 */
+	public static KllSketch read(DataInput in) throws IOException{
+		int k = in.readInt();
+		Sketches.check(k>=MIN_CAPACITY, "accuracy");
+		KllSketch s = new KllSketch(k);
+		s.n = in.readLong();
+		s.min = in.readDouble();
+		s.max = in.readDouble();
+		int height = in.readInt();
+		Sketches.check(height>0 && height<64, "height");
+		s.levels = new double[height][];
+		s.sizes = new int[height];
+		s.capacities = s.capacities(height);
+		for(int h=0; h<height; ++h){
+			int size = in.readInt();
+			Sketches.check(size>=0 && size<=k<<4, "level size");
+			s.levels[h] = new double[Math.max(MIN_CAPACITY, size)];
+			for(int i=0; i<size; ++i){
+				s.levels[h][i] = in.readDouble();
+			}
+			s.sizes[h] = size;
+		}
+		return s;
+	}
+
+	public String toString(){
+		return n==0 ? "no values" : "min " + min + ", median ~" + quantile(0.5) + ", max " + max;
+	}
+}
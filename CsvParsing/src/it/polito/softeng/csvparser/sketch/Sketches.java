@@ -0,0 +1,55 @@
+package it.polito.softeng.csvparser.sketch;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Utility methods shared by the sketches
+ *
+ * @version 0.6
+ */
+final class Sketches {
+
+	private Sketches(){}
+
+	/**
+	 * Computes a 64-bit hash of a sequence of characters, reading it one
+	 * character at a time, so that a {@link it.polito.softeng.csvparser.Cell}
+	 * is hashed without creating a {@link String}
+	 *
+	 * @param s the characters
+	 * @return the hash, the same for any sequence with the same content
+	 */
+	static long hash(CharSequence s){
+		int n = s.length();
+		long h = 0xCBF29CE484222325L ^ n;
+		for(int i=0; i<n; ++i){
+			h = (h ^ s.charAt(i)) * 0x100000001B3L;
+		}
+		// finalization of MurmurHash3, spreads the bits of the short strings
+		h ^= h>>>33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h>>>33;
+		h *= 0xC4CEB9FE1A85EC53L;
+		h ^= h>>>33;
+		return h;
+	}
+
+	static void writeString(DataOutput out, String s) throws IOException{
+		byte[] b = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(b.length);
+		out.write(b);
+	}
+
+	static String readString(DataInput in) throws IOException{
+		byte[] b = new byte[in.readInt()];
+		in.readFully(b);
+		return new String(b, StandardCharsets.UTF_8);
+	}
+
+	static void check(boolean condition, String what) throws IOException{
+		if(!condition) throw new IOException("Invalid " + what + " in the sketch");
+	}
+}
@@ -0,0 +1,278 @@
+package it.polito.softeng.csvparser.sketch;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import it.polito.softeng.csvparser.Mergeable;
+
+/**
+ * Space-Saving sketch finding the most frequent values.
+ * <p>
+ * The sketch keeps a fixed number of counters: a value without a counter
+ * takes the one with the smallest count, inheriting its count as the
+ * maximum overestimation of its own. Any value occurring more than
+ * n/capacity times among n values is guaranteed to have a counter.
+ * <p>
+ * The counters are found through a hash map queried with the value itself,
+ * therefore a {@link it.polito.softeng.csvparser.Cell} whose value already
+ * has a counter is counted without creating a {@link String}.
+ *
+ * @see <a href="https://www.cs.ucsb.edu/sites/default/files/documents/2005-23.pdf">Metwally, Agrawal, El Abbadi, Efficient Computation of Frequent and Top-k Elements in Data Streams</a>
+ * @version 0.6
+ */
+public class SpaceSaving implements Mergeable<SpaceSaving> {
+
+	/** Default number of counters */
+	public static final int CAPACITY = 64;
+
+	private final int capacity;
+	private final Map<CharSequence,Integer> slots = new HashMap<>();
+	private final String[] values;
+	private final long[] counts;
+	private final long[] errors;
+	/** slots as a min-heap by count */
+	private final int[] heap;
+	/** position of each slot in the heap */
+	private final int[] positions;
+	private int size;
+	private long n;
+
+	/**
+	 * Creates a sketch with the default number of counters
+	 */
+	public SpaceSaving(){
+		this(CAPACITY);
+	}
+
+	/**
+	 * Creates a sketch
+	 *
+	 * @param capacity the number of counters
+	 */
+	public SpaceSaving(int capacity){
+		if(capacity<1) throw new IllegalArgumentException("Invalid capacity " + capacity);
+		this.capacity = capacity;
+		values = new String[capacity];
+		counts = new long[capacity];
+		errors = new long[capacity];
+		heap = new int[capacity];
+		positions = new int[capacity];
+	}
+
+	/**
+	 * Adds an occurrence of a value
+	 *
+	 * @param value the value
+	 */
+	public void add(CharSequence value){
+		add(value, 1, 0);
+	}
+
+	private void add(CharSequence value, long count, long error){
+		n += count;
+		Integer s = slots.get(value);
+		if(s!=null){
+			counts[s] += count;
+			errors[s] += error;
+			down(positions[s]);
+			return;
+		}
+		int slot;
+		if(size<capacity){
+			slot = size++;
+			heap[slot] = slot;
+			positions[slot] = slot;
+		}else{
+			slot = heap[0];
+			slots.remove(values[slot]);
+			error += counts[slot];
+			count += counts[slot];
+		}
+		values[slot] = value.toString();
+		counts[slot] = count;
+		errors[slot] = error;
+		slots.put(values[slot], slot);
+		up(positions[slot]);
+		down(positions[slot]);
+	}
+
+	private void up(int i){
+		while(i>0){
+			int parent = (i-1)/2;
+			if(counts[heap[parent]]<=counts[heap[i]]) return;
+			swap(i, parent);
+			i = parent;
+		}
+	}
+
+	private void down(int i){
+		while(true){
+			int smallest = i;
+			int l = 2*i+1;
+			int r = l+1;
+			if(l<size && counts[heap[l]]<counts[heap[smallest]]) smallest = l;
+			if(r<size && counts[heap[r]]<counts[heap[smallest]]) smallest = r;
+			if(smallest==i) return;
+			swap(i, smallest);
+			i = smallest;
+		}
+	}
+
+	private void swap(int i, int j){
+		int t = heap[i];
+		heap[i] = heap[j];
+		heap[j] = t;
+		positions[heap[i]] = i;
+		positions[heap[j]] = j;
+	}
+
+	/**
+	 * Smallest count a value without a counter may have
+	 */
+	private long floor(){
+		return size<capacity ? 0 : counts[heap[0]];
+	}
+
+	/**
+	 * Retrieves the number of occurrences added
+	 *
+	 * @return the number of occurrences
+	 */
+	public long getCount(){
+		return n;
+	}
+
+	/**
+	 * Estimates the number of occurrences of a value, the estimate
+	 * is never less than the actual number
+	 *
+	 * @param value the value
+	 * @return the estimated number of occurrences
+	 */
+	public long count(CharSequence value){
+		Integer s = slots.get(value);
+		return s==null ? floor() : counts[s];
+	}
+
+	/**
+	 * Retrieves the maximum overestimation of the count of a value
+	 *
+	 * @param value the value
+	 * @return the maximum error
+	 */
+	public long error(CharSequence value){
+		Integer s = slots.get(value);
+		return s==null ? floor() : errors[s];
+	}
+
+	/**
+	 * Retrieves the most frequent values
+	 *
+	 * @param k the maximum number of values, at most the capacity
+	 * @return the values with their estimated counts, from the most frequent
+	 */
+	public List<Map.Entry<String,Long>> top(int k){
+		List<Map.Entry<String,Long>> res = new ArrayList<>();
+		for(int s=0; s<size; ++s){
+			res.add(new AbstractMap.SimpleImmutableEntry<>(values[s], counts[s]));
+		}
+		res.sort(Map.Entry.<String,Long>comparingByValue(Comparator.reverseOrder())
+						  .thenComparing(Map.Entry.comparingByKey()));
+		return res.subList(0, Math.min(k, res.size()));
+	}
+
+	/**
+	 * Retrieves the number of counters
+	 *
+	 * @return the capacity
+	 */
+	public int getCapacity(){
+		return capacity;
+	}
+
+	/**
+	 * Adds the occurrences counted by another sketch: the values
+	 * missing from a sketch are counted with the smallest count of
+	 * that sketch, as their maximum number of occurrences
+	 *
+	 * @param other the sketch to be merged
+	 */
+	@Override
+	public void merge(SpaceSaving other){
+		long floor = floor();
+		long otherFloor = other.floor();
+		List<String> keys = new ArrayList<>();
+		List<long[]> merged = new ArrayList<>();
+		for(int s=0; s<size; ++s){
+			Integer o = other.slots.get(values[s]);
+			keys.add(values[s]);
+			merged.add(o==null ? new long[]{counts[s]+otherFloor, errors[s]+otherFloor} :
+								 new long[]{counts[s]+other.counts[o], errors[s]+other.errors[o]});
+		}
+		for(int o=0; o<other.size; ++o){
+			if(slots.containsKey(other.values[o])) continue;
+			keys.add(other.values[o]);
+			merged.add(new long[]{other.counts[o]+floor, other.errors[o]+floor});
+		}
+		long total = n + other.n;
+		slots.clear();
+		size = 0;
+		n = 0;
+		List<Integer> order = new ArrayList<>();
+		for(int i=0; i<keys.size(); ++i) order.add(i);
+		order.sort((a,b) -> Long.compare(merged.get(b)[0], merged.get(a)[0]));
+		for(int i : order.subList(0, Math.min(capacity, order.size()))){
+			add(keys.get(i), merged.get(i)[0], merged.get(i)[1]);
+		}
+		n = total;
+	}
+
+	/**
+	 * Writes the sketch
+	 *
+	 * @param out the output
+	 * @throws IOException in case of I/O error
+	 */
+	public void write(DataOutput out) throws IOException{
+		out.writeInt(capacity);
+		out.writeLong(n);
+		out.writeInt(size);
+		for(int s=0; s<size; ++s){
+			Sketches.writeString(out, values[s]);
+			out.writeLong(counts[s]);
+			out.writeLong(errors[s]);
+		}
+	}
+
+	/**
+	 * Reads a sketch written by {@link #write(DataOutput)}
+	 *
+	 * @param in the input
+	 * @return the sketch
+	 * @throws IOException in case of I/O error or invalid content
+	 */
+	public static SpaceSaving read(DataInput in) throws IOException{
+		int capacity = in.readInt();
+		Sketches.check(capacity>0, "capacity");
+		SpaceSaving s = new SpaceSaving(capacity);
+		long n = in.readLong();
+		int size = in.readInt();
+		Sketches.check(size>=0 && size<=capacity, "size");
+		for(int i=0; i<size; ++i){
+			s.add(Sketches.readString(in), in.readLong(), in.readLong());
+		}
+		s.n = n;
+		return s;
+	}
+
+	public String toString(){
+		return top(5).toString();
+	}
+}
@@ -0,0 +1,11 @@
+/**
+ * The package contains the sketches, i.e. compact summaries of a
+ * stream of values that answer approximate queries in bounded memory.
+ * 
+ * The sketches can be merged and saved, so that the summaries of 
+ * the portions of a file, or of different files, can be combined.
+ * 
+ * @version 0.6
+
+ */
+package it.polito.softeng.csvparser.sketch;
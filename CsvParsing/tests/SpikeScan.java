@@ -0,0 +1,64 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+import it.polito.softeng.csvparser.CsvGenerator;
+import it.polito.softeng.csvparser.CsvParser;
+
+/**
+ * Compares the parsing throughput on a file with narrow cells
+ * and on a file with wide cells.
+ * <p>
+ * Run it once as it is and once with <code>-Dit.polito.softeng.csvparser.scalar=true</code>
+ * to compare the word-at-a-time search with the scalar one.
+ */
+public class SpikeScan {
+
+	public static void main(String[] args) throws IOException {
+		File narrow = generate(8, 12, 2000000);
+		File wide = generate(4, 200, 400000);
+		try{
+			for(File f : new File[]{narrow, wide}){
+				for(String mode : new String[]{"stream","mapped"}){
+					double best = 0;
+					for(int j=0; j<10; ++j){
+						CsvParser.Stats s;
+						if(mode.equals("mapped")){
+							try(FileChannel ch = new FileInputStream(f).getChannel()){
+								s = new CsvParser(ch, StandardCharsets.UTF_8).parse();
+							}
+						}else{
+							try(FileInputStream in = new FileInputStream(f)){
+								s = new CsvParser(in, StandardCharsets.UTF_8).parse();
+							}
+						}
+						best = Math.max(best, s.throughput());
+					}
+					System.out.println((f==narrow ? "narrow" : "wide") + " " + mode +
+										": " + String.format("%.1f", best) + " MB/s");
+				}
+			}
+		}finally{
+			narrow.delete();
+			wide.delete();
+		}
+	}
+
+	/**
+	 * Generates a file with random cells, one in four is quoted
+	 */
+	private static File generate(int columns, int width, int rows) throws IOException {
+		File f = File.createTempFile("spike", ".csv");
+		CsvGenerator g = new CsvGenerator(42);
+		g.setColumns(columns);
+		g.setCellLength(1, width);
+		g.setQuoteRatio(0.25);
+		g.setNewlineRatio(0);
+		g.setEscapeRatio(0);
+		g.setEmptyRatio(0);
+		g.write(f.toPath(), rows);
+		return f;
+	}
+}
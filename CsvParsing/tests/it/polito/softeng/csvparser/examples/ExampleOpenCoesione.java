@@ -1,19 +1,17 @@
 package it.polito.softeng.csvparser.examples;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.net.URL;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
 
 import it.polito.softeng.csvparser.CsvParser;
 import it.polito.softeng.csvparser.CsvParser.Stats;
 import it.polito.softeng.csvparser.Processor;
-import it.polito.softeng.csvparser.processor.EmptyCells;
+import it.polito.softeng.csvparser.processor.ColumnProfiler;
 
 /**
  * Main class for checking open-coesione data.
@@ -41,12 +39,14 @@ public class ExampleOpenCoesione {
 		// Create the parser
 		
 		
-		if(download("progetti_FS0713_20151231.csv")){
-			// create parser
-			CsvParser p = new CsvParser("progetti_FS0713_20151231.csv");
-			// empty cells processor
-			Processor proc = new EmptyCells();
+		if(download("progetti_FS0713.zip")){
+			// create parser, the archive is decompressed while parsing
+			CsvParser p = new CsvParser("progetti_FS0713.zip");
+			// data profiling processor
+			Processor proc = new ColumnProfiler();
 			p.addProcessor(proc);
+			// report the progress every five seconds
+			p.setProgressListener(System.out::println, Duration.ofSeconds(5));
 			// start parsing
 			Stats s = p.parse();
 		
@@ -64,18 +64,8 @@ public class ExampleOpenCoesione {
 			try {
 //				URL url = new URL("http://www.opencoesione.gov.it/opendata/progetti_FS0713_20131231.zip"); // 2013 version
 				URL url = new URL("http://www.opencoesione.gov.it/opendata/progetti_FS0713.zip");
-				InputStream in = url.openStream();
-				ZipInputStream zip = new ZipInputStream(in);
-				while(zip.available()>0){
-					ZipEntry entry = zip.getNextEntry();
-					FileOutputStream out = new FileOutputStream(entry.getName());
-					byte[] buffer=new byte[4096];
-					int n;
-					while((n=zip.read(buffer)) > 0){
-						out.write(buffer,0,n);
-					}
-					out.close();
-					zip.closeEntry();
+				try(InputStream in = url.openStream()){
+					Files.copy(in, Paths.get(file));
 				}
 				System.out.println("Done!");
 			} catch (Exception e) {
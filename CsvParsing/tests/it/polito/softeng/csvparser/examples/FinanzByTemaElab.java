@@ -1,10 +1,7 @@
 package it.polito.softeng.csvparser.examples;
 
-import java.util.HashMap;
-import java.util.Map;
-
-import it.polito.softeng.csvparser.Processor;
-import it.polito.softeng.csvparser.Row;
+import it.polito.softeng.csvparser.NumberStyle;
+import it.polito.softeng.csvparser.processor.GroupByAggregator;
 
 /**
  * Sample Process for the open-coesione data
@@ -15,53 +12,43 @@ import it.polito.softeng.csvparser.Row;
  * @author MTk (Marco Torchiano)
  *
  */
-public class FinanzByTemaElab implements Processor {
+public class FinanzByTemaElab extends GroupByAggregator {
 
 	private static final String FIN = "FINANZ_UE";
 	private static final String TEMA = "OC_TEMA_SINTETICO";
-	private Map<String,Long> totali = new HashMap<String,Long>();
-	private long count=0;
+	private final int rows;
+	private final int totale;
 
-	public void newLine(Row r) {
-		count++;
-		String chiave = r.get(TEMA);
-		String val = r.get(FIN);
-		if( !val.isEmpty()){
-			long valore = Long.parseLong(val.replaceAll(",",""));
-			Long totale = totali.get(chiave);
-			if( totale == null){ // first time the key is found
-				totale = new Long(0);
-			}
-			totali.put(chiave, totale+valore);
-		}
+	public FinanzByTemaElab(){
+		super(TEMA);
+		rows = aggregate(Function.COUNT, null);
+		// amounts are in euros with two decimal digits
+		totale = aggregate(Function.SUM, FIN, 2);
+		setNumberStyle(NumberStyle.ITALIAN);
 	}
 	
 	public String toString(){
 		int temaWidth=0;
 		long maxFin=0;
-		for(String k : totali.keySet()){
+		for(int g=0; g<getGroups(); ++g){
+			String k = getKey(g,0);
 			if(k.length()>temaWidth) temaWidth = k.length();
-			long v = totali.get(k);
+			long v = getLong(g,totale);
 			if(v>maxFin) maxFin=v;
 		}
 		int finWidth = (int)(1+Math.ceil(Math.log10(maxFin)*1.3));
 		String fmt="%"+temaWidth+"s:%,"+ finWidth + ".2f\n";
 		StringBuffer res = new StringBuffer();
 		res.append(String.format("%"+temaWidth+"s:%"+finWidth+"s\n",TEMA,FIN));
-		for(String key : totali.keySet()){
-			long valore = totali.get(key);
-			double importo = ((double)valore) / 100;
-			res.append(String.format(fmt,key,importo));
-			// OR
-//			long pi = valore / 100;
-//			long pd = valore % 100;
-//			System.out.println(chiave + " : " + pi + "." + pd);
+		for(int g=0; g<getGroups(); ++g){
+			res.append(String.format(fmt,getKey(g,0),getDouble(g,totale)));
 		}
 		return res.toString();
 	}
 
 	private long begin;
 	public void headers(String[] titoli) {
+		super.headers(titoli);
 		// Non fa nulla se non tracciare il tempo
 		begin=System.nanoTime();
 	}
@@ -70,6 +57,10 @@ public class FinanzByTemaElab implements Processor {
 		// Non fa nulla se non tracciare il tempo
 		long end=System.nanoTime();
 		long elapsedUSec = (end-begin)/1000;
+		long count=0;
+		for(int g=0; g<getGroups(); ++g){
+			count+=getLong(g,rows);
+		}
 		System.out.println("Processed " + count + " lines");
 		System.out.println("Elapsed " + (double)elapsedUSec/1000000 + " sec");
 	}
@@ -1,14 +1,63 @@
 package it.polito.softeng.csvparser.test;
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.StringReader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import org.junit.Test;
 
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import it.polito.softeng.csvparser.BatchProcessor;
+import it.polito.softeng.csvparser.BufferPool;
+import it.polito.softeng.csvparser.Cell;
+import it.polito.softeng.csvparser.CsvBatchRunner;
+import it.polito.softeng.csvparser.CsvDialect;
+import it.polito.softeng.csvparser.CsvGenerator;
 import it.polito.softeng.csvparser.CsvParser;
+import it.polito.softeng.csvparser.CsvWriter;
+import it.polito.softeng.csvparser.Filter;
+import it.polito.softeng.csvparser.Mergeable;
+import it.polito.softeng.csvparser.NumberStyle;
 import it.polito.softeng.csvparser.Processor;
+import it.polito.softeng.csvparser.Progress;
+import it.polito.softeng.csvparser.Projection;
+import it.polito.softeng.csvparser.Row;
+import it.polito.softeng.csvparser.RowIndex;
+import it.polito.softeng.csvparser.RowBatch;
+import it.polito.softeng.csvparser.WaitStrategy;
+import it.polito.softeng.csvparser.processor.ColumnProfiler;
+import it.polito.softeng.csvparser.processor.ColumnSketches;
+import it.polito.softeng.csvparser.processor.ColumnarTable;
+import it.polito.softeng.csvparser.processor.CsvSink;
+import it.polito.softeng.csvparser.processor.GroupByAggregator;
 import it.polito.softeng.csvparser.processor.Printer;
+import it.polito.softeng.csvparser.sketch.KllSketch;
 
 public class TestParser {
 
@@ -81,6 +130,1558 @@ public class TestParser {
 		System.out.println(s);
 	}
 
+	@Test
+	public void testTab() throws IOException {
+		String csv = "A\tB\n1,5\t\"x\ty\"\n";
+		
+		for(CsvParser p : new CsvParser[]{new CsvParser(new StringReader(csv)),
+				new CsvParser(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)),"UTF-8")}){
+			Collector c = new Collector();
+			p.addProcessor(c);
+			p.parse();
+			assertEquals(Arrays.asList("A|B","1|1,5|x\ty"),c.rows);
+		}
+	}
+
+	@Test
+	public void testDialect() throws IOException {
+		String csv = "# exported\nA|B|C\n# comment\n1|\"x\\\"|\"\"y\"|#z\n\n2|\"a\\\\b\"|c\n";
+		
+		for(CsvParser p : new CsvParser[]{new CsvParser(new StringReader(csv)),
+				new CsvParser(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)),"UTF-8")}){
+			p.setDialect(CsvDialect.RFC4180.withSeparator('|').withEscape('\\').withComment('#'));
+			Collector c = new Collector();
+			p.addProcessor(c);
+			p.parse();
+			assertEquals(Arrays.asList("A|B|C","1|1|x\"|\"y|#z","2|2|a\\b|c"),c.rows);
+		}
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testInvalidDialect() {
+		CsvDialect.RFC4180.withQuote(',');
+	}
+
+	@Test
+	public void testBytes() throws IOException {
+		String csv = "A,B\r\n\u00e0,\"2 is \"\"two\"\"\"\r\n\"3\nthree\",\u20ac4\r\n";
+		
+		CsvParser p = new CsvParser(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)),"UTF-8");
+		Processor proc = new Printer();
+		p.addProcessor(proc);
+		CsvParser.Stats s = p.parse();
+		assertEquals(3,s.rows);
+		assertEquals("A,B\n\u00e0,\"2 is \"\"two\"\"\"\n\"3\nthree\",\u20ac4\n",proc.toString());
+	}
+
+	@Test
+	public void testBytesLatin1() throws IOException {
+		String csv = "A;B\n\u00e8;\"\u00f9\"\"\"\n";
+		
+		CsvParser pc = new CsvParser(new StringReader(csv));
+		Processor pcc = new Printer();
+		pc.addProcessor(pcc);
+		pc.parse();
+
+		CsvParser pb = new CsvParser(new ByteArrayInputStream(csv.getBytes(StandardCharsets.ISO_8859_1)),"iso-8859-1");
+		Processor pbb = new Printer();
+		pb.addProcessor(pbb);
+		pb.parse();
+		assertEquals(pcc.toString(),pbb.toString());
+	}
+
+	@Test
+	public void testMapped() throws IOException {
+		StringBuilder csv = new StringBuilder("A,B\n");
+		for(int i=0; i<1000; ++i){
+			csv.append(i).append(",\"").append(i%10==0 ? "long\n\"\"cell\"\"" : "v").append("\"\r\n");
+		}
+		Path file = Files.createTempFile("mapped", ".csv");
+		try{
+			Files.write(file, csv.toString().getBytes(StandardCharsets.UTF_8));
+
+			CsvParser pr = new CsvParser(new StringReader(csv.toString()));
+			Processor expected = new Printer();
+			pr.addProcessor(expected);
+			pr.parse();
+			
+			try(FileChannel ch = FileChannel.open(file)){
+				CsvParser p = new CsvParser(ch,StandardCharsets.UTF_8,64);
+				Processor proc = new Printer();
+				p.addProcessor(proc);
+				CsvParser.Stats s = p.parse();
+				assertEquals(1001,s.rows);
+				assertEquals(Files.size(file),s.chars);
+				assertEquals(expected.toString(),proc.toString());
+			}
+		}finally{
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void testCellWidths() throws IOException {
+		StringBuilder csv = new StringBuilder("A,B,C\n");
+		for(int i=0; i<200; ++i){
+			String cell = "0123456789abcdefghijklmnopqrstuvwxyz\u00e8".substring(0, i%38);
+			csv.append(cell).append(",\"").append(cell).append(i%4==0 ? "\"\"\n" : "").append("\",")
+			   .append(cell).append(i%2==0 ? "\r\n" : "\n");
+		}
+		CsvParser pr = new CsvParser(new StringReader(csv.toString()));
+		Collector expected = new Collector();
+		pr.addProcessor(expected);
+		pr.parse();
+		assertEquals(201,expected.rows.size());
+		assertEquals("6|01234|01234|01234",expected.rows.get(6));
+		
+		CsvParser p = new CsvParser(new ByteArrayInputStream(csv.toString().getBytes(StandardCharsets.UTF_8)),"UTF-8");
+		Collector c = new Collector();
+		p.addProcessor(c);
+		p.parse();
+		assertEquals(expected.rows,c.rows);
+	}
+
+	@Test
+	public void testCells() throws IOException {
+		String csv = "A;B;C\nab;\"x\"\"y\";\u00e8\n;ab;";
+		Map<String,Integer> keys = new HashMap<>();
+		keys.put("ab", 1);
+		keys.put("x\"y", 2);
+		keys.put("\u00e8", 3);
+		List<Integer> found = new ArrayList<>();
+		for(String encoding : new String[]{"UTF-8","iso-8859-1","UTF-16"}){
+			CsvParser p = new CsvParser(new ByteArrayInputStream(csv.getBytes(encoding)),encoding);
+			p.addProcessor(new Processor(){
+				public void headers(String[] headers) {}
+				public void newLine(Row row) {
+					for(int i=0; i<row.getLength(); ++i){
+						Cell c = row.cell(i);
+						assertEquals(row.get(i).isEmpty(),c.isEmpty());
+						assertEquals(row.get(i).length(),c.length());
+						assertEquals(row.get(i).hashCode(),c.hashCode());
+						assertTrue(c.equals(row.get(i)));
+						assertEquals(row.get(i),c.toString());
+						if(!c.isEmpty()) found.add(keys.get(c));
+					}
+					assertSame(row.cell(0),row.cell("A"));
+				}
+				public void end() {}
+			});
+			p.parse();
+		}
+		assertEquals(Arrays.asList(1,2,3,1,1,2,3,1,1,2,3,1),found);
+	}
+
+	@Test
+	public void testNumbers() throws IOException {
+		String csv = "I;D;E\n\"-1.234.567\";\"1.234,567\";\"2,5e3\"\n42;-0,5;\"0,1\"\n";
+		List<Object> values = new ArrayList<>();
+		CsvParser p = new CsvParser(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)),"UTF-8");
+		p.setNumberStyle(NumberStyle.ITALIAN);
+		p.addProcessor(new Processor(){
+			public void headers(String[] headers) {}
+			public void newLine(Row row) {
+				values.add(row.getLong("I"));
+				values.add(row.getInt(0));
+				values.add(row.getDecimal("D",2));
+				values.add(row.getDouble(1));
+				values.add(row.getDouble("E"));
+				values.add(row.cell(1).toDecimal(0,NumberStyle.PLAIN));
+			}
+			public void end() {}
+		});
+		try{
+			p.parse();
+			fail("1.234,567 is not a plain number");
+		}catch(NumberFormatException e){
+			// expected
+		}
+		assertEquals(Arrays.asList(-1234567L,-1234567,123457L,1234.567,2500.0),values);
+	}
+
+	@Test
+	public void testDoubles() throws IOException {
+		String csv = "V\nNaN\nInfinity\n12f\n0x1p3\n\" 1\"\n1e\n-1.5E-3\n12345678901234567\n\"1,234.5e+2\"\n1.2.3\n";
+		List<Object> values = new ArrayList<>();
+		CsvParser p = new CsvParser(new StringReader(csv));
+		p.setNumberStyle(NumberStyle.ENGLISH);
+		p.addProcessor(new Processor(){
+			public void headers(String[] headers) {}
+			public void newLine(Row row) {
+				try{
+					values.add(row.cell(0).toDouble());
+				}catch(NumberFormatException e){
+					values.add("NFE");
+				}
+			}
+			public void end() {}
+		});
+		p.parse();
+		assertEquals(Arrays.asList("NFE","NFE","NFE","NFE","NFE","NFE",-1.5e-3,1.2345678901234568e16,123450.0,"NFE"),values);
+	}
+
+	@Test
+	public void testProjection() throws IOException {
+		String csv = "A,B,C,D\n1,\"x,\"\"y\",2,\"q\nq\"\n,,,\n3,\"\"\"\",4,5\n";
+		List<String> values = new ArrayList<>();
+		CsvParser p = new CsvParser(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)),"UTF-8");
+		p.addProcessor(new Processor(){
+			public void headers(String[] headers, Projection projection) {
+				projection.select("A");
+				projection.select(2);
+			}
+			public void headers(String[] headers) {}
+			public void newLine(Row row) {
+				assertEquals(4,row.getLength());
+				values.add(row.get(0) + "|" + row.get(1) + "|" + row.get(2) + "|" + row.cell(3));
+			}
+			public void end() {}
+		});
+		CsvParser.Stats s = p.parse();
+		assertEquals(4,s.rows);
+		assertEquals(Arrays.asList("1|null|2|null","|null||null","3|null|4|null"),values);
+	}
+
+	@Test
+	public void testPipeline() throws IOException {
+		StringBuilder csv = new StringBuilder("A;B\n");
+		for(int i=0; i<10000; ++i){
+			csv.append(i).append(";\"").append(i%3==0 ? "x\"\"\n" : "").append("\u00e8").append("\"\n");
+		}
+		CsvParser pr = new CsvParser(new StringReader(csv.toString()));
+		Collector expected = new Collector();
+		pr.addProcessor(expected);
+		pr.parse();
+
+		for(WaitStrategy w : WaitStrategy.values()){
+			CsvParser p = new CsvParser(new ByteArrayInputStream(csv.toString().getBytes(StandardCharsets.UTF_8)),"UTF-8");
+			p.setPipeline(4, 100, w);
+			Collector c1 = new Collector();
+			Collector c2 = new Collector();
+			p.addProcessor(c1);
+			p.addProcessor(c2);
+			CsvParser.Stats s = p.parse();
+			assertEquals(10001,s.rows);
+			assertEquals(expected.rows,c1.rows);
+			assertEquals(expected.rows,c2.rows);
+			assertTrue(c1.ended && c2.ended);
+		}
+	}
+
+	@Test
+	public void testPipelineAbort() throws IOException, InterruptedException {
+		StringBuilder csv = new StringBuilder("A;B\n");
+		for(int i=0; i<1000; ++i){
+			csv.append(i).append(";x\n");
+		}
+		for(int i=0; i<100000; ++i) csv.append('x'); // row too large
+		class Aborted extends Collector {}
+		Aborted proc = new Aborted();
+		CsvParser p = new CsvParser(new StringReader(csv.toString()));
+		p.setMaxRowSize(BufferPool.MIN_SIZE);
+		p.setPipeline(2, 10, WaitStrategy.BUSY_SPIN);
+		p.addProcessor(proc);
+		try{
+			p.parse();
+			fail("Row too large not detected");
+		}catch(IOException e){
+			// expected
+		}
+		for(Thread t : Thread.getAllStackTraces().keySet()){
+			assertFalse(t.getName().equals("CsvParser-Aborted"));
+		}
+		assertFalse(proc.ended);
+	}
+
+	@Test(expected=IllegalStateException.class)
+	public void testPipelineFailure() throws IOException {
+		StringBuilder csv = new StringBuilder("A;B\n");
+		for(int i=0; i<10000; ++i){
+			csv.append(i).append(";x\n");
+		}
+		CsvParser p = new CsvParser(new StringReader(csv.toString()));
+		p.setPipeline(2, 10, WaitStrategy.YIELDING);
+		p.addProcessor(new Printer());
+		p.addProcessor(new Collector(){
+			public void newLine(Row row) {
+				if(row.getNum()==500) throw new IllegalStateException();
+			}
+		});
+		p.parse();
+	}
+
+	@Test
+	public void testBatch() throws IOException {
+		StringBuilder csv = new StringBuilder("A;B;C\n");
+		for(int i=0; i<10000; ++i){
+			csv.append(i).append(";\"").append(i%3==0 ? "x\"\"\n" : "").append("\u00e8").append("\"");
+			if(i%5!=0) csv.append(";").append(i%2==0 ? "" : "c");
+			csv.append("\n");
+		}
+		CsvParser pr = new CsvParser(new StringReader(csv.toString()));
+		Collector expected = new Collector();
+		pr.addProcessor(expected);
+		pr.parse();
+
+		for(int mode=0; mode<2; ++mode){
+			CsvParser p = new CsvParser(new ByteArrayInputStream(csv.toString().getBytes(StandardCharsets.UTF_8)),"UTF-8");
+			if(mode==1) p.setPipeline(4, 100, WaitStrategy.BLOCKING);
+			List<String> rows = new ArrayList<>();
+			long[] sum = new long[2]; // sum of column A, empty cells of column C
+			boolean[] ended = new boolean[1];
+			p.addBatchProcessor(new BatchProcessor(){
+				public void headers(String[] headers, Projection projection) {
+					projection.selectAll();
+					rows.add(String.join("|", headers));
+				}
+				public void newBatch(RowBatch batch) {
+					for(int r=0; r<batch.size(); ++r){
+						StringBuilder sb = new StringBuilder().append(batch.getNum(r));
+						for(int c=0; c<batch.getLength(r); ++c){
+							sb.append("|").append(batch.get(r, c));
+						}
+						rows.add(sb.toString());
+						sum[0]+=batch.cell(r, 0).toLong();
+					}
+					int[] len = batch.lengths(2);
+					for(int r=0; r<batch.size(); ++r){
+						if(len[r]==0) sum[1]++;
+					}
+				}
+				public void end() {
+					ended[0] = true;
+				}
+			});
+			Collector c = new Collector();
+			p.addProcessor(c);
+			CsvParser.Stats s = p.parse();
+			assertEquals(10001,s.rows);
+			assertEquals(expected.rows,rows);
+			assertEquals(expected.rows,c.rows);
+			assertEquals(9999L*10000/2,sum[0]);
+			assertEquals(4000,sum[1]);
+			assertTrue(ended[0] && c.ended);
+		}
+	}
+
+	@Test
+	public void testParallel() throws IOException {
+		StringBuilder csv = new StringBuilder("A,B,C\r\n");
+		for(int i=0; i<5000; ++i){
+			csv.append(i).append(",\"").append(i%7==0 ? "multi\r\nline \"\"" : "v").append("\",");
+			if(i%3==0) csv.append("\"\"");
+			csv.append(i%5==0 ? "\n\n" : "\r\n");
+		}
+		Path file = Files.createTempFile("parallel", ".csv");
+		try{
+			Files.write(file, csv.toString().getBytes(StandardCharsets.UTF_8));
+
+			CsvParser pr = new CsvParser(new StringReader(csv.toString()));
+			Collector expected = new Collector();
+			pr.addProcessor(expected);
+			CsvParser.Stats se = pr.parse();
+
+			// sequential fallback: the processors added to the parser are ignored
+			CsvParser sp = new CsvParser(new StringReader(csv.toString()));
+			Collector added = new Collector();
+			sp.addProcessor(added);
+			List<String> batches = new ArrayList<>();
+			sp.addBatchProcessor(new BatchProcessor(){
+				public void headers(String[] headers, Projection projection) {
+					batches.add("headers");
+				}
+				public void newBatch(RowBatch batch) {
+					batches.add("batch");
+				}
+				public void end() {
+					batches.add("end");
+				}
+			});
+			Collector seq = new Collector();
+			CsvParser.Stats ss = sp.parse(seq, Collector::new);
+			assertEquals(se.rows,ss.rows);
+			assertEquals(expected.rows,seq.rows);
+			assertTrue(seq.ended);
+			assertTrue(added.rows.isEmpty());
+			assertTrue(batches.isEmpty());
+			
+			try(FileChannel ch = FileChannel.open(file)){
+				CsvParser p = new CsvParser(ch,StandardCharsets.UTF_8);
+				Collector proc = new Collector();
+				CsvParser.Stats s = p.parse(proc, Collector::new, new ForkJoinPool(4), 997);
+				assertEquals(se.rows,s.rows);
+				assertEquals(se.cells,s.cells);
+				assertEquals(expected.rows,proc.rows);
+				assertTrue(proc.ended);
+			}
+		}finally{
+			Files.delete(file);
+		}
+	}
+
+	/**
+	 * Collects the rows with their numbers
+	 */
+	@Test
+	public void testBatchRunner() throws IOException {
+		Path dir = Files.createTempDirectory("runner");
+		try{
+			for(int f=0; f<6; ++f){
+				StringBuilder csv = new StringBuilder("A\tB\n");
+				for(int i=0; i<=f*100; ++i){
+					csv.append(i).append("\t").append(f).append("\n");
+				}
+				Files.write(dir.resolve("day" + f + ".csv"), csv.toString().getBytes(StandardCharsets.UTF_8));
+			}
+			Files.write(dir.resolve("day6.csv"), "A\tB\n\"unterminated".getBytes(StandardCharsets.UTF_8));
+			Files.write(dir.resolve("notes.txt"), "A,B\n".getBytes(StandardCharsets.UTF_8));
+			
+			CsvBatchRunner runner = new CsvBatchRunner(2);
+			Map<Path,Collector> collectors = new java.util.concurrent.ConcurrentHashMap<>();
+			CsvBatchRunner.Result r = runner.run(dir, "*.csv", (file, parser) -> {
+				if(file.endsWith("day6.csv")) throw new IOException("broken");
+				Collector c = new Collector();
+				collectors.put(file, c);
+				parser.addProcessor(c);
+			});
+			assertEquals(6,r.files.size());
+			assertEquals(1,r.failures.size());
+			assertEquals(dir.resolve("day0.csv"),r.files.keySet().iterator().next());
+			for(int f=0; f<6; ++f){
+				Path file = dir.resolve("day" + f + ".csv");
+				assertEquals(f*100+2,r.files.get(file).rows);
+				assertEquals("0|" + f,collectors.get(file).rows.get(1).substring(2));
+			}
+			assertEquals(6*2+1500,r.total.rows);
+			assertEquals(2*r.total.rows,r.total.cells);
+		}finally{
+			for(Path p : Files.newDirectoryStream(dir)) Files.delete(p);
+			Files.delete(dir);
+		}
+	}
+
+	@Test
+	public void testGenerator() throws IOException {
+		CsvGenerator g = new CsvGenerator(7);
+		g.setColumns(5);
+		g.setCellLength(1, 40);
+		g.setQuoteRatio(0.5);
+		g.setNewlineRatio(0.3);
+		g.setEscapeRatio(0.3);
+		g.setEmptyRatio(0.2);
+		g.setSeparator(';');
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		long n = g.write(out, 20000);
+		byte[] content = out.toByteArray();
+		assertEquals(content.length,n);
+		assertArrayEquals(content,readAll(g.open(20000)));
+
+		CsvParser pr = new CsvParser(new StringReader(new String(content,StandardCharsets.UTF_8)));
+		Collector expected = new Collector();
+		pr.addProcessor(expected);
+		CsvParser.Stats s = pr.parse();
+		assertEquals(20001,s.rows);
+		assertEquals(5*20001,s.cells);
+		assertEquals("C1|C2|C3|C4|C5",expected.rows.get(0));
+
+		CsvParser p = new CsvParser(g.open(20000),StandardCharsets.UTF_8);
+		Collector c = new Collector();
+		p.addProcessor(c);
+		p.parse();
+		assertEquals(expected.rows,c.rows);
+
+		g.setColumns(1);
+		g.setLineTerminator("\n");
+		s = new CsvParser(g.open(1000),StandardCharsets.UTF_8).parse();
+		assertEquals(1001,s.rows);
+		assertEquals(1001,s.cells);
+	}
+
+	@Test
+	public void testCompressed() throws IOException, InterruptedException {
+		CsvGenerator g = new CsvGenerator(11);
+		g.setCellLength(1, 30);
+		g.setQuoteRatio(0.3);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		g.write(out, 50000); // several blocks of the decompressor
+		byte[] content = out.toByteArray();
+		CsvParser pr = new CsvParser(new ByteArrayInputStream(content),StandardCharsets.UTF_8);
+		Collector expected = new Collector();
+		pr.addProcessor(expected);
+		pr.parse();
+
+		Path gz = Files.createTempFile("test", ".csv.gz");
+		Path zip = Files.createTempFile("test", ".zip");
+		try{
+			try(GZIPOutputStream os = new GZIPOutputStream(Files.newOutputStream(gz))){
+				os.write(content);
+			}
+			try(ZipOutputStream os = new ZipOutputStream(Files.newOutputStream(zip))){
+				os.putNextEntry(new ZipEntry("dir/"));
+				os.putNextEntry(new ZipEntry("dir/first.csv"));
+				os.write("A,B\n1,2\n".getBytes(StandardCharsets.UTF_8));
+				os.putNextEntry(new ZipEntry("dir/second.csv"));
+				os.write(content);
+			}
+
+			CsvParser p = new CsvParser(gz.toString(),"UTF-8");
+			Collector c = new Collector();
+			p.addProcessor(c);
+			p.parse();
+			assertEquals(expected.rows,c.rows);
+
+			try(FileChannel ch = FileChannel.open(gz)){
+				p = new CsvParser(ch,StandardCharsets.UTF_8);
+				c = new Collector();
+				p.addProcessor(c);
+				p.parse();
+				assertEquals(expected.rows,c.rows);
+			}
+
+			p = new CsvParser(gz.toString(),"UTF-8");
+			CsvParser cancelled = p;
+			p.addProcessor(new Collector(){
+				public void newLine(Row row) {
+					if(row.getNum()==100) cancelled.cancel();
+				}
+			});
+			p.parse(); // stops the decompression, blocked on the full blocks
+			for(Thread t : Thread.getAllStackTraces().keySet()){
+				if(t.getName().equals("CsvParser-gzip")) t.join(1000);
+				assertFalse(t.getName().equals("CsvParser-gzip") && t.isAlive());
+			}
+
+			p = new CsvParser(zip.toString(),"dir/second.csv",StandardCharsets.UTF_8);
+			c = new Collector();
+			p.addProcessor(c);
+			p.parse();
+			assertEquals(expected.rows,c.rows);
+
+			p = new CsvParser(zip.toString(),"UTF-8");
+			c = new Collector();
+			p.addProcessor(c);
+			p.parse();
+			assertEquals(Arrays.asList("A|B","1|1|2"),c.rows);
+
+			try{
+				new CsvParser(zip.toString(),"missing.csv",StandardCharsets.UTF_8);
+				fail("Missing entry not detected");
+			}catch(java.io.FileNotFoundException e){
+				assertTrue(e.getMessage().contains("missing.csv"));
+			}
+
+			byte[] truncated = Arrays.copyOf(Files.readAllBytes(gz),(int)Files.size(gz)/2);
+			Files.write(gz, truncated);
+			try{
+				new CsvParser(gz.toString(),"UTF-8").parse();
+				fail("Truncated file not detected");
+			}catch(IOException e){
+				// expected
+			}
+		}finally{
+			Files.delete(gz);
+			Files.delete(zip);
+		}
+	}
+
+	@Test
+	public void testInstrumentation() throws IOException {
+		CsvGenerator g = new CsvGenerator(3);
+		g.setCellLength(1, 100);
+		CsvParser p = new CsvParser(g.open(2000),StandardCharsets.UTF_8);
+		Collector c = new Collector();
+		Processor slow = new Processor() {
+			public void headers(String[] headers) {}
+			public void newLine(Row row) {
+				if(row.getNum()==1000){
+					try { Thread.sleep(30); } catch (InterruptedException e) {}
+				}
+			}
+			public void end() {}
+		};
+		p.addProcessor(c);
+		p.addProcessor(slow);
+		p.setInstrumentation(Duration.ofMillis(20));
+		Path jfr = Files.createTempFile("test", ".jfr");
+		CsvParser.Stats s;
+		try(Recording r = new Recording()){
+			r.enable("it.polito.softeng.csvparser.Parse");
+			r.enable("it.polito.softeng.csvparser.SlowRow").withThreshold(Duration.ZERO);
+			r.start();
+			s = p.parse();
+			r.stop();
+			r.dump(jfr);
+			List<RecordedEvent> events = RecordingFile.readAllEvents(jfr);
+			RecordedEvent parse = null;
+			List<Long> slowRows = new ArrayList<>();
+			for(RecordedEvent e : events){
+				String name = e.getEventType().getName();
+				if(name.endsWith(".Parse")) parse = e;
+				if(name.endsWith(".SlowRow")) slowRows.add(e.getLong("row"));
+			}
+			assertNotNull(parse);
+			assertEquals(2001,parse.getLong("rows"));
+			// a pause of the JVM on any other row may report it too
+			assertTrue(slowRows.contains(1000L));
+		}finally{
+			Files.delete(jfr);
+		}
+		assertTrue(s.instrumented);
+		assertEquals(2001,s.rows);
+		assertEquals(Arrays.asList(c,slow),new ArrayList<>(s.processing.keySet()));
+		assertTrue(s.processing.get(slow).toMillis()>=30);
+		assertTrue(s.largestCell>=100 && s.largestCell<=200);
+		assertTrue(s.tokenizing.compareTo(s.elapsed)<0);
+		assertTrue(s.toString().contains("largest cell"));
+
+		// a row larger than the buffer
+		StringBuilder csv = new StringBuilder("A,B\n1,");
+		for(int i=0; i<100000; ++i) csv.append('x');
+		p = new CsvParser(new ByteArrayInputStream(csv.toString().getBytes(StandardCharsets.UTF_8)),StandardCharsets.UTF_8);
+		p.addProcessor(new Collector());
+		p.setInstrumentation(CsvParser.SLOW_ROW);
+		s = p.parse();
+		assertTrue(s.bufferGrowths>0);
+		assertEquals(100000,s.largestCell);
+
+		// the enclosing quotes are excluded, the escaped quotes counted
+		p = new CsvParser(new StringReader("A,B\n\"a\"\"b\",c\n"));
+		p.addProcessor(new Collector());
+		p.setInstrumentation(CsvParser.SLOW_ROW);
+		s = p.parse();
+		assertEquals(4,s.largestCell);
+
+		s = new CsvParser(g.open(10),StandardCharsets.UTF_8).parse();
+		assertFalse(s.instrumented);
+		assertTrue(s.processing.isEmpty());
+	}
+
+	@Test
+	public void testProgress() throws IOException {
+		CsvGenerator g = new CsvGenerator(5);
+		Path file = Files.createTempFile("test", ".csv");
+		try{
+			long size = g.write(file, 20000);
+			List<Progress> reports = new ArrayList<>();
+			for(int mode=0; mode<2; ++mode){
+				reports.clear();
+				try(FileChannel ch = FileChannel.open(file)){
+					CsvParser p = mode==0 ? new CsvParser(file.toString(),"UTF-8") :
+											new CsvParser(ch,StandardCharsets.UTF_8);
+					p.addProcessor(new Collector());
+					p.setProgressListener(reports::add, Duration.ZERO);
+					p.parse();
+				}
+				assertEquals(20001/1024+1,reports.size());
+				for(int i=1; i<reports.size(); ++i){
+					assertTrue(reports.get(i).consumed>reports.get(i-1).consumed);
+					assertTrue(reports.get(i).rows>reports.get(i-1).rows);
+				}
+				Progress first = reports.get(0);
+				assertEquals(size,first.size);
+				assertEquals(1024,first.rows);
+				assertTrue(first.fraction()>0 && first.fraction()<0.1);
+				assertFalse(first.done);
+				Progress last = reports.get(reports.size()-1);
+				assertTrue(last.done);
+				assertEquals(size,last.consumed);
+				assertEquals(1.0,last.fraction(),0);
+				assertEquals(Duration.ZERO,last.eta());
+			}
+
+			// unknown size
+			reports.clear();
+			CsvParser p = new CsvParser(g.open(20000),StandardCharsets.UTF_8);
+			p.setProgressListener(reports::add, Duration.ofHours(1));
+			p.parse();
+			assertEquals(1,reports.size());
+			assertEquals(-1,reports.get(0).size);
+			assertNull(reports.get(0).eta());
+		}finally{
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void testCancel() throws IOException {
+		CsvGenerator g = new CsvGenerator(5);
+		CsvParser p = new CsvParser(g.open(20000),StandardCharsets.UTF_8);
+		Collector c = new Collector();
+		p.addProcessor(c);
+		p.addProcessor(new Processor() {
+			public void headers(String[] headers) {}
+			public void newLine(Row row) {
+				if(row.getNum()==500) p.cancel();
+			}
+			public void end() {}
+		});
+		CsvParser.Stats s = p.parse();
+		assertTrue(p.isCancelled());
+		assertTrue(c.ended);
+		assertEquals(501,s.rows);
+		assertEquals(501,c.rows.size());
+
+		// cancelled by the listener, with the pipeline
+		CsvParser pp = new CsvParser(g.open(200000),StandardCharsets.UTF_8);
+		Collector cp = new Collector();
+		pp.addProcessor(cp);
+		pp.setPipeline(4, 256, WaitStrategy.BLOCKING);
+		pp.setProgressListener(progress -> {
+			if(progress.rows>=3000) pp.cancel();
+		}, Duration.ZERO);
+		s = pp.parse();
+		assertTrue(cp.ended);
+		assertEquals(3072,s.rows);
+		assertEquals(3072,cp.rows.size());
+	}
+
+	@Test
+	public void testBufferPool() throws IOException {
+		StringBuilder csv = new StringBuilder("A,B\n");
+		for(int i=0; i<1000; ++i){
+			csv.append(i).append(",");
+			if(i==500){
+				csv.append('"');
+				for(int j=0; j<100000; ++j) csv.append(j%10==0 ? '\n' : 'x');
+				csv.append('"');
+			}else{
+				csv.append("value ").append(i);
+			}
+			csv.append("\n");
+		}
+		byte[] content = csv.toString().getBytes(StandardCharsets.UTF_8);
+		CsvParser pr = new CsvParser(new StringReader(csv.toString()));
+		Collector expected = new Collector();
+		pr.addProcessor(expected);
+		pr.parse();
+		assertEquals(100000,expected.rows.get(501).length()-"500|500|".length());
+
+		BufferPool pool = new BufferPool(1024, 2);
+		for(int k=0; k<2; ++k){
+			CsvParser p = k==0 ? new CsvParser(new ByteArrayInputStream(content),StandardCharsets.UTF_8) :
+								 new CsvParser(new StringReader(csv.toString()));
+			p.setBufferPool(pool);
+			p.setMaxRowSize(1<<20);
+			p.setInstrumentation(CsvParser.SLOW_ROW);
+			Collector c = new Collector();
+			p.addProcessor(c);
+			CsvParser.Stats s = p.parse();
+			assertEquals(expected.rows,c.rows);
+			assertEquals(7,s.bufferGrowths); // 1K to 128K
+			// the enlarged buffer has been replaced by a pooled one after the long row
+			assertEquals(k+1,pool.getPooled());
+		}
+		// reused by the following parsers
+		for(int k=0; k<3; ++k){
+			CsvParser p = new CsvParser(new ByteArrayInputStream("A,B\n1,2\n".getBytes(StandardCharsets.UTF_8)),StandardCharsets.UTF_8);
+			p.setBufferPool(pool);
+			p.parse();
+			assertEquals(2,pool.getPooled());
+		}
+
+		CsvParser p = new CsvParser(new ByteArrayInputStream(content),StandardCharsets.UTF_8);
+		p.setBufferPool(pool);
+		p.setMaxRowSize(50000);
+		p.addProcessor(new Collector());
+		try{
+			p.parse();
+			fail("Row too long not detected");
+		}catch(IOException e){
+			assertTrue(e.getMessage().contains("Row 501"));
+		}
+
+		Path file = Files.createTempFile("test", ".csv");
+		try(FileChannel ch = FileChannel.open(file)){
+			Files.write(file, content);
+			p = new CsvParser(ch,StandardCharsets.UTF_8,4096);
+			p.setMaxRowSize(50000);
+			p.addProcessor(new Collector());
+			p.parse();
+			fail("Row too long not detected");
+		}catch(IOException e){
+			assertTrue(e.getMessage().contains("maximum size of 50000"));
+		}finally{
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void testIndex() throws IOException {
+		CsvGenerator g = new CsvGenerator(9);
+		g.setQuoteRatio(0.5);
+		g.setNewlineRatio(0.5);
+		Path file = Files.createTempFile("test", ".csv");
+		Path idx = RowIndex.sidecar(file);
+		try{
+			long size = g.write(file, 50000);
+			CsvParser p = new CsvParser(file.toString(),"UTF-8");
+			Collector expected = new Collector();
+			p.addProcessor(expected);
+			p.setIndexing(1000);
+			assertNull(p.getIndex());
+			p.parse();
+			RowIndex index = p.getIndex();
+			assertEquals(50001,index.getRows());
+			assertEquals(size,index.getSize());
+			assertEquals(12000,index.indexedRow(12345));
+			index.save(idx);
+			assertEquals(file.getFileName() + ".idx",idx.getFileName().toString());
+			assertTrue(Files.size(idx)<200);
+
+			RowIndex loaded = RowIndex.load(idx);
+			assertEquals(index.getRows(),loaded.getRows());
+			for(long r=0; r<50000; r+=1000){
+				assertEquals(index.position(r),loaded.position(r));
+			}
+
+			long[][] ranges = {{12345,12400},{1,5},{49990,Long.MAX_VALUE},{3000,3001},{60000,Long.MAX_VALUE}};
+			for(long[] range : ranges){
+				for(int mode=0; mode<2; ++mode){
+					try(FileChannel ch = FileChannel.open(file)){
+						CsvParser q = mode==0 ? new CsvParser(file.toString(),"UTF-8") : 
+												new CsvParser(ch,StandardCharsets.UTF_8);
+						q.setRange(loaded, range[0], range[1]);
+						Collector c = new Collector();
+						q.addProcessor(c);
+						CsvParser.Stats s = q.parse();
+						List<String> exp = new ArrayList<>();
+						exp.add(expected.rows.get(0));
+						exp.addAll(expected.rows.subList((int)Math.min(range[0],50001), (int)Math.min(range[1],50001)));
+						assertEquals(exp,c.rows);
+						assertEquals(exp.size(),s.rows);
+					}
+				}
+			}
+
+			try{
+				CsvParser q = new CsvParser(new ByteArrayInputStream(Files.readAllBytes(file)),StandardCharsets.UTF_8);
+				q.setRange(loaded, 12345, 12400);
+				q.parse();
+				fail("Random access on a stream not detected");
+			}catch(IOException e){
+				assertTrue(e.getMessage().contains("random access"));
+			}
+
+			g.write(file, 100);
+			try{
+				CsvParser q = new CsvParser(file.toString(),"UTF-8");
+				q.setRange(loaded, 12345, 12400);
+				q.parse();
+				fail("Wrong index not detected");
+			}catch(IOException e){
+				assertTrue(e.getMessage().contains("does not match"));
+			}
+		}finally{
+			Files.delete(file);
+			Files.deleteIfExists(idx);
+		}
+	}
+
+	@Test
+	public void testColumnarTable() throws IOException {
+		String[] cities = {"Torino","Milano","Roma"};
+		StringBuilder csv = new StringBuilder("id,price,city,code,mixed,note,big\n");
+		for(int i=0; i<10000; ++i){
+			csv.append(i).append(",")
+			   .append(i%7==0 ? "" : (i%2==0 ? Integer.toString(i) : i + ".5")).append(",")
+			   .append(cities[i%3]).append(",")
+			   .append(i<5000 ? Integer.toString(i) : String.format("%05d", i)).append(",")
+			   .append(i<9000 ? Integer.toString(i%10) : "n/a").append(",")
+			   .append("\"note ").append(i).append("\"").append(",")
+			   .append(i==5001 ? "99999999999999999999" : "1");
+			if(i%1000==0) csv.setLength(csv.length()-2); // missing last cell
+			csv.append("\n");
+		}
+		CsvParser p = new CsvParser(new StringReader(csv.toString()));
+		p.setPipeline(2, 100, WaitStrategy.BLOCKING);
+		ColumnarTable t = new ColumnarTable();
+		t.setMaxDictionary(1000);
+		p.addBatchProcessor(t);
+		ColumnarTable sel = new ColumnarTable("city","id");
+		p.addBatchProcessor(sel);
+		p.parse();
+
+		assertEquals(10000,t.getRows());
+		assertEquals(7,t.getColumns().length);
+		ColumnarTable.Column id = t.column("id");
+		assertEquals(ColumnarTable.Type.LONG,id.getType());
+		assertEquals(10000,id.longs().length);
+		assertEquals(1234,id.longs()[1234]);
+
+		ColumnarTable.Column price = t.column("price");
+		assertEquals(ColumnarTable.Type.DOUBLE,price.getType());
+		assertEquals(11.5,price.doubles()[11],0);
+		assertEquals(12.0,price.doubles()[12],0);
+		assertTrue(price.isNull(14));
+		assertNull(price.get(14));
+		assertEquals(10000/7+1,price.nulls().cardinality());
+
+		ColumnarTable.Column city = t.column("city");
+		assertEquals(ColumnarTable.Type.DICTIONARY,city.getType());
+		assertArrayEquals(cities,city.dictionary());
+		assertEquals(2,city.codes()[5]);
+		assertEquals("Roma",city.get(5));
+
+		ColumnarTable.Column code = t.column("code");
+		assertEquals(ColumnarTable.Type.TEXT,code.getType());
+		assertEquals("4999",code.get(4999));
+		assertEquals("05000",code.get(5000));
+
+		ColumnarTable.Column mixed = t.column("mixed");
+		assertEquals(ColumnarTable.Type.DICTIONARY,mixed.getType());
+		assertEquals(11,mixed.dictionary().length);
+		assertEquals("3",mixed.get(1233));
+		assertEquals("n/a",mixed.get(9999));
+
+		ColumnarTable.Column note = t.column("note");
+		assertEquals(ColumnarTable.Type.TEXT,note.getType());
+		assertEquals("note 9876",note.texts()[9876]);
+
+		ColumnarTable.Column big = t.column("big");
+		assertEquals(ColumnarTable.Type.DOUBLE,big.getType());
+		assertEquals(1e20,big.doubles()[5001],1e5);
+		assertTrue(big.isNull(0));
+		assertTrue(big.isNull(3000));
+		assertEquals(10,big.nulls().cardinality());
+
+		assertEquals(2,sel.getColumns().length);
+		assertEquals("city",sel.getColumns()[0].getName());
+		assertArrayEquals(city.codes(),sel.column("city").codes());
+		assertNull(sel.column("price"));
+		try{
+			id.codes();
+			fail("Wrong type not detected");
+		}catch(IllegalStateException e){
+			// expected
+		}
+	}
+
+	@Test
+	public void testColumnarTypes() throws IOException {
+		String csv = "A,B,C,D,E\n1.50,NaN,9007199254740993,1,1e3\nx,Infinity,1.5,2.5,-2.5E-1\n,12f,,3,0x1p3\n";
+		CsvParser p = new CsvParser(new StringReader(csv));
+		ColumnarTable t = new ColumnarTable();
+		p.addBatchProcessor(t);
+		p.parse();
+		ColumnarTable.Column a = t.column("A");
+		assertEquals(ColumnarTable.Type.DICTIONARY,a.getType());
+		assertEquals("1.50",a.get(0));
+		assertEquals("x",a.get(1));
+		assertNull(a.get(2));
+		ColumnarTable.Column b = t.column("B");
+		assertEquals(ColumnarTable.Type.DICTIONARY,b.getType());
+		assertEquals("12f",b.get(2));
+		ColumnarTable.Column c = t.column("C");
+		assertEquals(ColumnarTable.Type.DICTIONARY,c.getType());
+		assertEquals("9007199254740993",c.get(0));
+		assertEquals("1.5",c.get(1));
+		ColumnarTable.Column d = t.column("D");
+		assertEquals(ColumnarTable.Type.DOUBLE,d.getType());
+		assertArrayEquals(new double[]{1,2.5,3},d.doubles(),0);
+		ColumnarTable.Column e = t.column("E");
+		assertEquals(ColumnarTable.Type.DICTIONARY,e.getType());
+		assertEquals("1e3",e.get(0));
+		assertEquals("-2.5E-1",e.get(1));
+
+		p = new CsvParser(new StringReader("A,B\n\"1,5\",1\n1.234,\"1.234,5\"\nx,2\n"));
+		p.setNumberStyle(NumberStyle.ITALIAN);
+		t = new ColumnarTable();
+		p.addBatchProcessor(t);
+		p.parse();
+		a = t.column("A");
+		assertEquals(ColumnarTable.Type.DICTIONARY,a.getType());
+		assertEquals("1,5",a.get(0));
+		assertEquals("1.234",a.get(1));
+		assertEquals("x",a.get(2));
+		b = t.column("B");
+		assertEquals(ColumnarTable.Type.DOUBLE,b.getType());
+		assertArrayEquals(new double[]{1,1234.5,2},b.doubles(),0);
+
+		// the text of the numbers is rendered back when the column turns to text
+		String[] numbers = {"7","1,234.50","1234.5","-0.05","-0.0","1e3","0.10000000000000001",
+							"12,345,678","9007199254740992","1,5","123,4567.8"};
+		StringBuilder mixed = new StringBuilder("A,B\n");
+		for(String n : numbers) mixed.append('"').append(n).append("\",").append(n.length()).append('\n');
+		mixed.append("x,0\n");
+		p = new CsvParser(new StringReader(mixed.toString()));
+		p.setNumberStyle(NumberStyle.ENGLISH);
+		t = new ColumnarTable();
+		p.addBatchProcessor(t);
+		p.parse();
+		a = t.column("A");
+		assertEquals(ColumnarTable.Type.DICTIONARY,a.getType());
+		for(int i=0; i<numbers.length; ++i){
+			assertEquals(numbers[i],a.get(i));
+		}
+		assertEquals("x",a.get(numbers.length));
+	}
+
+	@Test
+	public void testInterning() throws IOException {
+		String[] cities = {"Torino","Milano","Roma"};
+		StringBuilder csv = new StringBuilder("city,code,note,other\n");
+		for(int i=0; i<3000; ++i){
+			csv.append(cities[i%3]).append(",")
+			   .append("C").append(i%100).append(",")
+			   .append("\"a \"\"b\"\"\",")
+			   .append(cities[i%3]).append("\n");
+		}
+		List<String> values = new ArrayList<>();
+		List<String> others = new ArrayList<>();
+		List<String> batched = new ArrayList<>();
+		CsvParser p = new CsvParser(new StringReader(csv.toString()));
+		p.setInterning(4, "city", "code", "note");
+		p.addProcessor(new Processor(){
+			public void headers(String[] headers) { }
+			public void newLine(Row row) {
+				values.add(row.get(0));
+				values.add(row.cell("code").toString());
+				values.add(row.get(2));
+				others.add(row.get(3));
+			}
+			public void end() { }
+		});
+		p.addBatchProcessor(new BatchProcessor(){
+			public void headers(String[] headers, Projection projection) {
+				projection.select("city");
+			}
+			public void newBatch(RowBatch batch) {
+				for(int r=0; r<batch.size(); ++r){
+					batched.add(batch.get(r, 0));
+				}
+			}
+			public void end() { }
+		});
+		p.parse();
+
+		assertEquals(9000,values.size());
+		assertEquals("Roma",values.get(6));
+		assertSame(values.get(0),values.get(9*3));
+		assertSame(values.get(2),values.get(8999));
+		assertEquals("a \"b\"",values.get(2));
+		assertEquals("C99",values.get(99*3+1));
+		assertEquals("C99",values.get(199*3+1));
+		assertEquals(others.get(0),others.get(3));
+		assertNotSame(others.get(0),others.get(3));
+		assertEquals(3000,batched.size());
+		assertSame(batched.get(1),batched.get(2998));
+		assertSame(values.get(0),batched.get(0));
+
+		CsvParser q = new CsvParser(new StringReader(csv.toString()));
+		q.setInterning(CsvParser.INTERNING, "town");
+		try{
+			q.parse();
+			fail("Unknown column not detected");
+		}catch(IllegalArgumentException e){
+			// expected
+		}
+	}
+
+	@Test
+	public void testGroupBy() throws IOException {
+		StringBuilder csv = new StringBuilder("region;theme;amount;rate;units\n");
+		Map<String,long[]> expected = new HashMap<>();
+		for(int i=0; i<20000; ++i){
+			String region = "R" + (i%20);
+			String theme = i%7==0 ? "" : "T" + (i%3);
+			long cents = i*37%10000;
+			csv.append(region).append(";").append(theme).append(";")
+			   .append(cents/100).append(",").append(String.format("%02d", cents%100)).append(";")
+			   .append(i%11==0 ? "" : (i%50) + ",5").append(";")
+			   .append(i%1000).append("\n");
+			long[] e = expected.computeIfAbsent(region + "|" + theme, k -> new long[]{0,0,Long.MAX_VALUE,0,0,0});
+			e[0]++;
+			e[1]+=cents;
+			e[2]=Math.min(e[2],i%1000);
+			e[3]=Math.max(e[3],i%1000);
+			if(i%11!=0){
+				e[4]+=(i%50)*2+1; // twice the rate
+				e[5]++;
+			}
+		}
+		GroupByAggregator g = new GroupByAggregator("region","theme");
+		int rows = g.aggregate(GroupByAggregator.Function.COUNT, null);
+		int amount = g.aggregate(GroupByAggregator.Function.SUM, "amount", 2);
+		int min = g.aggregate(GroupByAggregator.Function.MIN, "units");
+		int max = g.aggregate(GroupByAggregator.Function.MAX, "units");
+		int rate = g.aggregateDouble(GroupByAggregator.Function.MEAN, "rate");
+		int rates = g.aggregateDouble(GroupByAggregator.Function.COUNT, "rate");
+		CsvParser p = new CsvParser(new StringReader(csv.toString()));
+		p.setNumberStyle(NumberStyle.ITALIAN);
+		p.addProcessor(g);
+		p.parse();
+
+		assertEquals(expected.size(),g.getGroups());
+		assertEquals("R0",g.getKey(0,0));
+		assertEquals("",g.getKey(0,1));
+		for(int i=0; i<g.getGroups(); ++i){
+			long[] e = expected.get(g.getKey(i,0) + "|" + g.getKey(i,1));
+			assertNotNull(e);
+			assertEquals(e[0],g.getLong(i,rows));
+			assertEquals(e[1],g.getLong(i,amount));
+			assertEquals(e[1]/100.0,g.getDouble(i,amount),1e-6);
+			assertEquals(e[2],g.getLong(i,min));
+			assertEquals(e[3],g.getLong(i,max));
+			assertEquals(e[5],g.getCount(i,rates));
+			assertEquals(e[4]/2.0/e[5],g.getDouble(i,rate),1e-9);
+		}
+		try{
+			g.getLong(0,rate);
+			fail("Wrong type not detected");
+		}catch(IllegalStateException e){
+			// expected
+		}
+
+		Path file = Files.createTempFile("groupby", ".csv");
+		try{
+			Files.write(file, csv.toString().getBytes(StandardCharsets.UTF_8));
+			Map<String,Long> sums = new HashMap<>();
+			for(int i=0; i<g.getGroups(); ++i){
+				sums.put(g.getKey(i,0) + "|" + g.getKey(i,1), g.getLong(i,amount));
+			}
+			try(FileChannel ch = FileChannel.open(file)){
+				CsvParser q = new CsvParser(ch,StandardCharsets.UTF_8);
+				q.setNumberStyle(NumberStyle.ITALIAN);
+				Supplier<GroupByAggregator> factory = () -> {
+					GroupByAggregator a = new GroupByAggregator("region","theme");
+					a.aggregate(GroupByAggregator.Function.SUM, "amount", 2);
+					a.aggregate(GroupByAggregator.Function.MIN, "units");
+					return a;
+				};
+				GroupByAggregator a = factory.get();
+				q.parse(a, factory, new ForkJoinPool(4), 9973);
+				assertEquals(g.getGroups(),a.getGroups());
+				for(int i=0; i<a.getGroups(); ++i){
+					assertEquals(sums.get(a.getKey(i,0) + "|" + a.getKey(i,1)).longValue(),a.getLong(i,0));
+					assertEquals(expected.get(a.getKey(i,0) + "|" + a.getKey(i,1))[2],a.getLong(i,1));
+				}
+			}
+		}finally{
+			Files.delete(file);
+		}
+	}
+
+
+	@Test
+	public void testGroupByOverflow() throws IOException {
+		String csv = "k,v\na,9223372036854775000\nb,-9223372036854775000\nb,-1000\n";
+		GroupByAggregator g = new GroupByAggregator("k");
+		int sum = g.aggregate(GroupByAggregator.Function.SUM, "v");
+		CsvParser p = new CsvParser(new StringReader(csv));
+		p.addProcessor(g);
+		try{
+			p.parse();
+			fail("Overflow not detected");
+		}catch(ArithmeticException e){
+			assertTrue(e.getMessage().contains("SUM(v)"));
+		}
+
+		// the partial sums overflow when merged
+		GroupByAggregator a = new GroupByAggregator("k");
+		a.aggregate(GroupByAggregator.Function.SUM, "v");
+		p = new CsvParser(new StringReader("k,v\na,9223372036854775000\n"));
+		p.addProcessor(a);
+		p.parse();
+		assertEquals(9223372036854775000L,a.getLong(0, sum));
+		GroupByAggregator b = new GroupByAggregator("k");
+		b.aggregate(GroupByAggregator.Function.SUM, "v");
+		p = new CsvParser(new StringReader("k,v\na,807\na,1\n"));
+		p.addProcessor(b);
+		p.parse();
+		try{
+			a.merge(b);
+			fail("Overflow not detected");
+		}catch(ArithmeticException e){
+			assertTrue(e.getMessage().contains("SUM(v)"));
+		}
+	}
+
+	@Test
+	public void testProfiler() throws IOException {
+		StringBuilder csv = new StringBuilder("id,price,day,name,mixed,none\n");
+		for(int i=0; i<10000; ++i){
+			if(i==500){
+				csv.append(",,,,,\n");
+				continue;
+			}
+			csv.append(i-100).append(",")
+			   .append(i%10==0 ? "" : (i%4==0 ? Integer.toString(i) : i + ".25")).append(",")
+			   .append(i%2==0 ? String.format("2013-%02d-%02d", i%12+1, i%28+1) : String.format("%02d/%02d/2014", i%28+1, i%12+1)).append(",")
+			   .append("\"name ").append(i%1000).append("\"").append(",")
+			   .append(i<9000 ? Integer.toString(i) : "2013-01-01");
+			if(i%100!=1) csv.append(",");
+			csv.append("\n");
+		}
+		Path file = Files.createTempFile("profile", ".csv");
+		try{
+			Files.write(file, csv.toString().getBytes(StandardCharsets.UTF_8));
+			CsvParser p = new CsvParser(new StringReader(csv.toString()));
+			ColumnProfiler prof = new ColumnProfiler();
+			p.addProcessor(prof);
+			p.parse();
+
+			assertEquals(10000,prof.getRows());
+			assertEquals(1,prof.getEmptyRows());
+			assertEquals(100,prof.getShortRows());
+			assertEquals(0,prof.getLongRows());
+
+			int id = prof.column("id");
+			assertEquals(ColumnProfiler.Type.INTEGER,prof.getType(id));
+			assertEquals(-100,prof.getMin(id),0);
+			assertEquals(9899,prof.getMax(id),0);
+			assertEquals(1,prof.getEmpty(id));
+			assertEquals(1,prof.getMinLength(id));
+			assertEquals(4,prof.getMaxLength(id));
+
+			int price = prof.column("price");
+			assertEquals(ColumnProfiler.Type.DECIMAL,prof.getType(price));
+			assertEquals(1000,prof.getEmpty(price));
+			assertEquals(9999.25,prof.getMax(price),0);
+
+			int day = prof.column("day");
+			assertEquals(ColumnProfiler.Type.DATE,prof.getType(day));
+			assertEquals(10,prof.getMaxLength(day));
+			assertTrue(Double.isNaN(prof.getSum(day)));
+
+			assertEquals(ColumnProfiler.Type.TEXT,prof.getType(prof.column("name")));
+			assertEquals(6,prof.getMinLength(prof.column("name")));
+			assertEquals(ColumnProfiler.Type.TEXT,prof.getType(prof.column("mixed")));
+
+			int none = prof.column("none");
+			assertEquals(ColumnProfiler.Type.EMPTY,prof.getType(none));
+			assertEquals(100,prof.getMissing(none));
+			assertEquals(9900,prof.getEmpty(none));
+			assertEquals(0,prof.getMinLength(none));
+
+			try(FileChannel ch = FileChannel.open(file)){
+				CsvParser q = new CsvParser(ch,StandardCharsets.UTF_8);
+				ColumnProfiler merged = new ColumnProfiler();
+				q.parse(merged, ColumnProfiler::new, new ForkJoinPool(4), 9973);
+				assertEquals(prof.toString(),merged.toString());
+				assertEquals(prof.getSum(price),merged.getSum(price),1e-6);
+			}
+		}finally{
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void testSketches() throws IOException {
+		StringBuilder csv = new StringBuilder("id,value,city\n");
+		for(int i=0; i<100000; ++i){
+			csv.append(i).append(",")
+			   .append(i%5==0 ? "" : Integer.toString(i%1000)).append(",")
+			   .append(i%2==0 ? "Torino" : i%3==0 ? "Milano" : "C" + i).append("\n");
+		}
+		Path file = Files.createTempFile("sketch", ".csv");
+		Path saved = Files.createTempFile("sketch", ".bin");
+		try{
+			Files.write(file, csv.toString().getBytes(StandardCharsets.UTF_8));
+			CsvParser p = new CsvParser(new StringReader(csv.toString()));
+			ColumnSketches s = new ColumnSketches("id","value","city");
+			s.setTopValues(16);
+			p.addProcessor(s);
+			p.parse();
+
+			assertEquals(100000,s.distinct("id").estimate(),100000*0.05);
+			assertEquals(800,s.distinct("value").estimate(),800*0.05);
+			assertEquals(100000/3+2,s.distinct("city").estimate(),100000/3*0.05);
+			KllSketch q = s.quantiles("value");
+			assertEquals(80000,q.getCount());
+			assertEquals(1,q.getMin(),0);
+			assertEquals(999,q.getMax(),0);
+			assertEquals(500,q.quantile(0.5),1000*0.02);
+			assertEquals(0.9,q.rank(900),0.02);
+			assertNull(s.quantiles("city"));
+			List<Map.Entry<String,Long>> top = s.frequent("city").top(2);
+			assertEquals("Torino",top.get(0).getKey());
+			assertEquals("Milano",top.get(1).getKey());
+			assertTrue(top.get(0).getValue()>=50000);
+			assertTrue(s.frequent("city").count("Milano")-s.frequent("city").error("Milano")<=16667);
+
+			try(FileChannel ch = FileChannel.open(file)){
+				CsvParser pp = new CsvParser(ch,StandardCharsets.UTF_8);
+				ColumnSketches merged = new ColumnSketches("id","value","city");
+				merged.setTopValues(16);
+				pp.parse(merged, () -> {
+					ColumnSketches m = new ColumnSketches("id","value","city");
+					m.setTopValues(16);
+					return m;
+				}, new ForkJoinPool(4), 99991);
+				assertEquals(s.distinct("id").estimate(),merged.distinct("id").estimate());
+				assertEquals(500,merged.quantiles("value").quantile(0.5),1000*0.02);
+				assertEquals(80000,merged.quantiles("value").getCount());
+				assertEquals("Torino",merged.frequent("city").top(1).get(0).getKey());
+				assertEquals(50000,merged.frequent("city").count("Torino"));
+
+				merged.save(saved);
+				ColumnSketches loaded = ColumnSketches.load(saved);
+				assertEquals(merged.toString(),loaded.toString());
+				loaded.merge(s);
+				assertEquals(s.distinct("city").estimate(),loaded.distinct("city").estimate());
+				assertEquals(160000,loaded.quantiles("value").getCount());
+				assertEquals(100000,loaded.frequent("city").count("Torino"));
+			}
+		}finally{
+			Files.delete(file);
+			Files.delete(saved);
+		}
+	}
+
+	@Test
+	public void testWriter() throws IOException {
+		String csv = "A;B;C\r\nplain;\"with;sep\";\"q\"\"uote\"\r\n\u00e0\u20ac\ud83d\ude00;\"multi\nline\";\r\n;short\r\n";
+		Path file = Files.createTempFile("writer", ".csv");
+		try{
+			try(CsvWriter w = new CsvWriter(file)){
+				CsvParser p = new CsvParser(new StringReader(csv));
+				p.addProcessor(new CsvSink(w));
+				p.parse();
+			}
+			assertEquals("A,B,C\r\nplain,with;sep,\"q\"\"uote\"\r\n\u00e0\u20ac\ud83d\ude00,\"multi\nline\",\r\n,short\r\n",
+						 new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+
+			// round trip through the parser, selecting and reordering the columns
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			CsvWriter w = new CsvWriter(out, StandardCharsets.UTF_8);
+			w.setDialect(CsvDialect.TSV);
+			w.setLineTerminator("\n");
+			CsvParser p = new CsvParser(new StringReader(csv));
+			p.addProcessor(new CsvSink(w, "C", "A"));
+			p.parse();
+			assertEquals("C\tA\n\"q\"\"uote\"\tplain\n\t\u00e0\u20ac\ud83d\ude00\n\t\n",
+						 new String(out.toByteArray(), StandardCharsets.UTF_8));
+			Collector c = new Collector();
+			CsvParser q = new CsvParser(new ByteArrayInputStream(out.toByteArray()), StandardCharsets.UTF_8);
+			q.addProcessor(c);
+			q.parse();
+			assertEquals(Arrays.asList("C|A", "1|q\"uote|plain", "2||\u00e0\u20ac\ud83d\ude00", "3||"), c.rows);
+
+			// large content through a channel and an encoder of the other charsets
+			for(String cs : new String[]{"UTF-8", "UTF-16LE"}){
+				try(FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE,
+													   StandardOpenOption.TRUNCATE_EXISTING)){
+					CsvWriter lw = new CsvWriter(ch, Charset.forName(cs));
+					for(int i=0; i<100000; ++i){
+						lw.writeCell(i-50000);
+						lw.writeCell("cell, \u00e8 " + i);
+						lw.writeCell(Long.MIN_VALUE+i);
+						lw.endRow();
+					}
+					lw.close();
+					assertEquals(Files.size(file),lw.getWritten());
+				}
+				List<String> lines = Files.readAllLines(file, Charset.forName(cs));
+				assertEquals(100000,lines.size());
+				assertEquals("-50000,\"cell, \u00e8 0\",-9223372036854775808",lines.get(0));
+				assertEquals("49999,\"cell, \u00e8 99999\",-9223372036854675809",lines.get(99999));
+				assertEquals("0,\"cell, \u00e8 50000\",-9223372036854725808",lines.get(50000));
+			}
+
+			// surrogate pairs across the boundaries of the encoded chunks
+			StringBuilder pairs = new StringBuilder("x");
+			for(int i=0; i<100000; ++i) pairs.append(i%2==0 ? "\ud83d\ude00" : "\ud840\udc00");
+			for(String cs : new String[]{"UTF-16LE", "GB18030"}){
+				out = new ByteArrayOutputStream();
+				w = new CsvWriter(out, Charset.forName(cs));
+				w.writeCell(pairs);
+				w.endRow();
+				w.close();
+				assertEquals(pairs + "\r\n", new String(out.toByteArray(), Charset.forName(cs)));
+			}
+		}finally{
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void testFilter() throws IOException {
+		StringBuilder csv = new StringBuilder("id,region,amount\n");
+		for(int i=0; i<5000; ++i){
+			csv.append(i).append(",").append(i%4==0 ? "\"R" + (i%10) + "\"" : "R" + (i%10)).append(",");
+			if(i%13!=0) csv.append(i%100);
+			csv.append("\n");
+		}
+		CsvParser pr = new CsvParser(new StringReader(csv.toString()));
+		Collector all = new Collector();
+		pr.addProcessor(all);
+		pr.parse();
+		List<String> expected = new ArrayList<>();
+		expected.add(all.rows.get(0));
+		for(String r : all.rows.subList(1, all.rows.size())){
+			String[] c = r.split("\\|", -1);
+			boolean region = c[2].equals("R1") || c[2].equals("R2") || c[2].equals("R3");
+			boolean amount = !c[3].isEmpty() && Integer.parseInt(c[3])>=10 && Integer.parseInt(c[3])<=50;
+			if(region && amount && !c[1].startsWith("4")) expected.add(r);
+		}
+		Filter region = Filter.or(Filter.equal("region", "R1"), Filter.in("region", "R2", "R3"));
+		Filter amount = Filter.range("amount", 10, 50);
+
+		for(int mode=0; mode<3; ++mode){
+			CsvParser p = new CsvParser(new StringReader(csv.toString()));
+			if(mode==1) p.setPipeline(4, 100, WaitStrategy.BLOCKING);
+			if(mode==2) p.setInstrumentation(CsvParser.SLOW_ROW);
+			p.addFilter(Filter.and(region, amount));
+			p.addFilter(Filter.prefix("id", "4").negate());
+			Collector c = new Collector();
+			p.addProcessor(c);
+			List<String> ids = new ArrayList<>();
+			p.addBatchProcessor(new BatchProcessor(){
+				public void headers(String[] headers, Projection projection) {
+					projection.select("id"); // the filters read the other columns
+				}
+				public void newBatch(RowBatch batch) {
+					for(int r=0; r<batch.size(); ++r){
+						ids.add(batch.getNum(r) + "|" + batch.get(r, 0));
+					}
+				}
+				public void end() {
+					// nothing to do
+				}
+			});
+			CsvParser.Stats s = p.parse();
+			assertEquals(5001,s.rows);
+			assertEquals(expected,c.rows);
+			assertEquals(expected.size()-1,ids.size());
+			assertEquals(5000-ids.size(),p.getRejectedRows());
+			for(int i=0; i<ids.size(); ++i){
+				assertTrue(expected.get(i+1).startsWith(ids.get(i) + "|"));
+			}
+		}
+
+		CsvParser unknown = new CsvParser(new StringReader(csv.toString()));
+		unknown.addFilter(Filter.equal("missing", "x"));
+		try{
+			unknown.parse();
+			fail("Unknown column not detected");
+		}catch(IllegalArgumentException e){
+			// expected
+		}
+
+		Path file = Files.createTempFile("filter", ".csv");
+		try{
+			Files.write(file, csv.toString().getBytes(StandardCharsets.UTF_8));
+			try(FileChannel ch = FileChannel.open(file)){
+				CsvParser p = new CsvParser(ch,StandardCharsets.UTF_8);
+				p.addFilter(Filter.and(region, amount, Filter.prefix("id", "4").negate()));
+				Collector proc = new Collector();
+				CsvParser.Stats s = p.parse(proc, Collector::new, new ForkJoinPool(4), 997);
+				assertEquals(5001,s.rows);
+				assertEquals(expected,proc.rows);
+				assertEquals(5001-expected.size(),p.getRejectedRows());
+			}
+		}finally{
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void testStream() throws IOException {
+		StringBuilder csv = new StringBuilder("id,name,amount\r\n");
+		for(int i=0; i<100000; ++i){
+			csv.append(i).append(",\"").append(i%7==0 ? "multi\r\nline \"\"" + i + "\"\"" : "name " + i)
+			   .append("\",").append(i%100).append("\r\n");
+		}
+		CsvParser pr = new CsvParser(new StringReader(csv.toString()));
+		Collector expected = new Collector();
+		pr.addProcessor(expected);
+		pr.parse();
+		List<String> rows = expected.rows.subList(1, expected.rows.size());
+
+		// sequential, the rows remain valid after they have been consumed
+		CsvParser p = new CsvParser(new StringReader(csv.toString()));
+		List<Row> all = p.stream().collect(Collectors.toList());
+		assertEquals(rows.size(),all.size());
+		for(int i=0; i<all.size(); ++i){
+			Row r = all.get(i);
+			StringBuilder sb = new StringBuilder().append(r.getNum());
+			for(int c=0; c<r.getLength(); ++c) sb.append("|").append(r.get(c));
+			assertEquals(rows.get(i),sb.toString());
+		}
+		assertEquals("multi\r\nline \"7\"",all.get(7).cell("name").toString());
+
+		// lazy reading through the iterator, with a projection and a filter
+		p = new CsvParser(new ByteArrayInputStream(csv.toString().getBytes(StandardCharsets.UTF_8)),StandardCharsets.UTF_8);
+		p.addFilter(Filter.equal("amount", "0"));
+		Iterator<Row> it = p.iterator("id");
+		for(int i=0; i<3; ++i){
+			Row r = it.next();
+			assertEquals(i*100+1,r.getNum());
+			assertEquals(i*100,r.getLong("id"));
+			assertNull(r.get("name"));
+		}
+		assertTrue(it.hasNext());
+
+		Path file = Files.createTempFile("stream", ".csv");
+		try{
+			Files.write(file, csv.toString().getBytes(StandardCharsets.UTF_8));
+			// the parallel stream splits the file into ranges of rows
+			try(FileChannel ch = FileChannel.open(file)){
+				CsvParser q = new CsvParser(ch,StandardCharsets.UTF_8);
+				ForkJoinPool pool = new ForkJoinPool(4);
+				List<String> parsed = pool.submit(() -> q.stream().parallel()
+						.map(r -> {
+							StringBuilder sb = new StringBuilder().append(r.getNum());
+							for(int c=0; c<r.getLength(); ++c) sb.append("|").append(r.get(c));
+							return sb.toString();
+						})
+						.collect(Collectors.toList())).join();
+				assertEquals(rows,parsed);
+			}
+			try(FileChannel ch = FileChannel.open(file)){
+				CsvParser q = new CsvParser(ch,StandardCharsets.UTF_8);
+				q.addFilter(Filter.in("amount", "1", "2"));
+				assertEquals(2000,q.stream("amount").parallel().filter(r -> r.getLong("amount")<3).count());
+				assertEquals(98000,q.getRejectedRows());
+			}
+			// sequential consumption of a file, then split
+			try(FileChannel ch = FileChannel.open(file);
+				Stream<Row> s = new CsvParser(ch,StandardCharsets.UTF_8).stream("id")){
+				Spliterator<Row> sp = s.spliterator();
+				long[] first = new long[1];
+				assertTrue(sp.tryAdvance(r -> first[0] = r.getLong("id")));
+				assertEquals(0,first[0]);
+				Spliterator<Row> prefix = sp.trySplit();
+				assertNotNull(prefix);
+				long[] sum = new long[1];
+				prefix.forEachRemaining(r -> sum[0]+=r.getLong("id"));
+				sp.forEachRemaining(r -> sum[0]+=r.getLong("id"));
+				assertEquals(99999L*100000/2,sum[0]);
+			}
+		}finally{
+			Files.delete(file);
+		}
+	}
+
+	private static byte[] readAll(java.io.InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] b = new byte[1000];
+		int n;
+		while((n=in.read(b))!=-1) out.write(b,0,n);
+		return out.toByteArray();
+	}
+
+	static class Collector implements Processor, Mergeable<Collector> {
+		List<String> rows = new ArrayList<>();
+		boolean ended;
+		public void headers(String[] headers) {
+			rows.add(String.join("|", headers));
+		}
+		public void newLine(Row row) {
+			StringBuilder r = new StringBuilder().append(row.getNum());
+			for(int i=0; i<row.getLength(); ++i){
+				r.append("|").append(row.get(i));
+			}
+			rows.add(r.toString());
+		}
+		public void end() {
+			ended = true;
+		}
+		public void merge(Collector other) {
+			rows.addAll(other.rows.subList(1, other.rows.size()));
+		}
+	}
+
 	@Test
 	public void testScuole() throws IOException {
 		